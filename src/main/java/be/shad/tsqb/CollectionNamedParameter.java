@@ -24,10 +24,16 @@ import java.util.Collection;
  */
 public class CollectionNamedParameter extends NamedParameter {
     private final Integer batchSize;
+    private final boolean splittable;
 
     public CollectionNamedParameter(String name, Collection<?> value, Integer batchSize) {
+        this(name, value, batchSize, false);
+    }
+
+    public CollectionNamedParameter(String name, Collection<?> value, Integer batchSize, boolean splittable) {
         super(name, value);
         this.batchSize = batchSize;
+        this.splittable = splittable;
     }
 
     @Override
@@ -42,4 +48,13 @@ public class CollectionNamedParameter extends NamedParameter {
     public Integer getBatchSize() {
         return batchSize;
     }
+
+    /**
+     * Whether the parameter is the collection of an in restriction which restricts the whole query,
+     * see {@link be.shad.tsqb.values.HqlQueryBuilderParams#isRestrictingWholeQuery()}.
+     * Only then the query may be listed once per chunk of the values without a batch size.
+     */
+    public boolean isSplittable() {
+        return splittable;
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb;
+
+import java.util.Collection;
+
+/**
+ * Collection parameter of which the values are loaded into the temp table
+ * (see {@link be.shad.tsqb.temptable.TempTableValue}) before the query is executed.
+ * The query only binds the id of the loaded set of values to the parameter name,
+ * so the amount of values doesn't influence the statement.
+ */
+public class TempTableNamedParameter extends CollectionNamedParameter {
+    private final Class<?> valueClass;
+
+    public TempTableNamedParameter(String name, Collection<?> value, Class<?> valueClass) {
+        super(name, value, null);
+        this.valueClass = valueClass;
+    }
+
+    public Class<?> getValueClass() {
+        return valueClass;
+    }
+}
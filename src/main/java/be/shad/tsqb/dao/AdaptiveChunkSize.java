@@ -0,0 +1,51 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+/**
+ * Adapts the chunk size to the measured latency of the previous chunk, for one query execution.
+ * <p>
+ * Starts with the maximum size to have as few round trips as possible, halves the size
+ * when a chunk took longer than the target and doubles it again (up to the maximum)
+ * when a chunk took less than half the target.
+ */
+class AdaptiveChunkSize {
+    private final int maxSize;
+    private final long targetNanos;
+    private int size;
+
+    AdaptiveChunkSize(int maxSize, long targetNanos) {
+        this.maxSize = maxSize;
+        this.targetNanos = targetNanos;
+        this.size = maxSize;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Records the latency of a chunk and returns the size for the next chunk.
+     */
+    int next(long chunkNanos) {
+        if (chunkNanos > targetNanos) {
+            size = Math.max(1, size / 2);
+        } else if (chunkNanos < targetNanos / 2) {
+            size = (int) Math.min(maxSize, size * 2L);
+        }
+        return size;
+    }
+}
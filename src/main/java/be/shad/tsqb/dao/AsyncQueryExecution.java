@@ -0,0 +1,105 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.hibernate.Session;
+
+/**
+ * Opt-in execution of queries on their own session on another thread,
+ * see {@link TypeSafeQueryDaoImpl#setAsyncQueryExecution(AsyncQueryExecution)}.
+ * <p>
+ * Each query is a task which opens a session, lists the results and closes the session again,
+ * whether the query succeeded or not. The sessions are closed when the results are listed,
+ * so this is meant for selecting values or dtos. Selected entities would be detached.
+ * <p>
+ * A query is built on the thread of its task, it must not be changed until its future completes.
+ */
+public class AsyncQueryExecution {
+    private final Supplier<Session> sessionOpener;
+    private final Executor executor;
+
+    /**
+     * Runs the queries on the {@link #defaultExecutor()}.
+     *
+     * @param sessionOpener opens a new session for a task, for example sessionFactory::openSession.
+     *        The session is closed by the task.
+     */
+    public AsyncQueryExecution(Supplier<Session> sessionOpener) {
+        this(sessionOpener, defaultExecutor());
+    }
+
+    /**
+     * @param sessionOpener opens a new session for a task, for example sessionFactory::openSession.
+     *        The session is closed by the task.
+     * @param executor runs the tasks, the amount of queries at the same time is limited by this executor.
+     */
+    public AsyncQueryExecution(Supplier<Session> sessionOpener, Executor executor) {
+        if (sessionOpener == null || executor == null) {
+            throw new IllegalArgumentException("The session opener and executor are required.");
+        }
+        this.sessionOpener = sessionOpener;
+        this.executor = executor;
+    }
+
+    /**
+     * A shared executor which starts a virtual thread per task when the jdk supports them,
+     * otherwise a cached pool of daemon threads. The tasks mostly wait on the database,
+     * so the common fork join pool is not used.
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    /**
+     * Applies the function to a new session on the executor and closes the session afterwards.
+     */
+    <T> CompletableFuture<T> supplyAsync(Function<Session, T> fn) {
+        return CompletableFuture.supplyAsync(() -> {
+            Session session = sessionOpener.get();
+            try {
+                return fn.apply(session);
+            } finally {
+                session.close();
+            }
+        }, executor);
+    }
+
+    /**
+     * Holder to create the default executor when it is first used.
+     */
+    private static final class DefaultExecutor {
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                // java 21+, looked up reflectively because the library is compiled for java 8
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(task -> {
+                    Thread thread = new Thread(task, "tsqb-async-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+}
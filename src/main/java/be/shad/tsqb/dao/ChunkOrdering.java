@@ -0,0 +1,234 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import be.shad.tsqb.data.TypeSafeQueryProxyData;
+import be.shad.tsqb.ordering.OrderBy;
+import be.shad.tsqb.ordering.OrderByImpl;
+import be.shad.tsqb.ordering.OrderByProjection;
+import be.shad.tsqb.query.TypeSafeRootQueryInternal;
+import be.shad.tsqb.selection.TypeSafeValueProjection;
+import be.shad.tsqb.values.DistinctTypeSafeValue;
+import be.shad.tsqb.values.IsMaybeDistinct;
+import be.shad.tsqb.values.ReferenceTypeSafeValue;
+import be.shad.tsqb.values.TypeSafeValue;
+import be.shad.tsqb.values.TypeSafeValueContainer;
+
+/**
+ * The order bys of a root query resolved to the selected columns, used to merge
+ * the sorted chunks of a batched query in the order the database would return them.
+ * <p>
+ * An order by can only be merged when it is selected, or when it is a property of a selected
+ * entity, and when java compares its values like the database does: numbers, dates, times and
+ * booleans. Strings depend on the collation of the database and enums on how they're mapped.
+ * <p>
+ * The ordering is immutable, a prepared query keeps it to merge each of its executions.
+ */
+public final class ChunkOrdering {
+    /**
+     * The ordering of a query which isn't ordered, such as a count.
+     */
+    static final ChunkOrdering UNORDERED = new ChunkOrdering(Collections.emptyList(), null, 1, false);
+    /**
+     * The ordering of a query which doesn't expose its order bys and projections.
+     */
+    static final ChunkOrdering UNKNOWN = new ChunkOrdering(null, "the order bys of the query are unknown", 1, false);
+
+    private final List<Column> columns;
+    private final String unmergeable;
+    private final int projectionCount;
+    private final boolean distinct;
+
+    private ChunkOrdering(List<Column> columns, String unmergeable, int projectionCount, boolean distinct) {
+        this.columns = columns;
+        this.unmergeable = unmergeable;
+        this.projectionCount = projectionCount;
+        this.distinct = distinct;
+    }
+
+    /**
+     * Resolves the order bys of the query to the selected columns.
+     */
+    public static ChunkOrdering of(TypeSafeRootQueryInternal query) {
+        List<TypeSafeValueProjection> projections = new ArrayList<>(query.getProjections().getProjections());
+        boolean distinct = !projections.isEmpty() && projections.get(0).getValue() instanceof IsMaybeDistinct
+                && ((IsMaybeDistinct) projections.get(0).getValue()).isDistinct();
+
+        List<Column> columns = new ArrayList<>();
+        for(OrderBy orderBy: query.getOrderBys().getOrderBys()) {
+            Column column;
+            Class<?> valueClass;
+            if (orderBy instanceof OrderByProjection) {
+                OrderByProjection orderByProjection = (OrderByProjection) orderBy;
+                int index = indexOfProjection(projections, orderByProjection.getPropertyPath());
+                column = new Column(index, null, orderByProjection.isDescending());
+                valueClass = projections.get(index).getValue().getValueClass();
+            } else if (orderBy instanceof OrderByImpl) {
+                OrderByImpl orderByValue = (OrderByImpl) orderBy;
+                column = resolveColumn(projections, orderByValue.getValue(), orderByValue.isDescending());
+                if (column == null) {
+                    return unmergeable(projections.size(), distinct, String.format(
+                            "the order by at index %d is not selected", columns.size()));
+                }
+                valueClass = orderByValue.getValue().getValueClass();
+            } else {
+                return unmergeable(projections.size(), distinct, String.format(
+                        "the order by at index %d can't be resolved to a selected value", columns.size()));
+            }
+            if (!isOrderedLikeDatabase(valueClass)) {
+                return unmergeable(projections.size(), distinct, String.format("the order by at index %d "
+                        + "is a %s, which the database may order differently", columns.size(),
+                        valueClass.getSimpleName()));
+            }
+            columns.add(column);
+        }
+        return new ChunkOrdering(Collections.unmodifiableList(columns), null, projections.size(), distinct);
+    }
+
+    private static ChunkOrdering unmergeable(int projectionCount, boolean distinct, String reason) {
+        return new ChunkOrdering(null, reason, projectionCount, distinct);
+    }
+
+    private static int indexOfProjection(List<TypeSafeValueProjection> projections, String propertyPath) {
+        for(int i = 0; i < projections.size(); i++) {
+            if (propertyPath.equals(projections.get(i).getPropertyPath())) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No value was bound for propertPath: " + propertyPath);
+    }
+
+    /**
+     * Resolves the value to a selected value, or to a property of a selected entity.
+     * The root entity is selected implicitly when nothing was selected.
+     */
+    private static Column resolveColumn(List<TypeSafeValueProjection> projections,
+            TypeSafeValue<?> value, boolean descending) {
+        for(int i = 0; i < projections.size(); i++) {
+            TypeSafeValue<?> selected = unwrapDistinct(projections.get(i).getValue());
+            if (selected == value || getData(selected) != null && getData(selected) == getData(value)) {
+                return new Column(i, null, descending);
+            }
+        }
+        TypeSafeQueryProxyData data = getData(value);
+        if (data == null || data.getParent() == null || data.getProxyType().isEntity()) {
+            return null;
+        }
+        TypeSafeQueryProxyData entity = data.getParent();
+        String propertyPath = data.getPropertyPath();
+        if (entity.getProxyType().isComposite()) {
+            propertyPath = entity.getCompositePropertyPath() + "." + propertyPath;
+            entity = entity.getCompositeTypeEntityParent();
+        }
+        if (projections.isEmpty()) {
+            return entity.getParent() == null ? new Column(0, propertyPath, descending): null;
+        }
+        for(int i = 0; i < projections.size(); i++) {
+            if (getData(unwrapDistinct(projections.get(i).getValue())) == entity) {
+                return new Column(i, propertyPath, descending);
+            }
+        }
+        return null;
+    }
+
+    private static TypeSafeValue<?> unwrapDistinct(TypeSafeValue<?> value) {
+        if (!(value instanceof DistinctTypeSafeValue)) {
+            return value;
+        }
+        List<TypeSafeValue<?>> nested = new ArrayList<>(1);
+        ((TypeSafeValueContainer) value).validateContainedInScope(nested::add);
+        return nested.get(0);
+    }
+
+    private static TypeSafeQueryProxyData getData(TypeSafeValue<?> value) {
+        return value instanceof ReferenceTypeSafeValue ? ((ReferenceTypeSafeValue<?>) value).getData(): null;
+    }
+
+    /**
+     * Whether java orders the values of the class the same way as any database does.
+     */
+    private static boolean isOrderedLikeDatabase(Class<?> valueClass) {
+        if (valueClass.isPrimitive()) {
+            return valueClass != char.class;
+        }
+        return Number.class.isAssignableFrom(valueClass)
+                || Date.class.isAssignableFrom(valueClass)
+                || Boolean.class.equals(valueClass)
+                || Temporal.class.isAssignableFrom(valueClass) && Comparable.class.isAssignableFrom(valueClass);
+    }
+
+    /**
+     * The columns to merge by, in order, empty when the query isn't ordered
+     * or null when an order by can't be merged, see {@link #getUnmergeable()}.
+     */
+    List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Why the order bys can't be merged, null when they can.
+     */
+    String getUnmergeable() {
+        return unmergeable;
+    }
+
+    /**
+     * The number of projections, 0 when the entities are selected implicitly.
+     */
+    int getProjectionCount() {
+        return projectionCount;
+    }
+
+    boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * An ordered column, or an ordered property of the entity in the column.
+     */
+    static final class Column {
+        private final int index;
+        private final String propertyPath;
+        private final boolean descending;
+
+        Column(int index, String propertyPath, boolean descending) {
+            this.index = index;
+            this.propertyPath = propertyPath;
+            this.descending = descending;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * The property path of the ordered property when the column is an entity, null otherwise.
+         */
+        String getPropertyPath() {
+            return propertyPath;
+        }
+
+        boolean isDescending() {
+            return descending;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+/**
+ * Creates the query of an execution on another session, with all params bound except the chunked one.
+ */
+@FunctionalInterface
+interface ChunkQueryFactory {
+
+    /**
+     * @param cleanups collects the work to run on the session after the query was executed.
+     */
+    Query<Object[]> create(Session session, List<Runnable> cleanups);
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.Query;
+
+/**
+ * Merges the results of the chunks of a batched query as if the query was executed once:
+ * the chunks are merged by the order bys of the query, duplicates are removed for a distinct
+ * query and the first/max results are applied to the merged results.
+ * <p>
+ * The order bys are resolved to the selected values by the {@link ChunkOrdering}. When they
+ * can't be merged in the order of the database the chunk results are appended in chunk order
+ * instead, which is only allowed without first/max results: the top rows of the chunks can't
+ * be determined. The same goes for null ordered values, whether the database orders them first
+ * or last depends on the database.
+ */
+final class ChunkResultMerger {
+    private final SessionFactoryImplementor sessionFactory;
+    private final ChunkOrdering ordering;
+    private final int firstResult;
+    private final int maxResults;
+
+    ChunkResultMerger(SessionFactoryImplementor sessionFactory, ChunkOrdering ordering,
+            int firstResult, int maxResults) {
+        this.sessionFactory = sessionFactory;
+        this.ordering = ordering;
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        if (ordering.getUnmergeable() != null && isRanged()) {
+            throw new IllegalArgumentException(String.format("The first/max results can't be applied to "
+                    + "the chunks of a batched param when the chunks can't be merged in the order of the "
+                    + "database: %s. Order by selected numbers, dates or booleans, or don't limit the results.",
+                    ordering.getUnmergeable()));
+        }
+    }
+
+    private boolean isRanged() {
+        return firstResult > 0 || maxResults > 0;
+    }
+
+    /**
+     * Limits a chunk to the rows which can end up in the merged results. Each chunk is listed
+     * from its first row. A distinct query is not limited because rows of different chunks
+     * may be the same, a chunk could then be missing rows after the duplicates were removed.
+     */
+    void applyChunkRange(Query<?> query) {
+        if (maxResults > 0 && !ordering.isDistinct()) {
+            query.setMaxResults(Math.max(firstResult, 0) + maxResults);
+        }
+    }
+
+    <R> List<R> merge(List<List<R>> chunks) {
+        List<R> sampleChunk = chunks.stream().filter(c -> !c.isEmpty()).findFirst().orElse(null);
+        if (sampleChunk == null) {
+            return new ArrayList<>();
+        }
+        List<Function<Object, Object>> values = getOrderedValues(sampleChunk.get(0) instanceof Object[]);
+        Comparator<Object> rowOrdering = values == null || values.isEmpty() ? null: getOrdering(chunks, values);
+        Iterator<R> rows = rowOrdering == null
+                ? chunks.stream().flatMap(List::stream).iterator()
+                : new MergingIterator<>(chunks, rowOrdering);
+
+        Set<Object> distinctRows = ordering.isDistinct() ? new HashSet<>(): null;
+        int skip = Math.max(firstResult, 0);
+        List<R> results = new ArrayList<>();
+        while (rows.hasNext() && (maxResults <= 0 || results.size() < maxResults)) {
+            R row = rows.next();
+            if (distinctRows != null && !distinctRows.add(
+                    row instanceof Object[] ? Arrays.asList((Object[]) row): row)) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+            } else {
+                results.add(row);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Creates the functions to get the ordered values of a row, or null when the
+     * order bys can't be merged. The rows are tuples when more than one value is selected,
+     * the implicitly selected entities can then only be told apart by their position.
+     */
+    private List<Function<Object, Object>> getOrderedValues(boolean tuple) {
+        if (ordering.getColumns() == null) {
+            return null;
+        }
+        if (tuple && ordering.getProjectionCount() == 0) {
+            if (isRanged() && !ordering.getColumns().isEmpty()) {
+                throw new IllegalArgumentException("The first/max results can't be applied to the chunks of "
+                        + "a batched param when the joined entities are selected implicitly, select the "
+                        + "entity which is ordered or don't limit the results.");
+            }
+            return null;
+        }
+        List<Function<Object, Object>> values = new ArrayList<>();
+        for(ChunkOrdering.Column column: ordering.getColumns()) {
+            int index = column.getIndex();
+            String propertyPath = column.getPropertyPath();
+            if (propertyPath == null) {
+                values.add(row -> getColumn(row, index, tuple));
+            } else {
+                values.add(row -> getPropertyValue(getColumn(row, index, tuple), propertyPath));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Creates the ordering of the rows, or null when an ordered value is null: the database
+     * may order nulls first or last. Without a range the chunks are then appended instead.
+     */
+    private <R> Comparator<Object> getOrdering(List<List<R>> chunks, List<Function<Object, Object>> values) {
+        boolean nullOrdered = chunks.stream().flatMap(List::stream)
+                .anyMatch(row -> values.stream().anyMatch(value -> value.apply(row) == null));
+        if (nullOrdered) {
+            if (isRanged()) {
+                throw new IllegalStateException("The first/max results can't be applied to the chunks of "
+                        + "a batched param when an ordered value is null, the database decides whether "
+                        + "nulls are ordered first or last. Exclude the null values or don't limit the results.");
+            }
+            return null;
+        }
+        Comparator<Object> ordering = null;
+        List<ChunkOrdering.Column> columns = this.ordering.getColumns();
+        for(int i = 0; i < columns.size(); i++) {
+            Function<Object, Object> value = values.get(i);
+            Comparator<Object> comparator = (row, other) -> compareValues(value.apply(row), value.apply(other));
+            if (columns.get(i).isDescending()) {
+                comparator = comparator.reversed();
+            }
+            ordering = ordering == null ? comparator: ordering.thenComparing(comparator);
+        }
+        return ordering;
+    }
+
+    private static Object getColumn(Object row, int index, boolean tuple) {
+        return tuple ? ((Object[]) row)[index]: row;
+    }
+
+    private Object getPropertyValue(Object entity, String propertyPath) {
+        if (entity == null) {
+            return null;
+        }
+        Object unproxied = Hibernate.unproxy(entity);
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(unproxied.getClass());
+        if (propertyPath.equals(persister.getIdentifierPropertyName())) {
+            return persister.getIdentifier(unproxied, null);
+        }
+        return persister.getPropertyValue(unproxied, propertyPath);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object value, Object other) {
+        return ((Comparable<Object>) value).compareTo(other);
+    }
+
+    /**
+     * Iterates the sorted chunks as one sorted sequence, keeping the chunk order for equal rows.
+     */
+    private static final class MergingIterator<R> implements Iterator<R> {
+        private final List<List<R>> chunks;
+        private final int[] positions;
+        private final PriorityQueue<Integer> heads;
+
+        MergingIterator(List<List<R>> chunks, Comparator<Object> ordering) {
+            this.chunks = chunks;
+            this.positions = new int[chunks.size()];
+            Comparator<Integer> headOrdering = (chunk, other) -> ordering.compare(
+                    chunks.get(chunk).get(positions[chunk]), chunks.get(other).get(positions[other]));
+            this.heads = new PriorityQueue<>(Math.max(chunks.size(), 1),
+                    headOrdering.thenComparing(Comparator.naturalOrder()));
+            for(int i = 0; i < chunks.size(); i++) {
+                if (!chunks.get(i).isEmpty()) {
+                    heads.add(i);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public R next() {
+            Integer chunk = heads.poll();
+            if (chunk == null) {
+                throw new NoSuchElementException();
+            }
+            R row = chunks.get(chunk).get(positions[chunk]++);
+            if (positions[chunk] < chunks.get(chunk).size()) {
+                heads.add(chunk);
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * The collection parameter of which the values are split over several executions of the same query.
+ * Either batched explicitly with a batch size, or automatically because the values
+ * don't fit in the parameter limit of the database, in which case the chunk size is adaptive.
+ */
+@Value
+class ChunkedParameter {
+    String name;
+    Collection<?> values;
+    int chunkSize;
+    boolean adaptive;
+    InListPadding padding;
+
+    /**
+     * @return the values to bind for a chunk, padded when padding is enabled.
+     */
+    Collection<?> getChunkValues(List<Object> chunk) {
+        return padding == null ? chunk: padding.pad(chunk, chunkSize);
+    }
+}
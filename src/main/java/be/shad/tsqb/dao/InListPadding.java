@@ -0,0 +1,89 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Pads the values of collection parameters to a limited set of sizes by repeating the last value,
+ * so in lists of different sizes expand to the same sql and reuse the cached query plans
+ * and prepared statements. Repeating a value doesn't change the outcome of an in restriction.
+ *
+ * @see TypeSafeQueryDaoImpl#setInListPadding(InListPadding)
+ */
+@FunctionalInterface
+public interface InListPadding {
+
+    /**
+     * @return the size to pad a list of the given size to, at least the given size.
+     */
+    int getPaddedSize(int size);
+
+    /**
+     * Pads to the next power of two: 5 values are padded to 8, 9 values to 16.
+     */
+    static InListPadding powerOfTwo() {
+        return size -> size <= 1 ? size: Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * Pads to the smallest bucket which can hold the values,
+     * lists larger than the largest bucket are padded to a multiple of it.
+     */
+    static InListPadding buckets(int... buckets) {
+        int[] sorted = buckets.clone();
+        Arrays.sort(sorted);
+        if (sorted.length == 0 || sorted[0] < 1) {
+            throw new IllegalArgumentException("The buckets must be positive: " + Arrays.toString(buckets));
+        }
+        int largest = sorted[sorted.length - 1];
+        return size -> {
+            for(int bucket: sorted) {
+                if (size <= bucket) {
+                    return bucket;
+                }
+            }
+            return (size + largest - 1) / largest * largest;
+        };
+    }
+
+    /**
+     * Pads the values, without exceeding the max size.
+     *
+     * @param maxSize the maximum amount of values, 0 or less when not limited.
+     * @return the values, or a padded copy of them.
+     */
+    default Collection<?> pad(Collection<?> values, int maxSize) {
+        int size = values.size();
+        int paddedSize = getPaddedSize(size);
+        if (maxSize > 0 && paddedSize > maxSize) {
+            paddedSize = maxSize;
+        }
+        if (size == 0 || paddedSize <= size) {
+            return values;
+        }
+        List<Object> padded = new ArrayList<>(paddedSize);
+        padded.addAll(values);
+        Object last = padded.get(size - 1);
+        while (padded.size() < paddedSize) {
+            padded.add(last);
+        }
+        return padded;
+    }
+}
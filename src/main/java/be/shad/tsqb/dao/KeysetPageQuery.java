@@ -0,0 +1,283 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.transform.ResultTransformer;
+
+import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.dao.result.KeysetPage;
+import be.shad.tsqb.data.TypeSafeQueryFrom;
+import be.shad.tsqb.data.TypeSafeQueryProxyData;
+import be.shad.tsqb.data.TypeSafeQuerySelectionProxyPropertyData;
+import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.joins.TypeSafeQueryJoin;
+import be.shad.tsqb.ordering.OrderBy;
+import be.shad.tsqb.ordering.OrderByImpl;
+import be.shad.tsqb.ordering.OrderByProjection;
+import be.shad.tsqb.query.JoinType;
+import be.shad.tsqb.query.QueryFingerprint;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.query.TypeSafeRootQueryInternal;
+import be.shad.tsqb.query.TypeSafeSubQuery;
+import be.shad.tsqb.values.CustomTypeSafeValue;
+import be.shad.tsqb.values.HqlQueryBuilderParamsImpl;
+import be.shad.tsqb.values.HqlQueryValue;
+import be.shad.tsqb.values.TypeSafeValue;
+
+/**
+ * Renders a root query to fetch one page of a keyset (seek) pagination.
+ * <p>
+ * The order by values are selected after the selection of the query and the identifiers
+ * of the froms and of the collection and class joins are added as last order bys, so the
+ * order is unique, also when a to-many join yields several rows for the same root.
+ * The page after a continuation token is restricted to the rows after the values of the token:
+ * {@code (a > :a) or (a = :a and b > :b) or ...}, so the database can seek to the
+ * start of the page with an index instead of skipping the rows of the previous pages.
+ */
+final class KeysetPageQuery {
+    private final byte[] tokenKey;
+    private final HqlQuery hqlQuery;
+    private final long fingerprint;
+    private final int resultWidth;
+    private final List<String> keysetHqls = new ArrayList<>();
+
+    /**
+     * @param tokenKey the key to sign the continuation tokens with.
+     */
+    KeysetPageQuery(TypeSafeRootQuery query, String continuationToken, byte[] tokenKey) {
+        if (query.getFirstResult() > 0) {
+            throw new IllegalArgumentException("The first result can't be used with keyset pagination, "
+                    + "pages are continued with a continuation token.");
+        }
+        if (query.getMaxResults() > 0) {
+            throw new IllegalArgumentException("The max results can't be used with keyset pagination, "
+                    + "the page size limits the results.");
+        }
+        this.tokenKey = tokenKey;
+        TypeSafeRootQueryInternal queryInternal = (TypeSafeRootQueryInternal) query;
+        HqlQueryBuilderParamsImpl params = new HqlQueryBuilderParamsImpl();
+        hqlQuery = query.toHqlQuery(params);
+        fingerprint = QueryFingerprint.of(hqlQuery, queryInternal.getProjections().getResultClass());
+        if (!hqlQuery.getGroupBy().isEmpty()) {
+            throw new IllegalArgumentException("Keyset pagination of a query with a group by "
+                    + "is not supported: " + hqlQuery.getHql());
+        }
+        if (isSelectingCollection(queryInternal)) {
+            // the rows of one result would be split over two pages and the page size would count rows:
+            throw new IllegalArgumentException("Keyset pagination of a query selecting into "
+                    + "a collection is not supported: " + hqlQuery.getHql());
+        }
+
+        List<TypeSafeValue<?>> keysetValues = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        for(OrderBy orderBy: queryInternal.getOrderBys().getOrderBys()) {
+            if (orderBy instanceof OrderByImpl) {
+                keysetValues.add(((OrderByImpl) orderBy).getValue());
+                descending.add(((OrderByImpl) orderBy).isDescending());
+            } else if (orderBy instanceof OrderByProjection) {
+                TypeSafeValue<?> value = queryInternal.getProjections().getTypeSafeValue(
+                        ((OrderByProjection) orderBy).getPropertyPath(), false);
+                if (value instanceof TypeSafeSubQuery<?>) {
+                    throw new IllegalArgumentException("Keyset pagination can't order by a subquery: "
+                            + ((OrderByProjection) orderBy).getPropertyPath());
+                }
+                keysetValues.add(value);
+                descending.add(((OrderByProjection) orderBy).isDescending());
+            } else {
+                throw new IllegalArgumentException("Keyset pagination only supports ordering by values "
+                        + "and selected properties, not by: " + orderBy);
+            }
+        }
+
+        // order by the identifiers last, to continue at the right row when the other values are equal.
+        // a row is only unique by the identifiers of the froms and of the joins which can multiply a row:
+        List<String> keysetLiterals = new ArrayList<>();
+        for(TypeSafeValue<?> value: keysetValues) {
+            keysetLiterals.add(render(value, params, true).getHql());
+        }
+        List<TypeSafeQueryFrom> froms = queryInternal.getDataTree().getFroms();
+        for(TypeSafeQueryFrom from: froms) {
+            appendIdentifierOrderBy(queryInternal, from.getRoot(), keysetValues, descending, keysetLiterals);
+            for(TypeSafeQueryJoin<?> join: from.getJoins()) {
+                if (isToManyJoin(join.getData())) {
+                    appendIdentifierOrderBy(queryInternal, join.getData(), keysetValues, descending, keysetLiterals);
+                }
+            }
+        }
+
+        if (hqlQuery.getSelectParts().isEmpty()) {
+            // hibernate selects the root and each joined entity when no select is given:
+            if (froms.size() > 1 || froms.get(0).getJoins().stream().anyMatch(this::isSelectedJoin)) {
+                throw new IllegalArgumentException("Keyset pagination of a query with joins requires "
+                        + "an explicit selection: " + hqlQuery.getHql());
+            }
+            hqlQuery.appendSelect(froms.get(0).getRoot().getAlias());
+        }
+        resultWidth = hqlQuery.getSelectParts().size();
+        for(TypeSafeValue<?> value: keysetValues) {
+            HqlQueryValue literal = render(value, params, true);
+            hqlQuery.appendSelect(literal.getHql());
+            keysetHqls.add(literal.getHql());
+        }
+
+        if (continuationToken != null) {
+            Class<?>[] valueClasses = new Class<?>[keysetValues.size()];
+            for(int i = 0; i < valueClasses.length; i++) {
+                valueClasses[i] = keysetValues.get(i).getValueClass();
+            }
+            Object[] lastValues = KeysetToken.decode(tokenKey, fingerprint, continuationToken, valueClasses);
+            appendContinuation(keysetValues, descending, lastValues, params);
+        }
+    }
+
+    /**
+     * Restricts the query to the rows after the last values: (a > :a) or (a = :a and b > :b) or ...
+     */
+    private void appendContinuation(List<TypeSafeValue<?>> keysetValues, List<Boolean> descending,
+            Object[] lastValues, HqlQueryBuilderParamsImpl params) {
+        StringBuilder continuation = new StringBuilder("(");
+        List<Object> continuationParams = new ArrayList<>();
+        for(int i = 0; i < keysetValues.size(); i++) {
+            if (i > 0) {
+                continuation.append(" or ");
+            }
+            continuation.append("(");
+            for(int j = 0; j <= i; j++) {
+                if (j > 0) {
+                    continuation.append(" and ");
+                }
+                HqlQueryValue value = render(keysetValues.get(j), params, false);
+                String name = params.createNamedParameter();
+                String operator = j < i ? " = " : descending.get(j) ? " < ": " > ";
+                continuation.append(value.getHql()).append(operator).append(":").append(name);
+                continuationParams.addAll(value.getParams());
+                continuationParams.add(new NamedParameter(name, lastValues[j]));
+            }
+            continuation.append(")");
+        }
+        continuation.append(")");
+        hqlQuery.groupWhere();
+        hqlQuery.appendWhere(continuation.toString());
+        hqlQuery.addParams(continuationParams);
+    }
+
+    /**
+     * Adds the identifier of the data as order by, unless the query already orders by it.
+     */
+    private void appendIdentifierOrderBy(TypeSafeRootQueryInternal query, TypeSafeQueryProxyData data,
+            List<TypeSafeValue<?>> keysetValues, List<Boolean> descending, List<String> keysetLiterals) {
+        String identifierPath = null;
+        if (data.getProxyType().isEntity()) {
+            identifierPath = query.getHelper().getEntityIdPropertyName(data.getPropertyType());
+        }
+        if (identifierPath == null) {
+            throw new IllegalArgumentException("Keyset pagination requires an identifier to order by, "
+                    + "but the joined type has none: " + data);
+        }
+        String identifierHql = data.getAlias() + "." + identifierPath;
+        if (!keysetLiterals.contains(identifierHql)) {
+            keysetValues.add(new CustomTypeSafeValue<>(query, Object.class, identifierHql));
+            descending.add(false);
+            keysetLiterals.add(identifierHql);
+            hqlQuery.appendOrderBy(identifierHql);
+        }
+    }
+
+    /**
+     * Checks whether the join can yield several rows for a row of its parent, which is the case for
+     * collection joins and class joins. Only inner joins are accepted, an outer join yields a null
+     * identifier to continue after and a fetch join would cut the fetched collection at the page end.
+     */
+    private boolean isToManyJoin(TypeSafeQueryProxyData data) {
+        JoinType joinType = data.getEffectiveJoinType();
+        if (joinType == JoinType.None || data.getPropertyPath() != null && !data.getProxyType().isCollection()) {
+            return false;
+        }
+        if (joinType != JoinType.Inner) {
+            throw new IllegalArgumentException(String.format("Keyset pagination only supports inner joins "
+                    + "for joins which can yield several rows, not [%s] for: %s", joinType, data));
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a selection group has a collection sub-selection,
+     * of which the elements are collected from several rows per result.
+     */
+    private static boolean isSelectingCollection(TypeSafeRootQueryInternal query) {
+        for(TypeSafeQuerySelectionProxyPropertyData<?> data: query.getDataTree().getSelectionDatas()) {
+            if (data.isCollection() || data.getGroup().getChildren().stream()
+                    .anyMatch(TypeSafeQuerySelectionProxyPropertyData::isCollection)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSelectedJoin(TypeSafeQueryJoin<?> join) {
+        JoinType joinType = join.getData().getEffectiveJoinType();
+        return joinType != JoinType.None && joinType != JoinType.Fetch && joinType != JoinType.LeftFetch;
+    }
+
+    private static HqlQueryValue render(TypeSafeValue<?> value, HqlQueryBuilderParamsImpl params,
+            boolean requiresLiterals) {
+        boolean previous = params.setRequiresLiterals(requiresLiterals);
+        HqlQueryValue hqlValue = value.toHqlQueryValue(params);
+        params.setRequiresLiterals(previous);
+        return hqlValue;
+    }
+
+    HqlQuery getHqlQuery() {
+        return hqlQuery;
+    }
+
+    /**
+     * Strips the selected order by values from the rows and transforms them to the results of the page.
+     * The continuation token holds the order by values of the last row, if there is another page.
+     *
+     * @param rows at most one row more than the page size, to know whether there is another page.
+     */
+    @SuppressWarnings("unchecked")
+    <T> KeysetPage<T> toPage(List<Object[]> rows, int pageSize) {
+        boolean hasNext = rows.size() > pageSize;
+        List<Object[]> pageRows = hasNext ? rows.subList(0, pageSize): rows;
+        List<Object> results = new ArrayList<>(pageRows.size());
+        for(Object[] row: pageRows) {
+            results.add(resultWidth == 1 ? row[0]: Arrays.copyOf(row, resultWidth));
+        }
+        String continuationToken = null;
+        if (hasNext) {
+            Object[] lastRow = pageRows.get(pageSize - 1);
+            Object[] lastValues = Arrays.copyOfRange(lastRow, resultWidth, lastRow.length);
+            for(int i = 0; i < lastValues.length; i++) {
+                if (lastValues[i] == null) {
+                    throw new IllegalStateException(String.format("Keyset pagination requires values "
+                            + "to order by, but [%s] is null for the last row of the page.", keysetHqls.get(i)));
+                }
+            }
+            continuationToken = KeysetToken.encode(tokenKey, fingerprint, lastValues);
+        }
+        ResultTransformer resultTransformer = hqlQuery.getResultTransformer();
+        if (resultTransformer != null) {
+            results = resultTransformer.transformList(results);
+        }
+        return new KeysetPage<>((List<T>) results, continuationToken);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encodes the order by values of the last row of a keyset page into an opaque, url safe token.
+ * <p>
+ * The values are written with their type instead of with java serialization,
+ * so a token received from a client can't instantiate arbitrary classes.
+ * The token starts with the fingerprint of the query, to reject tokens of another query,
+ * and ends with an HMAC of the values, to reject tokens which were changed by a client.
+ */
+final class KeysetToken {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    private static final int SIGNATURE_LENGTH = 16;
+
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte BIG_INTEGER = 9;
+    private static final byte BOOLEAN = 10;
+    private static final byte CHARACTER = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte SQL_DATE = 13;
+    private static final byte SQL_TIME = 14;
+    private static final byte DATE = 15;
+    private static final byte LOCAL_DATE = 16;
+    private static final byte LOCAL_DATE_TIME = 17;
+    private static final byte LOCAL_TIME = 18;
+    private static final byte INSTANT = 19;
+    private static final byte OFFSET_DATE_TIME = 20;
+    private static final byte UUID_VALUE = 21;
+    private static final byte ENUM = 22;
+
+    private KeysetToken() {
+    }
+
+    /**
+     * @return a random key, tokens signed with it are only valid as long as the key is kept.
+     */
+    static byte[] createKey() {
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    static String encode(byte[] key, long fingerprint, Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(fingerprint);
+            out.writeShort(values.length);
+            for(Object value: values) {
+                write(out, value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        byte[] token = Arrays.copyOf(payload, payload.length + SIGNATURE_LENGTH);
+        System.arraycopy(sign(key, payload), 0, token, payload.length, SIGNATURE_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * @param valueClasses the declared classes of the values, used to resolve enum constants.
+     */
+    static Object[] decode(byte[] key, long fingerprint, String token, Class<?>[] valueClasses) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The continuation token is invalid: " + token, e);
+        }
+        int payloadLength = bytes.length - SIGNATURE_LENGTH;
+        if (payloadLength < 0 || !MessageDigest.isEqual(
+                sign(key, Arrays.copyOf(bytes, payloadLength)),
+                Arrays.copyOfRange(bytes, payloadLength, bytes.length))) {
+            throw new IllegalArgumentException("The continuation token was changed "
+                    + "or signed with another key: " + token);
+        }
+
+        long tokenFingerprint;
+        Object[] values;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, payloadLength))) {
+            tokenFingerprint = in.readLong();
+            values = new Object[in.readShort()];
+            for(int i = 0; i < values.length; i++) {
+                values[i] = read(in, i < valueClasses.length ? valueClasses[i]: null);
+            }
+            if (in.read() != -1) {
+                throw new IOException("Unexpected bytes after the last value.");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("The continuation token is invalid: " + token, e);
+        }
+        if (tokenFingerprint != fingerprint) {
+            throw new IllegalArgumentException("The continuation token was created for another query: " + token);
+        }
+        if (values.length != valueClasses.length) {
+            throw new IllegalArgumentException(String.format("The continuation token contains [%d] values, "
+                    + "the query orders by [%d] values: %s", values.length, valueClasses.length, token));
+        }
+        return values;
+    }
+
+    private static byte[] sign(byte[] key, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            return Arrays.copyOf(mac.doFinal(payload), SIGNATURE_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("The continuation token can't be signed with " + MAC_ALGORITHM, e);
+        }
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof java.sql.Time) {
+            out.writeByte(SQL_TIME);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeLong(((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+            out.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(LOCAL_TIME);
+            out.writeLong(((LocalTime) value).toNanoOfDay());
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            out.writeLong(((Instant) value).getEpochSecond());
+            out.writeInt(((Instant) value).getNano());
+        } else if (value instanceof OffsetDateTime) {
+            OffsetDateTime dateTime = (OffsetDateTime) value;
+            out.writeByte(OFFSET_DATE_TIME);
+            out.writeLong(dateTime.toLocalDate().toEpochDay());
+            out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+            out.writeInt(dateTime.getOffset().getTotalSeconds());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(((UUID) value).getMostSignificantBits());
+            out.writeLong(((UUID) value).getLeastSignificantBits());
+        } else if (value instanceof Enum<?>) {
+            out.writeByte(ENUM);
+            out.writeUTF(((Enum<?>) value).name());
+        } else {
+            throw new IllegalStateException(String.format("Values of type [%s] can't be used "
+                    + "in a continuation token: %s", value == null ? null: value.getClass(), value));
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object read(DataInputStream in, Class<?> valueClass) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case STRING: return in.readUTF();
+            case LONG: return in.readLong();
+            case INTEGER: return in.readInt();
+            case SHORT: return in.readShort();
+            case BYTE: return in.readByte();
+            case DOUBLE: return in.readDouble();
+            case FLOAT: return in.readFloat();
+            case BIG_DECIMAL: return new BigDecimal(in.readUTF());
+            case BIG_INTEGER: return new BigInteger(in.readUTF());
+            case BOOLEAN: return in.readBoolean();
+            case CHARACTER: return in.readChar();
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case SQL_DATE: return new java.sql.Date(in.readLong());
+            case SQL_TIME: return new java.sql.Time(in.readLong());
+            case DATE: return new Date(in.readLong());
+            case LOCAL_DATE: return LocalDate.ofEpochDay(in.readLong());
+            case LOCAL_DATE_TIME: return LocalDateTime.of(
+                    LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+            case LOCAL_TIME: return LocalTime.ofNanoOfDay(in.readLong());
+            case INSTANT: return Instant.ofEpochSecond(in.readLong(), in.readInt());
+            case OFFSET_DATE_TIME: return OffsetDateTime.of(
+                    LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()),
+                    ZoneOffset.ofTotalSeconds(in.readInt()));
+            case UUID_VALUE: return new UUID(in.readLong(), in.readLong());
+            case ENUM:
+                if (valueClass == null || !valueClass.isEnum()) {
+                    throw new IOException("An enum was written for a value of type: " + valueClass);
+                }
+                return Enum.valueOf((Class) valueClass, in.readUTF());
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+}
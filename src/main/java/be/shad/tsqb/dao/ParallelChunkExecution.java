@@ -0,0 +1,160 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import be.shad.tsqb.dao.result.ChunkTiming;
+import be.shad.tsqb.exceptions.TsqbException;
+import be.shad.tsqb.jfr.HqlExecutionEvent;
+
+/**
+ * Opt-in execution of the chunks of a batched collection parameter on separate sessions at the same time,
+ * see {@link TypeSafeQueryDaoImpl#setParallelChunkExecution(ParallelChunkExecution)}.
+ * <p>
+ * At most parallelism tasks are submitted to the executor, each task opens one session
+ * and lists chunks until all chunks are listed. The chunk size isn't adapted to the latency
+ * when chunks are listed in parallel, all chunks are split up front. The rows of the chunks are merged
+ * the same way as when the chunks are listed sequentially, so the result transformer still sees all rows at once.
+ * <p>
+ * The sessions are closed when the chunks are listed, so this is meant for selecting values or dtos.
+ * Selected entities would be detached. Update and delete queries are always executed sequentially
+ * on the current session, to keep them in the same transaction.
+ */
+public class ParallelChunkExecution {
+    private final Supplier<Session> sessionOpener;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * @param sessionOpener opens a new session for a task, for example sessionFactory::openSession.
+     *        The session is closed by the task.
+     * @param executor runs the tasks, a bounded pool or a virtual thread executor.
+     * @param parallelism the maximum amount of chunks which are listed at the same time.
+     */
+    public ParallelChunkExecution(Supplier<Session> sessionOpener, Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be at least 1, was: " + parallelism);
+        }
+        this.sessionOpener = sessionOpener;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Lists all chunks of the batched parameter, using a query created by the query factory for each task.
+     * The query factory creates the query for the session and binds all parameters except the batched one.
+     * The timings of the chunks are added in chunk order.
+     *
+     * @return the rows per chunk, in chunk order.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    List<List<Object[]>> listChunks(ChunkQueryFactory queryFactory, ChunkedParameter chunkedParam,
+            HibernateQueryConfigurer configurer, List<ChunkTiming> chunkTimings, QueryExecutionRecorder recorder) {
+        List<List<Object>> chunks = split(chunkedParam.getValues(), chunkedParam.getChunkSize());
+        List<Object[]>[] chunkResults = new List[chunks.size()];
+        long[] chunkNanos = new long[chunks.size()];
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        int tasks = Math.min(parallelism, chunks.size());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks];
+        for(int t = 0; t < tasks; t++) {
+            futures[t] = CompletableFuture.runAsync(() -> {
+                Session session = sessionOpener.get();
+                List<Runnable> cleanups = new ArrayList<>();
+                boolean listed = false;
+                try {
+                    if (configurer != null) {
+                        configurer.beforeQuery(session);
+                    }
+                    try {
+                        Query<Object[]> query = queryFactory.create(session, cleanups);
+                        int i;
+                        while (!failed.get() && (i = nextChunk.getAndIncrement()) < chunkResults.length) {
+                            query.setParameterList(chunkedParam.getName(), chunkedParam.getChunkValues(chunks.get(i)));
+                            HqlExecutionEvent event = recorder.beginExecution();
+                            long start = System.nanoTime();
+                            chunkResults[i] = query.getResultList();
+                            chunkNanos[i] = System.nanoTime() - start;
+                            recorder.endExecution(event, i, chunks.get(i).size(), chunkResults[i].size());
+                        }
+                    } finally {
+                        cleanups.forEach(Runnable::run);
+                        if (configurer != null) {
+                            configurer.afterQuery(session);
+                        }
+                    }
+                    listed = true;
+                } finally {
+                    if (!listed) {
+                        // stop the other tasks from starting new chunks, also when an error was thrown
+                        failed.set(true);
+                    }
+                    session.close();
+                }
+            }, executor);
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new TsqbException(e.getCause());
+        }
+
+        List<List<Object[]>> results = new ArrayList<>(chunkResults.length);
+        for(int i = 0; i < chunkResults.length; i++) {
+            results.add(chunkResults[i]);
+            chunkTimings.add(new ChunkTiming(i, chunks.get(i).size(), chunkResults[i].size(), chunkNanos[i]));
+        }
+        return results;
+    }
+
+    private List<List<Object>> split(Collection<?> values, int batchSize) {
+        List<List<Object>> chunks = new ArrayList<>(values.size() / batchSize + 1);
+        List<Object> chunk = new ArrayList<>(batchSize);
+        Iterator<?> it = values.iterator();
+        while (it.hasNext()) {
+            chunk.add(it.next());
+            if (chunk.size() == batchSize || !it.hasNext()) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.TempTableNamedParameter;
+import be.shad.tsqb.dao.result.ChunkTiming;
+import be.shad.tsqb.dao.result.QueryExecutionEvent;
+import be.shad.tsqb.jfr.FlightRecorderEvents;
+import be.shad.tsqb.jfr.HqlExecutionEvent;
+import be.shad.tsqb.query.QueryFingerprint;
+import be.shad.tsqb.values.HqlQueryValue;
+
+/**
+ * Measures the phases of one query execution for the {@link QueryExecutionListener}
+ * and records each execution of the query as a {@link HqlExecutionEvent} in the flight recorder.
+ * <p>
+ * {@link #NONE} is used when no listener is registered and the event isn't recorded, it doesn't
+ * read the clock or keep any state, so executing a query without them doesn't allocate anything for it.
+ */
+class QueryExecutionRecorder {
+    static final QueryExecutionRecorder NONE = new QueryExecutionRecorder(null, false);
+
+    private final QueryExecutionListener listener;
+    private final boolean recordingExecutions;
+    private long fingerprint;
+    private String hql;
+    private int rowCount;
+    private long buildNanos;
+    private long createQueryNanos;
+    private long bindNanos;
+    private long executeNanos;
+    private long transformNanos;
+
+    private QueryExecutionRecorder(QueryExecutionListener listener, boolean recordingExecutions) {
+        this.listener = listener;
+        this.recordingExecutions = recordingExecutions;
+    }
+
+    static QueryExecutionRecorder start(QueryExecutionListener listener) {
+        boolean recordingExecutions = FlightRecorderEvents.AVAILABLE && HqlExecutionEvent.isRecording();
+        if (listener == null && !recordingExecutions) {
+            return NONE;
+        }
+        return new QueryExecutionRecorder(listener, recordingExecutions);
+    }
+
+    /**
+     * @return the start of a phase.
+     */
+    long now() {
+        return listener == null ? 0: System.nanoTime();
+    }
+
+    void built(long start) {
+        if (listener != null) {
+            buildNanos = System.nanoTime() - start;
+        }
+    }
+
+    void queryCreated(long start) {
+        if (listener != null) {
+            createQueryNanos = System.nanoTime() - start;
+        }
+    }
+
+    void bound(long start) {
+        if (listener != null) {
+            bindNanos = System.nanoTime() - start;
+        }
+    }
+
+    void executed(long start, int rowCount) {
+        if (listener != null) {
+            executeNanos = System.nanoTime() - start;
+            this.rowCount = rowCount;
+        }
+    }
+
+    void transformed(long start) {
+        if (listener != null) {
+            transformNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Identifies the query which was built for this execution.
+     */
+    void query(HqlQueryValue hqlQuery, Class<?> resultClass) {
+        if (this != NONE) {
+            query(QueryFingerprint.of(hqlQuery, resultClass), hqlQuery.getHql());
+        }
+    }
+
+    /**
+     * Identifies the query of this execution.
+     */
+    void query(long fingerprint, String hql) {
+        if (this != NONE) {
+            this.fingerprint = fingerprint;
+            this.hql = hql;
+        }
+    }
+
+    /**
+     * Begins the event of one execution of the query, null when it isn't recorded.
+     * Chunks may be executed in parallel, the events are not kept by the recorder.
+     */
+    HqlExecutionEvent beginExecution() {
+        return recordingExecutions ? HqlExecutionEvent.start(): null;
+    }
+
+    /**
+     * @param chunkSize the number of values bound to the batched parameter, 0 when the query isn't batched.
+     */
+    void endExecution(HqlExecutionEvent event, int chunkIndex, int chunkSize, int rowCount) {
+        if (event != null) {
+            event.record(fingerprint, hql.length(), chunkIndex, chunkSize, rowCount);
+        }
+    }
+
+    /**
+     * Notifies the listener with the measured phases.
+     */
+    void finish(Collection<Object> params, List<ChunkTiming> chunkTimings) {
+        if (listener != null) {
+            listener.queryExecuted(new QueryExecutionEvent(fingerprint, hql, countParameters(params), rowCount,
+                    buildNanos, createQueryNanos, bindNanos, executeNanos, transformNanos, chunkTimings));
+        }
+    }
+
+    private static int countParameters(Collection<Object> params) {
+        int count = 0;
+        for(Object param: params) {
+            if (param instanceof TempTableNamedParameter) {
+                // only the id of the loaded values is bound
+                count++;
+                continue;
+            }
+            Object value = param instanceof NamedParameter ? ((NamedParameter) param).getValue(): param;
+            count += value instanceof Collection<?> ? ((Collection<?>) value).size(): 1;
+        }
+        return count;
+    }
+}
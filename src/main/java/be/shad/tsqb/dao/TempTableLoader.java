@@ -0,0 +1,88 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao;
+
+import static be.shad.tsqb.temptable.TempTableValue.INDEX_COLUMN;
+import static be.shad.tsqb.temptable.TempTableValue.LONG_VALUE_COLUMN;
+import static be.shad.tsqb.temptable.TempTableValue.SET_ID_COLUMN;
+import static be.shad.tsqb.temptable.TempTableValue.STRING_VALUE_COLUMN;
+import static be.shad.tsqb.temptable.TempTableValue.TABLE_NAME;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.UUID;
+
+import org.hibernate.Session;
+
+import be.shad.tsqb.TempTableNamedParameter;
+import be.shad.tsqb.temptable.TempTableValue;
+
+/**
+ * Loads the values of temp table parameters with jdbc batch inserts on the connection of the session,
+ * and deletes them again after the query was executed.
+ */
+final class TempTableLoader {
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final String INSERT = String.format("insert into %s (%s, %s, %s, %s) values (?, ?, ?, ?)",
+            TABLE_NAME, SET_ID_COLUMN, INDEX_COLUMN, LONG_VALUE_COLUMN, STRING_VALUE_COLUMN);
+    private static final String DELETE = String.format("delete from %s where %s = ?",
+            TABLE_NAME, SET_ID_COLUMN);
+
+    private TempTableLoader() {
+    }
+
+    /**
+     * Inserts the values of the parameter as a new set.
+     * @return the id of the set, to bind to the parameter.
+     */
+    static String insert(Session session, TempTableNamedParameter param) {
+        String setId = UUID.randomUUID().toString();
+        boolean longValue = TempTableValue.isLongValue(param.getValueClass());
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                int index = 0;
+                for(Object value: param.getValue()) {
+                    statement.setString(1, setId);
+                    statement.setInt(2, index++);
+                    if (longValue) {
+                        statement.setLong(3, ((Number) value).longValue());
+                        statement.setNull(4, Types.VARCHAR);
+                    } else {
+                        statement.setNull(3, Types.BIGINT);
+                        statement.setString(4, value.toString());
+                    }
+                    statement.addBatch();
+                    if (index % INSERT_BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                if (index % INSERT_BATCH_SIZE != 0) {
+                    statement.executeBatch();
+                }
+            }
+        });
+        return setId;
+    }
+
+    static void delete(Session session, String setId) {
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE)) {
+                statement.setString(1, setId);
+                statement.executeUpdate();
+            }
+        });
+    }
+}
@@ -15,8 +15,15 @@
  */
 package be.shad.tsqb.dao;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
+import be.shad.tsqb.dao.prepared.PreparedTypeSafeQuery;
+import be.shad.tsqb.dao.result.KeysetPage;
+import be.shad.tsqb.dao.result.PagedQueryResult;
 import be.shad.tsqb.dao.result.QueryResult;
 import be.shad.tsqb.query.TypeSafeDeleteQuery;
 import be.shad.tsqb.query.TypeSafeRootQuery;
@@ -102,4 +109,128 @@ public interface TypeSafeQueryDao {
      * Delegates to {@link #doQuery(TypeSafeRootQuery)} and returns the results.
      */
     <T> List<T> doQueryResults(TypeSafeRootQuery query, HibernateQueryConfigurer configurer);
+
+    /**
+     * Delegates to {@link #doQueryPage(TypeSafeRootQuery, HibernateQueryConfigurer)} without configurer.
+     */
+    default <T> PagedQueryResult<T> doQueryPage(TypeSafeRootQuery query) {
+        return doQueryPage(query, null);
+    }
+
+    /**
+     * Lists the page of the query within its first and max results and counts the rows of
+     * the query without them. The query is built once, the count query is rendered in the same pass
+     * from the same from and where parts, instead of building the query again like {@link #doCount}.
+     * <p>
+     * By default the page is listed with {@link #doQuery(TypeSafeRootQuery, HibernateQueryConfigurer)}
+     * and counted with {@link #doCount(TypeSafeRootQuery)}, building the query twice.
+     */
+    default <T> PagedQueryResult<T> doQueryPage(TypeSafeRootQuery query, HibernateQueryConfigurer configurer) {
+        QueryResult<T> page = doQuery(query, configurer);
+        return new PagedQueryResult<>(page.getResults(), page.getChunkTimings(), doCount(query));
+    }
+
+    /**
+     * Delegates to {@link #doQueryAsync(TypeSafeRootQuery, HibernateQueryConfigurer)} without configurer.
+     */
+    default <T> CompletableFuture<QueryResult<T>> doQueryAsync(TypeSafeRootQuery query) {
+        return doQueryAsync(query, null);
+    }
+
+    /**
+     * Executes the query like {@link #doQuery(TypeSafeRootQuery, HibernateQueryConfigurer)},
+     * but on a new session on another thread, instead of on the current session.
+     * The session is closed when the results are listed. A failure completes the future exceptionally.
+     * <p>
+     * The query must not be changed until the future completes.
+     *
+     * @throws IllegalStateException when the dao can't open other sessions.
+     */
+    <T> CompletableFuture<QueryResult<T>> doQueryAsync(TypeSafeRootQuery query, HibernateQueryConfigurer configurer);
+
+    /**
+     * Delegates to {@link #doQueriesParallel(List, HibernateQueryConfigurer)} without configurer.
+     */
+    default <T> List<CompletableFuture<QueryResult<T>>> doQueriesParallel(List<? extends TypeSafeRootQuery> queries) {
+        return doQueriesParallel(queries, null);
+    }
+
+    /**
+     * Starts {@link #doQueryAsync(TypeSafeRootQuery, HibernateQueryConfigurer)} for each query,
+     * so independent queries are executed at the same time, each on its own session.
+     * A failing query only fails its own future.
+     *
+     * @return the futures in the order of the queries.
+     */
+    default <T> List<CompletableFuture<QueryResult<T>>> doQueriesParallel(List<? extends TypeSafeRootQuery> queries,
+            HibernateQueryConfigurer configurer) {
+        List<CompletableFuture<QueryResult<T>>> futures = new ArrayList<>(queries.size());
+        for(TypeSafeRootQuery query: queries) {
+            futures.add(this.<T>doQueryAsync(query, configurer));
+        }
+        return futures;
+    }
+
+    /**
+     * Delegates to {@link #doQueryStream(TypeSafeRootQuery, int, HibernateQueryConfigurer)}
+     * with the default fetch size and without configurer.
+     */
+    <T> Stream<T> doQueryStream(TypeSafeRootQuery query);
+
+    /**
+     * Executes the query with a forward only scroll and transforms the rows while they are read,
+     * instead of listing all rows and transforming them afterwards.
+     * <p>
+     * When selecting into a dto with identity fields, order the query by those identity fields first,
+     * then each result is passed on as soon as its rows were read and is forgotten afterwards,
+     * so the memory use stays flat. Without such ordering the results are only complete after
+     * the last row and are all kept until then.
+     * <p>
+     * The stream must be closed when it isn't read until the end, this closes the scroll
+     * and calls {@link HibernateQueryConfigurer#afterQuery(org.hibernate.Session)}.
+     * Selected entities remain in the session, clear it or use a stateless session when exporting many.
+     *
+     * @param fetchSize the jdbc fetch size, the amount of rows fetched per database round trip.
+     */
+    <T> Stream<T> doQueryStream(TypeSafeRootQuery query, int fetchSize, HibernateQueryConfigurer configurer);
+
+    /**
+     * Delegates to {@link #doQueryKeysetPage(TypeSafeRootQuery, int, String, HibernateQueryConfigurer)}
+     * without configurer.
+     */
+    default <T> KeysetPage<T> doQueryKeysetPage(TypeSafeRootQuery query, int pageSize, String continuationToken) {
+        return doQueryKeysetPage(query, pageSize, continuationToken, null);
+    }
+
+    /**
+     * Fetches a page of the query with keyset (seek) pagination: the page after a continuation token
+     * starts after the order by values of the last row of the previous page, instead of at an offset.
+     * The database seeks to the start of the page, so later pages are as fast as the first one
+     * and rows inserted or deleted meanwhile don't shift the pages.
+     * <p>
+     * The query is ordered by its order bys and then by the identifiers of the froms and of the joins
+     * which can yield several rows, the order by values must not be null. Pass a null token for the first
+     * page and the token of the returned page for the next one, the token is signed and only valid for the
+     * same query. The page size replaces the max results, the first and max results must not be set.
+     */
+    <T> KeysetPage<T> doQueryKeysetPage(TypeSafeRootQuery query, int pageSize, String continuationToken,
+            HibernateQueryConfigurer configurer);
+
+    /**
+     * Transforms the query to hql once, so it can be executed many times
+     * with other values for its named values without building the query again.
+     */
+    <T> PreparedTypeSafeQuery<T> prepare(TypeSafeRootQuery query);
+
+    /**
+     * Delegates to {@link #doQuery(PreparedTypeSafeQuery, Map, HibernateQueryConfigurer)} without configurer.
+     */
+    <T> QueryResult<T> doQuery(PreparedTypeSafeQuery<T> query, Map<String, ?> namedValues);
+
+    /**
+     * Executes the prepared query with the given values for the named values,
+     * the values of the other parameters are the values the query was prepared with.
+     */
+    <T> QueryResult<T> doQuery(PreparedTypeSafeQuery<T> query, Map<String, ?> namedValues,
+            HibernateQueryConfigurer configurer);
 }
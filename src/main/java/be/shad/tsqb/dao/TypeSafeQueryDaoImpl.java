@@ -15,40 +15,80 @@
  */
 package be.shad.tsqb.dao;
 
-import static java.util.stream.Collectors.toList;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.metamodel.spi.MetamodelImplementor;
 import org.hibernate.query.Query;
+import org.hibernate.transform.ResultTransformer;
 
 import be.shad.tsqb.CollectionNamedParameter;
 import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.TempTableNamedParameter;
+import be.shad.tsqb.dao.prepared.PreparedTypeSafeQuery;
+import be.shad.tsqb.dao.result.ChunkTiming;
+import be.shad.tsqb.dao.result.KeysetPage;
+import be.shad.tsqb.dao.result.PagedQueryResult;
 import be.shad.tsqb.dao.result.QueryResult;
+import be.shad.tsqb.dao.result.ScrollingResultSpliterator;
+import be.shad.tsqb.exceptions.TsqbException;
 import be.shad.tsqb.helper.TypeSafeQueryHelper;
 import be.shad.tsqb.helper.TypeSafeQueryHelperImpl;
 import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.jfr.HqlExecutionEvent;
+import be.shad.tsqb.query.QueryFingerprint;
 import be.shad.tsqb.query.TypeSafeBaseQuery;
 import be.shad.tsqb.query.TypeSafeDeleteQuery;
 import be.shad.tsqb.query.TypeSafeDeleteQueryImpl;
 import be.shad.tsqb.query.TypeSafeRootQuery;
 import be.shad.tsqb.query.TypeSafeRootQueryImpl;
+import be.shad.tsqb.query.TypeSafeRootQueryInternal;
 import be.shad.tsqb.query.TypeSafeUpdateQuery;
 import be.shad.tsqb.query.TypeSafeUpdateQueryImpl;
+import be.shad.tsqb.selection.TypeSafeQueryResultTransformer;
 import be.shad.tsqb.values.HqlQueryBuilderParams;
 import be.shad.tsqb.values.HqlQueryBuilderParamsImpl;
 import be.shad.tsqb.values.HqlQueryValue;
 
 public class TypeSafeQueryDaoImpl implements TypeSafeQueryDao {
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+    public static final long DEFAULT_TARGET_CHUNK_MILLIS = 1000;
+    private static final int SQL_SERVER_PARAMETER_LIMIT = 2100;
+    private static final int POSTGRESQL_PARAMETER_LIMIT = 32767;
+    private static final int MYSQL_PARAMETER_LIMIT = 65535;
+    private static final int RANGE_PARAMETER_COUNT = 2;
+
     private final Supplier<Session> sessionSup;
     private final TypeSafeQueryHelper typeSafeQueryHelper;
+    private ParallelChunkExecution parallelChunkExecution;
+    private AsyncQueryExecution asyncQueryExecution;
+    private long targetChunkNanos = DEFAULT_TARGET_CHUNK_MILLIS * 1_000_000;
+    private volatile Integer parameterLimit;
+    private InListPadding inListPadding;
+    private boolean incrementalTransformation;
+    private boolean concurrentPageCount;
+    private QueryExecutionListener queryExecutionListener;
+    private byte[] keysetTokenKey = KeysetToken.createKey();
 
     public TypeSafeQueryDaoImpl(Supplier<Session> sessionSup,
             TypeSafeQueryHelper typeSafeQueryHelper) {
@@ -60,6 +100,95 @@ public class TypeSafeQueryDaoImpl implements TypeSafeQueryDao {
         this(sessionSup, new TypeSafeQueryHelperImpl(sessionSup, metaModel));
     }
 
+    /**
+     * Opts in to listing the chunks of a batched collection parameter at the same time on separate sessions,
+     * instead of one after the other on the current session. Set to null to list the chunks sequentially again.
+     */
+    public void setParallelChunkExecution(ParallelChunkExecution parallelChunkExecution) {
+        this.parallelChunkExecution = parallelChunkExecution;
+    }
+
+    /**
+     * Configures the sessions and executor used by doQueryAsync and doQueriesParallel,
+     * those methods can't be used without it.
+     */
+    public void setAsyncQueryExecution(AsyncQueryExecution asyncQueryExecution) {
+        this.asyncQueryExecution = asyncQueryExecution;
+    }
+
+    /**
+     * Opts in to executing the count of doQueryPage on a session of the {@link AsyncQueryExecution}
+     * while the page is listed on the current session. The count then doesn't see changes
+     * which were not committed yet, it is executed on the current session otherwise.
+     */
+    public void setConcurrentPageCount(boolean concurrentPageCount) {
+        this.concurrentPageCount = concurrentPageCount;
+    }
+
+    /**
+     * The secret key to sign the continuation tokens of doQueryKeysetPage with, a token which was changed
+     * by a client is rejected. A random key is created per dao by default, use the same key for each dao
+     * when the tokens must remain valid across restarts or between the instances of an application.
+     */
+    public void setKeysetTokenKey(byte[] keysetTokenKey) {
+        if (keysetTokenKey == null || keysetTokenKey.length == 0) {
+            throw new IllegalArgumentException("The keyset token key must not be empty.");
+        }
+        this.keysetTokenKey = keysetTokenKey.clone();
+    }
+
+    /**
+     * Overrides the maximum amount of parameters in one statement (0 means unlimited), which is
+     * derived from the dialect by default: 2100 for SQL Server, 32767 for PostgreSQL and 65535 for MySQL,
+     * minus two parameters which are kept free for the first and max results.
+     * <p>
+     * When a query has more parameters, the largest collection parameter which doesn't have
+     * a batch size is split over several executions of the query automatically. It is also split
+     * when it exceeds the limit of one in list, {@link Dialect#getInExpressionCountLimit()}.
+     */
+    public void setParameterLimit(int parameterLimit) {
+        this.parameterLimit = parameterLimit;
+    }
+
+    /**
+     * The latency a chunk of an automatically split collection parameter should stay under.
+     * The chunk size is halved after a slower chunk and grows again after chunks
+     * which take less than half of it, see {@link QueryResult#getChunkTimings()}.
+     */
+    public void setTargetChunkMillis(long targetChunkMillis) {
+        this.targetChunkNanos = targetChunkMillis * 1_000_000;
+    }
+
+    /**
+     * Opts in to padding the values of collection parameters, so fewer distinct
+     * sql strings are created for the same query, see {@link InListPadding#powerOfTwo()}.
+     * The padded sizes count for the parameter limit.
+     */
+    public void setInListPadding(InListPadding inListPadding) {
+        this.inListPadding = inListPadding;
+    }
+
+    /**
+     * Opts in to transforming the rows of dto selections while they are read,
+     * instead of listing all rows before transforming them. The rows are scrolled forward only,
+     * so each row can be collected as soon as it was transformed and the raw rows and the
+     * results are not kept in memory at the same time.
+     * <p>
+     * Queries with a batched collection parameter are still listed per chunk.
+     * The rows are fetched by {@value #DEFAULT_STREAM_FETCH_SIZE} unless the configurer sets a fetch size.
+     */
+    public void setIncrementalTransformation(boolean incrementalTransformation) {
+        this.incrementalTransformation = incrementalTransformation;
+    }
+
+    /**
+     * Registers the listener which receives the timings of each phase of the queries
+     * executed with doQuery, or null to stop measuring. Streamed queries are not measured.
+     */
+    public void setQueryExecutionListener(QueryExecutionListener queryExecutionListener) {
+        this.queryExecutionListener = queryExecutionListener;
+    }
+
     @Override
     public TypeSafeDeleteQuery createDeleteQuery() {
         return new TypeSafeDeleteQueryImpl(typeSafeQueryHelper);
@@ -123,70 +252,369 @@ public class TypeSafeQueryDaoImpl implements TypeSafeQueryDao {
         return doQuery(tsqbQuery, configurer, new HqlQueryBuilderParamsImpl());
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    /**
+     * Builds the page and count query in one pass for a {@link TypeSafeRootQueryImpl},
+     * other queries are paged with the default implementation.
+     */
+    @Override
+    public <T> PagedQueryResult<T> doQueryPage(TypeSafeRootQuery tsqbQuery, HibernateQueryConfigurer configurer) {
+        if (!(tsqbQuery instanceof TypeSafeRootQueryImpl)) {
+            return TypeSafeQueryDao.super.doQueryPage(tsqbQuery, configurer);
+        }
+        QueryExecutionRecorder recorder = QueryExecutionRecorder.start(queryExecutionListener);
+        long start = recorder.now();
+        HqlQuery countQuery = new HqlQuery();
+        HqlQuery hqlQuery = ((TypeSafeRootQueryImpl) tsqbQuery).toHqlQuery(new HqlQueryBuilderParamsImpl(), countQuery);
+        recorder.built(start);
+
+        QueryExecutionRecorder countRecorder = QueryExecutionRecorder.start(queryExecutionListener);
+        if (concurrentPageCount) {
+            AsyncQueryExecution execution = asyncQueryExecution;
+            if (execution == null) {
+                throw new IllegalStateException("A concurrent page count requires an AsyncQueryExecution, "
+                        + "see TypeSafeQueryDaoImpl.setAsyncQueryExecution.");
+            }
+            CompletableFuture<QueryResult<Long>> count = execution.supplyAsync(session ->
+                    doQuery(session, countQuery, null, ChunkOrdering.UNORDERED, -1, -1, configurer, countRecorder));
+            QueryResult<T> page;
+            try {
+                page = doQuery(sessionSup.get(), hqlQuery, resultClass(tsqbQuery), chunkOrdering(tsqbQuery),
+                        tsqbQuery.getFirstResult(), tsqbQuery.getMaxResults(), configurer, recorder);
+            } catch (RuntimeException | Error e) {
+                // the count is no longer needed, when it failed already its failure is kept with this one:
+                count.cancel(false);
+                if (count.isCompletedExceptionally() && !count.isCancelled()) {
+                    try {
+                        join(count);
+                    } catch (RuntimeException | Error countFailure) {
+                        e.addSuppressed(countFailure);
+                    }
+                }
+                throw e;
+            }
+            QueryResult<Long> total = join(count);
+            return new PagedQueryResult<>(page.getResults(), page.getChunkTimings(), total.getFirstResult());
+        }
+        Session currentSession = sessionSup.get();
+        QueryResult<Long> total = doQuery(currentSession, countQuery, null, ChunkOrdering.UNORDERED,
+                -1, -1, configurer, countRecorder);
+        QueryResult<T> page = doQuery(currentSession, hqlQuery, resultClass(tsqbQuery), chunkOrdering(tsqbQuery),
+                tsqbQuery.getFirstResult(), tsqbQuery.getMaxResults(), configurer, recorder);
+        return new PagedQueryResult<>(page.getResults(), page.getChunkTimings(), total.getFirstResult());
+    }
+
+    @Override
+    public <T> CompletableFuture<QueryResult<T>> doQueryAsync(TypeSafeRootQuery query,
+            HibernateQueryConfigurer configurer) {
+        AsyncQueryExecution execution = asyncQueryExecution;
+        if (execution == null) {
+            throw new IllegalStateException("Asynchronous queries require an AsyncQueryExecution, "
+                    + "see TypeSafeQueryDaoImpl.setAsyncQueryExecution.");
+        }
+        return execution.supplyAsync(session -> doQuery(session, query, configurer, new HqlQueryBuilderParamsImpl()));
+    }
+
+    /**
+     * The class the rows are selected into, used to match {@link TypeSafeRootQuery#fingerprint()}.
+     */
+    private Class<?> resultClass(TypeSafeBaseQuery tsqbQuery) {
+        if (tsqbQuery instanceof TypeSafeRootQueryImpl) {
+            return ((TypeSafeRootQueryImpl) tsqbQuery).getProjections().getResultClass();
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the result of the future, its failure is rethrown as it was thrown.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new TsqbException(e.getCause());
+        }
+    }
+
+    /**
+     * The ordering to merge the chunks of a batched root query by. The order bys of
+     * another root query implementation are unknown, its chunks can't be merged by them.
+     */
+    private ChunkOrdering chunkOrdering(TypeSafeRootQuery tsqbQuery) {
+        if (tsqbQuery instanceof TypeSafeRootQueryInternal) {
+            return ChunkOrdering.of((TypeSafeRootQueryInternal) tsqbQuery);
+        }
+        return ChunkOrdering.UNKNOWN;
+    }
+
     private <T> QueryResult<T> doQuery(TypeSafeBaseQuery tsqbQuery,
                                        HibernateQueryConfigurer configurer,
                                        HqlQueryBuilderParams params) {
+        return doQuery(sessionSup.get(), tsqbQuery, configurer, params);
+    }
+
+    private <T> QueryResult<T> doQuery(Session currentSession,
+                                       TypeSafeBaseQuery tsqbQuery,
+                                       HibernateQueryConfigurer configurer,
+                                       HqlQueryBuilderParams params) {
+        QueryExecutionRecorder recorder = QueryExecutionRecorder.start(queryExecutionListener);
+        long start = recorder.now();
         HqlQueryValue hqlQuery = tsqbQuery.toHqlQueryValue(params);
+        recorder.built(start);
 
-        Session currentSession = sessionSup.get();
-        Query<Object[]> query = currentSession.createQuery(hqlQuery.getHql());
-        CollectionNamedParameter chunkedParam = applyParams(query, hqlQuery.getParams());
-        if (hqlQuery instanceof HqlQuery && !params.isSelectingCount()) {
-            TypeSafeRootQuery rootQuery = (TypeSafeRootQuery) tsqbQuery;
-            if (rootQuery.getFirstResult() >= 0) {
-                query.setFirstResult(rootQuery.getFirstResult());
-            }
-            if (rootQuery.getMaxResults() > 0) {
-                query.setMaxResults(rootQuery.getMaxResults());
+        int firstResult = -1;
+        int maxResults = -1;
+        ChunkOrdering ordering = null;
+        if (hqlQuery instanceof HqlQuery) {
+            ordering = ChunkOrdering.UNORDERED;
+            if (!params.isSelectingCount()) {
+                TypeSafeRootQuery rootQuery = (TypeSafeRootQuery) tsqbQuery;
+                firstResult = rootQuery.getFirstResult();
+                maxResults = rootQuery.getMaxResults();
+                ordering = chunkOrdering(rootQuery);
             }
         }
+        return doQuery(currentSession, hqlQuery, resultClass(tsqbQuery), ordering, firstResult, maxResults,
+                configurer, recorder);
+    }
 
-        List<T> results;
-        if (configurer != null) {
-            configurer.beforeQuery(currentSession);
-            configurer.configureQuery(query);
-            try {
-                if (hqlQuery instanceof HqlQuery) {
-                    results = listAll(query, (HqlQuery) hqlQuery, chunkedParam);
-                } else {
-                    results = (List) Collections.singletonList(executeAll(query, chunkedParam));
-                }
-            } finally {
-                configurer.afterQuery(currentSession);
+    /**
+     * Executes the rendered query, the first and max results are -1 when they're not used.
+     * The ordering is null when the query doesn't list rows, its chunks are then not merged.
+     */
+    private <T> QueryResult<T> doQuery(Session currentSession,
+                                       HqlQueryValue hqlQuery,
+                                       Class<?> resultClass,
+                                       ChunkOrdering ordering,
+                                       int firstResult, int maxResults,
+                                       HibernateQueryConfigurer configurer,
+                                       QueryExecutionRecorder recorder) {
+        recorder.query(hqlQuery, resultClass);
+        ResultTransformer resultTransformer = hqlQuery instanceof HqlQuery
+                ? ((HqlQuery) hqlQuery).getResultTransformer(): null;
+        return doQuery(currentSession, hqlQuery.getHql(), hqlQuery.getParams(), resultTransformer,
+                ordering, firstResult, maxResults, configurer, recorder);
+    }
+
+    /**
+     * Executes the hql with the params, for a rendered and for a prepared query.
+     * The rows are listed and transformed when an ordering is given, otherwise the query
+     * is executed as an update and the amount of affected rows is its single result.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> QueryResult<T> doQuery(Session currentSession,
+                                       String hql,
+                                       Collection<Object> params,
+                                       ResultTransformer resultTransformer,
+                                       ChunkOrdering ordering,
+                                       int firstResult, int maxResults,
+                                       HibernateQueryConfigurer configurer,
+                                       QueryExecutionRecorder recorder) {
+        List<Runnable> cleanups = new ArrayList<>();
+        try {
+            long start = recorder.now();
+            Query<Object[]> query = currentSession.createQuery(hql);
+            recorder.queryCreated(start);
+            start = recorder.now();
+            ChunkedParameter chunkedParam = applyParams(currentSession, query, params, cleanups);
+            // the chunks of a batched select are merged and may be listed on other sessions:
+            ChunkResultMerger merger = null;
+            ChunkQueryFactory queryFactory = null;
+            if (chunkedParam != null && ordering != null) {
+                merger = new ChunkResultMerger((SessionFactoryImplementor) currentSession.getSessionFactory(),
+                        ordering, firstResult, maxResults);
+                queryFactory = createQueryFactory(hql, params, merger, configurer);
             }
-        } else {
-            if (hqlQuery instanceof HqlQuery) {
-                results = listAll(query, (HqlQuery) hqlQuery, chunkedParam);
+            applyRange(query, firstResult, maxResults, chunkedParam, merger);
+            recorder.bound(start);
+
+            List<T> results;
+            List<ChunkTiming> chunkTimings = new ArrayList<>();
+            if (configurer != null) {
+                configurer.beforeQuery(currentSession);
+                configurer.configureQuery(query);
+                try {
+                    results = doQuery(query, resultTransformer, ordering, chunkedParam,
+                            queryFactory, merger, configurer, chunkTimings, recorder);
+                } finally {
+                    configurer.afterQuery(currentSession);
+                }
             } else {
-                results = (List) Collections.singletonList(executeAll(query, chunkedParam));
+                results = doQuery(query, resultTransformer, ordering, chunkedParam,
+                        queryFactory, merger, null, chunkTimings, recorder);
             }
+            recorder.finish(params, chunkTimings);
+            return new QueryResult<>(results, chunkTimings);
+        } finally {
+            cleanups.forEach(Runnable::run);
         }
-        return new QueryResult<>(results);
     }
 
-    private CollectionNamedParameter applyParams(Query<Object[]> query, Collection<Object> params) {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> List<T> doQuery(Query<Object[]> query, ResultTransformer resultTransformer, ChunkOrdering ordering,
+            ChunkedParameter chunkedParam, ChunkQueryFactory queryFactory, ChunkResultMerger merger,
+            HibernateQueryConfigurer configurer, List<ChunkTiming> chunkTimings, QueryExecutionRecorder recorder) {
+        if (ordering == null) {
+            return (List) Collections.singletonList(executeAll(query, chunkedParam, chunkTimings, recorder));
+        }
+        return listAll(query, resultTransformer, chunkedParam, queryFactory, merger,
+                configurer, chunkTimings, recorder);
+    }
+
+    /**
+     * Creates a factory to create the same query on another session, used to list chunks in parallel.
+     * The batched param is not bound by the factory.
+     */
+    @SuppressWarnings("unchecked")
+    private ChunkQueryFactory createQueryFactory(String hql, Collection<Object> params,
+            ChunkResultMerger merger, HibernateQueryConfigurer configurer) {
+        return (session, cleanups) -> {
+            Query<Object[]> query = session.createQuery(hql);
+            applyParams(session, query, params, cleanups);
+            if (merger != null) {
+                merger.applyChunkRange(query);
+            }
+            if (configurer != null) {
+                configurer.configureQuery(query);
+            }
+            return query;
+        };
+    }
+
+    /**
+     * Applies the range to the query, or the range of each chunk when the query is batched,
+     * the range is then applied when the chunks are merged.
+     */
+    private void applyRange(Query<Object[]> query, int firstResult, int maxResults,
+            ChunkedParameter chunkedParam, ChunkResultMerger merger) {
+        if (chunkedParam != null) {
+            if (merger != null) {
+                merger.applyChunkRange(query);
+            }
+            return;
+        }
+        applyRange(query, firstResult, maxResults);
+    }
+
+    private void applyRange(Query<Object[]> query, int firstResult, int maxResults) {
+        if (firstResult >= 0) {
+            query.setFirstResult(firstResult);
+        }
+        if (maxResults > 0) {
+            query.setMaxResults(maxResults);
+        }
+    }
+
+    /**
+     * Binds the params to the query, except for the collection param which must be split
+     * over several executions, that param is returned to bind its chunks later.
+     * <p>
+     * The values of temp table params are inserted into the temp table, deleting them
+     * again is added to the cleanups to run after the query was executed.
+     */
+    private ChunkedParameter applyParams(Session session, Query<Object[]> query,
+            Collection<Object> params, List<Runnable> cleanups) {
+        ChunkedParameter chunkedParam = getChunkedParameter(session, query, params);
         int position = 0;
-        CollectionNamedParameter chunkedParam = null;
         for(Object param: params) {
-            if (param instanceof NamedParameter) {
+            if (param instanceof TempTableNamedParameter) {
+                String setId = TempTableLoader.insert(session, (TempTableNamedParameter) param);
+                cleanups.add(() -> TempTableLoader.delete(session, setId));
+                query.setParameter(((TempTableNamedParameter) param).getName(), setId);
+            } else if (param instanceof NamedParameter) {
                 NamedParameter named = (NamedParameter) param;
-                if (isChunkedParam(named)) {
-                    if (chunkedParam != null) {
+                if (chunkedParam == null || !chunkedParam.getName().equals(named.getName())) {
+                    typeSafeQueryHelper.bindNamedParameter(query, pad(named));
+                }
+            } else {
+                query.setParameter(position++, param);
+            }
+        }
+        return chunkedParam;
+    }
+
+    private NamedParameter pad(NamedParameter named) {
+        if (inListPadding == null || !(named instanceof CollectionNamedParameter)) {
+            return named;
+        }
+        Collection<?> values = ((CollectionNamedParameter) named).getValue();
+        Collection<?> padded = inListPadding.pad(values, 0);
+        return padded == values ? named: new NamedParameter(named.getName(), padded);
+    }
+
+    private int getParameterCount(CollectionNamedParameter param) {
+        int size = param.getValue().size();
+        return inListPadding == null ? size: inListPadding.getPaddedSize(size);
+    }
+
+    /**
+     * Finds the param which was batched explicitly, or when the amount of parameters exceeds
+     * the parameter limit, the largest collection param to split automatically.
+     * <p>
+     * Only an in restricting the whole query is split automatically, see
+     * {@link CollectionNamedParameter#isSplittable()}, the rows of a not in, an or'd in or an aggregation
+     * can't be combined from the chunks. Such statements are left to the database to report.
+     */
+    private ChunkedParameter getChunkedParameter(Session session, Query<Object[]> query, Collection<Object> params) {
+        CollectionNamedParameter batchedParam = null;
+        CollectionNamedParameter largestParam = null;
+        int parameterCount = 0;
+        for(Object param: params) {
+            if (param instanceof TempTableNamedParameter) {
+                // only the id of the loaded values is bound
+                parameterCount++;
+            } else if (param instanceof CollectionNamedParameter) {
+                CollectionNamedParameter collectionParam = (CollectionNamedParameter) param;
+                if (isChunkedParam(collectionParam)) {
+                    if (batchedParam != null) {
                         throw new IllegalStateException(String.format(
                                 "More than one batched param [%s, %s] was used in query [%s].",
-                                chunkedParam.getName(), named.getName(), query.getQueryString()));
+                                batchedParam.getName(), collectionParam.getName(), query.getQueryString()));
                     }
                     // remember batched param to bind iterate and bind chunks later:
-                    chunkedParam = (CollectionNamedParameter) named;
-                } else {
-                    typeSafeQueryHelper.bindNamedParameter(query, named);
+                    batchedParam = collectionParam;
+                }
+                if (collectionParam.isSplittable() && (largestParam == null
+                        || largestParam.getValue().size() < collectionParam.getValue().size())) {
+                    largestParam = collectionParam;
                 }
+                parameterCount += getParameterCount(collectionParam);
             } else {
-                query.setParameter(position++, param);
+                parameterCount++;
             }
         }
-        return chunkedParam;
+        if (batchedParam != null) {
+            return new ChunkedParameter(batchedParam.getName(), batchedParam.getValue(),
+                    batchedParam.getBatchSize(), false, inListPadding);
+        }
+
+        if (largestParam == null) {
+            return null;
+        }
+        int largestParameterCount = getParameterCount(largestParam);
+        int otherParameterCount = parameterCount - largestParameterCount;
+        int chunkSize = Integer.MAX_VALUE;
+        int limit = getParameterLimit(session);
+        if (limit > 0 && parameterCount > limit) {
+            if (otherParameterCount >= limit) {
+                // splitting won't help, let the database report the problem
+                return null;
+            }
+            chunkSize = limit - otherParameterCount;
+        }
+        int inListLimit = getDialect(session).getInExpressionCountLimit();
+        if (inListLimit > 0 && largestParameterCount > inListLimit) {
+            chunkSize = Math.min(chunkSize, inListLimit);
+        }
+        if (chunkSize == Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ChunkedParameter(largestParam.getName(), largestParam.getValue(),
+                chunkSize, true, inListPadding);
     }
 
     /**
@@ -194,59 +622,280 @@ public class TypeSafeQueryDaoImpl implements TypeSafeQueryDao {
      * Check if the amount of params exceeds the batch size,
      * otherwise no splitting is required anyway.
      */
-    private boolean isChunkedParam(NamedParameter named) {
-        if (!(named instanceof CollectionNamedParameter)) {
-            return false;
-        }
-        CollectionNamedParameter cp = (CollectionNamedParameter) named;
+    private boolean isChunkedParam(CollectionNamedParameter cp) {
         return cp.hasBatchSize() && cp.getBatchSize() < cp.getValue().size();
     }
 
+    private int getParameterLimit(Session session) {
+        Integer limit = parameterLimit;
+        if (limit == null) {
+            limit = getStatementParameterLimit(getDialect(session));
+            parameterLimit = limit;
+        }
+        return limit;
+    }
+
+    /**
+     * The maximum amount of bind parameters in one statement for the databases which limit it, 0 otherwise.
+     * The first and max results are bound as parameters as well on some databases, those are kept free.
+     */
+    private static int getStatementParameterLimit(Dialect dialect) {
+        int limit;
+        if (dialect instanceof SQLServerDialect) {
+            limit = SQL_SERVER_PARAMETER_LIMIT;
+        } else if (dialect instanceof PostgreSQL81Dialect) {
+            limit = POSTGRESQL_PARAMETER_LIMIT;
+        } else if (dialect instanceof MySQLDialect) {
+            limit = MYSQL_PARAMETER_LIMIT;
+        } else {
+            return 0;
+        }
+        return limit - RANGE_PARAMETER_COUNT;
+    }
+
+    /**
+     * The dialect of the session, used to derive the parameter limits.
+     */
+    protected Dialect getDialect(Session session) {
+        return ((SessionImplementor) session).getJdbcServices().getDialect();
+    }
+
     /**
      * Lists the same query with an updated collection in the named param for the batched named param.
+     * The chunks are listed in parallel on other sessions when opted in, using the query factory.
      */
     @SuppressWarnings("unchecked")
-    private <T> List<T> listAll(Query<Object[]> query, HqlQuery hqlQuery, CollectionNamedParameter chunkedParam) {
+    private <T> List<T> listAll(Query<Object[]> query, ResultTransformer resultTransformer,
+                                ChunkedParameter chunkedParam,
+                                ChunkQueryFactory queryFactory,
+                                ChunkResultMerger merger,
+                                HibernateQueryConfigurer configurer,
+                                List<ChunkTiming> chunkTimings,
+                                QueryExecutionRecorder recorder) {
+        long start = recorder.now();
+        if (chunkedParam == null && incrementalTransformation
+                && resultTransformer instanceof TypeSafeQueryResultTransformer) {
+            HqlExecutionEvent event = recorder.beginExecution();
+            List<T> results = transformIncrementally(query, resultTransformer);
+            recorder.endExecution(event, 0, 0, results.size());
+            recorder.executed(start, results.size());
+            return results;
+        }
         List<Object[]> results;
         if (chunkedParam == null) {
+            HqlExecutionEvent event = recorder.beginExecution();
             results = query.getResultList();
+            recorder.endExecution(event, 0, 0, results.size());
+        } else if (parallelChunkExecution != null) {
+            results = merger.merge(parallelChunkExecution.listChunks(
+                    queryFactory, chunkedParam, configurer, chunkTimings, recorder));
         } else {
-            results = forEachChunk(query, chunkedParam, query::getResultList).stream()
-                    .flatMap(Collection::stream)
-                    .collect(toList());
+            results = merger.merge(forEachChunk(query, chunkedParam,
+                    query::getResultList, List::size, chunkTimings, recorder));
         }
+        recorder.executed(start, results.size());
 
-        if (hqlQuery.getResultTransformer() != null) {
-            return hqlQuery.getResultTransformer().transformList(results);
+        if (resultTransformer != null) {
+            start = recorder.now();
+            List<T> transformed = resultTransformer.transformList(results);
+            recorder.transformed(start);
+            return transformed;
         } else {
             return (List<T>) results;
         }
     }
 
-    private int executeAll(Query<Object[]> query, CollectionNamedParameter chunkedParam) {
+    /**
+     * Scrolls the rows and transforms them one by one, the rows are not kept after they were transformed.
+     */
+    private <T> List<T> transformIncrementally(Query<Object[]> query, ResultTransformer resultTransformer) {
+        if (query.getFetchSize() == null) {
+            query.setFetchSize(DEFAULT_STREAM_FETCH_SIZE);
+        }
+        List<T> results = new ArrayList<>();
+        try (ScrollingResultSpliterator<T> spliterator = new ScrollingResultSpliterator<>(
+                query.scroll(ScrollMode.FORWARD_ONLY), resultTransformer)) {
+            spliterator.forEachRemaining(results::add);
+        }
+        return results;
+    }
+
+    private int executeAll(Query<Object[]> query, ChunkedParameter chunkedParam, List<ChunkTiming> chunkTimings,
+            QueryExecutionRecorder recorder) {
+        long start = recorder.now();
+        int affected;
         if (chunkedParam == null) {
-            return query.executeUpdate();
+            HqlExecutionEvent event = recorder.beginExecution();
+            affected = query.executeUpdate();
+            recorder.endExecution(event, 0, 0, affected);
+        } else {
+            affected = forEachChunk(query, chunkedParam, query::executeUpdate, Integer::intValue, chunkTimings, recorder)
+                    .stream().reduce(0, Integer::sum);
         }
-        return forEachChunk(query, chunkedParam, query::executeUpdate)
-                .stream().reduce(0, Integer::sum);
+        recorder.executed(start, affected);
+        return affected;
     }
 
-    private <T> List<T> forEachChunk(Query<Object[]> query, CollectionNamedParameter chunkedParam, Supplier<T> fn) {
+    /**
+     * Executes the query for each chunk of the chunked param and measures each execution.
+     * When the chunked param is adaptive, the size of the next chunk depends on the latency of the previous one.
+     */
+    private <T> List<T> forEachChunk(Query<Object[]> query, ChunkedParameter chunkedParam, Supplier<T> fn,
+            ToIntFunction<T> resultCount, List<ChunkTiming> chunkTimings, QueryExecutionRecorder recorder) {
         List<T> chunkResults = new LinkedList<>();
-        int p = chunkedParam.getBatchSize();
+        AdaptiveChunkSize adaptiveSize = chunkedParam.isAdaptive()
+                ? new AdaptiveChunkSize(chunkedParam.getChunkSize(), targetChunkNanos): null;
+        int p = chunkedParam.getChunkSize();
         List<Object> values = new ArrayList<>(p);
-        Iterator<?> it = chunkedParam.getValue().iterator();
+        Iterator<?> it = chunkedParam.getValues().iterator();
         while (it.hasNext()) {
             values.add(it.next());
             if (values.size() == p || !it.hasNext()) {
-                query.setParameterList(chunkedParam.getName(), values);
-                chunkResults.add(fn.get());
+                query.setParameterList(chunkedParam.getName(), chunkedParam.getChunkValues(values));
+                HqlExecutionEvent event = recorder.beginExecution();
+                long start = System.nanoTime();
+                T result = fn.get();
+                long nanos = System.nanoTime() - start;
+                int rowCount = resultCount.applyAsInt(result);
+                recorder.endExecution(event, chunkTimings.size(), values.size(), rowCount);
+                chunkTimings.add(new ChunkTiming(chunkTimings.size(), values.size(), rowCount, nanos));
+                chunkResults.add(result);
                 values.clear();
+                if (adaptiveSize != null) {
+                    p = adaptiveSize.next(nanos);
+                }
             }
         }
         return chunkResults;
     }
 
+    @Override
+    public <T> Stream<T> doQueryStream(TypeSafeRootQuery query) {
+        return doQueryStream(query, DEFAULT_STREAM_FETCH_SIZE, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Stream<T> doQueryStream(TypeSafeRootQuery tsqbQuery, int fetchSize,
+            HibernateQueryConfigurer configurer) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("The fetch size must be positive, was: " + fetchSize);
+        }
+        HqlQuery hqlQuery = tsqbQuery.toHqlQuery();
+
+        Session currentSession = sessionSup.get();
+        List<Runnable> cleanups = new ArrayList<>();
+        ScrollableResults results;
+        try {
+            Query<Object[]> query = currentSession.createQuery(hqlQuery.getHql());
+            ChunkedParameter chunkedParam = applyParams(currentSession, query, hqlQuery.getParams(), cleanups);
+            if (chunkedParam != null) {
+                throw new IllegalArgumentException(String.format("Streaming a query with a batched param [%s] "
+                        + "is not supported, the chunks can't be scrolled as one result: [%s].",
+                        chunkedParam.getName(), query.getQueryString()));
+            }
+            applyRange(query, tsqbQuery.getFirstResult(), tsqbQuery.getMaxResults());
+            query.setFetchSize(fetchSize);
+
+            if (configurer != null) {
+                configurer.beforeQuery(currentSession);
+                configurer.configureQuery(query);
+                try {
+                    results = query.scroll(ScrollMode.FORWARD_ONLY);
+                } catch (RuntimeException e) {
+                    configurer.afterQuery(currentSession);
+                    throw e;
+                }
+            } else {
+                results = query.scroll(ScrollMode.FORWARD_ONLY);
+            }
+        } catch (RuntimeException e) {
+            cleanups.forEach(Runnable::run);
+            throw e;
+        }
+
+        ScrollingResultSpliterator<T> spliterator = new ScrollingResultSpliterator<>(
+                results, hqlQuery.getResultTransformer());
+        Stream<T> stream = StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        if (configurer != null) {
+            stream = stream.onClose(() -> configurer.afterQuery(currentSession));
+        }
+        if (!cleanups.isEmpty()) {
+            stream = stream.onClose(() -> cleanups.forEach(Runnable::run));
+        }
+        return stream;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> KeysetPage<T> doQueryKeysetPage(TypeSafeRootQuery tsqbQuery, int pageSize,
+            String continuationToken, HibernateQueryConfigurer configurer) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be positive, was: " + pageSize);
+        }
+        KeysetPageQuery keysetQuery = new KeysetPageQuery(tsqbQuery, continuationToken, keysetTokenKey);
+        HqlQuery hqlQuery = keysetQuery.getHqlQuery();
+
+        Session currentSession = sessionSup.get();
+        List<Runnable> cleanups = new ArrayList<>();
+        try {
+            Query<Object[]> query = currentSession.createQuery(hqlQuery.getHql());
+            ChunkedParameter chunkedParam = applyParams(currentSession, query, hqlQuery.getParams(), cleanups);
+            if (chunkedParam != null) {
+                throw new IllegalArgumentException(String.format("Keyset pagination of a query with a batched "
+                        + "param [%s] is not supported, the chunks can't be paged as one result: [%s].",
+                        chunkedParam.getName(), query.getQueryString()));
+            }
+            // one row more than the page size to know whether there is a next page:
+            query.setMaxResults(pageSize + 1);
+
+            List<Object[]> rows;
+            if (configurer != null) {
+                configurer.beforeQuery(currentSession);
+                configurer.configureQuery(query);
+                try {
+                    rows = query.getResultList();
+                } finally {
+                    configurer.afterQuery(currentSession);
+                }
+            } else {
+                rows = query.getResultList();
+            }
+            return keysetQuery.toPage(rows, pageSize);
+        } finally {
+            cleanups.forEach(Runnable::run);
+        }
+    }
+
+    @Override
+    public <T> PreparedTypeSafeQuery<T> prepare(TypeSafeRootQuery query) {
+        HqlQueryBuilderParamsImpl params = new HqlQueryBuilderParamsImpl();
+        params.trackNamedParameterNames();
+        HqlQuery hqlQuery = query.toHqlQuery(params);
+        long fingerprint = QueryFingerprint.of(hqlQuery,
+                ((TypeSafeRootQueryInternal) query).getProjections().getResultClass());
+        return new PreparedTypeSafeQuery<>(hqlQuery, query.named(), params.getNamedParameterNames(),
+                query.getFirstResult(), query.getMaxResults(), chunkOrdering(query), fingerprint);
+    }
+
+    @Override
+    public <T> QueryResult<T> doQuery(PreparedTypeSafeQuery<T> preparedQuery, Map<String, ?> namedValues) {
+        return doQuery(preparedQuery, namedValues, null);
+    }
+
+    @Override
+    public <T> QueryResult<T> doQuery(PreparedTypeSafeQuery<T> preparedQuery, Map<String, ?> namedValues,
+            HibernateQueryConfigurer configurer) {
+        QueryExecutionRecorder recorder = QueryExecutionRecorder.start(queryExecutionListener);
+        long start = recorder.now();
+        List<Object> params = preparedQuery.bindParams(namedValues);
+        recorder.built(start);
+        recorder.query(preparedQuery.getFingerprint(), preparedQuery.getHql());
+        return doQuery(sessionSup.get(), preparedQuery.getHql(), params, preparedQuery.getResultTransformer(),
+                preparedQuery.getChunkOrdering(), preparedQuery.getFirstResult(), preparedQuery.getMaxResults(),
+                configurer, recorder);
+    }
+
     @Override
     public <T> T doQueryFirstResult(TypeSafeRootQuery query, HibernateQueryConfigurer configurer) {
         query.setMaxResults(1);
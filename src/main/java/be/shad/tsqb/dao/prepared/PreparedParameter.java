@@ -0,0 +1,118 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.prepared;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import be.shad.tsqb.CollectionNamedParameter;
+import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.TempTableNamedParameter;
+import lombok.Getter;
+
+/**
+ * A named parameter of a prepared query which is bound to a named value,
+ * validates and binds the values given when the prepared query is executed.
+ */
+@Getter
+public final class PreparedParameter {
+    /**
+     * The position of the parameter in the params of the prepared query.
+     */
+    private final int index;
+    private final String parameterName;
+    private final Class<?> valueClass;
+    private final boolean collection;
+    private final Integer batchSize;
+    private final boolean splittable;
+    /**
+     * A collection with a single value may have been rendered with an equal
+     * operator instead of in, in which case only single values can be bound.
+     */
+    private final boolean singleValue;
+    /**
+     * The class of the values stored in the temp table, when the collection
+     * was rendered as a temp table subquery, null otherwise.
+     */
+    private final Class<?> tempTableValueClass;
+
+    PreparedParameter(int index, NamedParameter param, Class<?> valueClass) {
+        this.index = index;
+        this.parameterName = param.getName();
+        this.valueClass = valueClass;
+        this.collection = param instanceof CollectionNamedParameter;
+        this.batchSize = collection ? ((CollectionNamedParameter) param).getBatchSize(): null;
+        this.splittable = collection && ((CollectionNamedParameter) param).isSplittable();
+        this.tempTableValueClass = param instanceof TempTableNamedParameter
+                ? ((TempTableNamedParameter) param).getValueClass(): null;
+        this.singleValue = collection && tempTableValueClass == null
+                && ((CollectionNamedParameter) param).getValue().size() == 1;
+    }
+
+    /**
+     * Creates the named parameter with the value, the value is validated
+     * the same way as when the value is set on the named value itself.
+     */
+    NamedParameter bind(String name, Object value) {
+        if (!collection) {
+            if (value == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Null value bound to named value [%s].", name));
+            }
+            checkValueClass(value);
+            return new NamedParameter(parameterName, value);
+        }
+        Collection<?> valuesIn;
+        if (value instanceof Collection<?>) {
+            valuesIn = (Collection<?>) value;
+        } else if (value == null) {
+            valuesIn = Collections.emptyList();
+        } else {
+            valuesIn = Collections.singleton(value);
+        }
+        if (valuesIn.isEmpty()) {
+            throw new IllegalArgumentException(String.format(
+                    "Empty collection bound to named value [%s].", name));
+        }
+        if (singleValue && valuesIn.size() > 1) {
+            throw new IllegalArgumentException(String.format("Named value [%s] was prepared "
+                    + "with a single value, prepare it with multiple values to bind %s.", name, valuesIn));
+        }
+        List<Object> values = new ArrayList<>(valuesIn.size());
+        for (Object element: valuesIn) {
+            if (element == null) {
+                throw new IllegalArgumentException(String.format("Null value in "
+                        + "collection is not allowed. Collection: %s.", valuesIn));
+            }
+            checkValueClass(element);
+            values.add(element);
+        }
+        if (tempTableValueClass != null) {
+            return new TempTableNamedParameter(parameterName, values, tempTableValueClass);
+        }
+        return new CollectionNamedParameter(parameterName, values, batchSize, splittable);
+    }
+
+    private void checkValueClass(Object value) {
+        if (valueClass != null && !valueClass.isAssignableFrom(value.getClass())) {
+            throw new IllegalArgumentException(String.format("The value must be of type "
+                    + "[%s] but was of type [%s].", valueClass, value.getClass()));
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.prepared;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.hibernate.transform.ResultTransformer;
+
+import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.dao.ChunkOrdering;
+import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.query.TypeSafeNameds;
+import be.shad.tsqb.values.NamedValueEnabled;
+import be.shad.tsqb.values.TypeSafeValue;
+import lombok.Getter;
+
+/**
+ * A query which was transformed to hql once, to be executed many times
+ * with different values for its named values.
+ * <p>
+ * The hql, the parameters and the result transformer are captured when
+ * the query is prepared, executing only binds the values. A prepared query
+ * is immutable and can be shared between threads: the result transformer
+ * keeps its state per transformList call.
+ * <p>
+ * Only values which were named with {@link TypeSafeNameds} can be bound,
+ * the other parameters keep the value they had when the query was prepared.
+ * The query should not be changed after it was prepared.
+ */
+@Getter
+public final class PreparedTypeSafeQuery<T> {
+    private final String hql;
+    /**
+     * The parameters as they were when the query was prepared.
+     */
+    private final List<Object> params;
+    /**
+     * The parameters which can be bound, per name.
+     */
+    private final Map<String, List<PreparedParameter>> namedParameters;
+    private final int firstResult;
+    private final int maxResults;
+    private final ResultTransformer resultTransformer;
+    /**
+     * The ordering to merge the results of batched chunks by.
+     */
+    private final ChunkOrdering chunkOrdering;
+    /**
+     * The fingerprint of the query, see {@link be.shad.tsqb.query.TypeSafeBaseQuery#fingerprint()}.
+     */
+    private final long fingerprint;
+
+    /**
+     * @param namedParameterNames the parameter names which were created for each named value
+     *                            while transforming the query to hql.
+     */
+    public PreparedTypeSafeQuery(HqlQuery hqlQuery, TypeSafeNameds nameds,
+            Map<NamedValueEnabled, List<String>> namedParameterNames,
+            int firstResult, int maxResults, ChunkOrdering chunkOrdering, long fingerprint) {
+        this.hql = hqlQuery.getHql();
+        this.params = unmodifiableList(new ArrayList<>(hqlQuery.getParams()));
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        this.resultTransformer = hqlQuery.getResultTransformer();
+        this.chunkOrdering = chunkOrdering;
+        this.fingerprint = fingerprint;
+
+        Map<String, Integer> paramIndexes = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            if (params.get(i) instanceof NamedParameter) {
+                paramIndexes.put(((NamedParameter) params.get(i)).getName(), i);
+            }
+        }
+        Map<Object, String> names = new IdentityHashMap<>();
+        for (String name: nameds.getNames()) {
+            names.put(nameds.get(name), name);
+        }
+        Map<String, List<PreparedParameter>> namedParameters = new HashMap<>();
+        for (Entry<NamedValueEnabled, List<String>> named: namedParameterNames.entrySet()) {
+            String name = names.get(named.getKey());
+            if (name == null) {
+                continue;
+            }
+            Class<?> valueClass = named.getKey() instanceof TypeSafeValue<?>
+                    ? ((TypeSafeValue<?>) named.getKey()).getValueClass(): null;
+            List<PreparedParameter> parameters = new ArrayList<>(named.getValue().size());
+            for (String parameterName: named.getValue()) {
+                int index = paramIndexes.get(parameterName);
+                parameters.add(new PreparedParameter(index, (NamedParameter) params.get(index), valueClass));
+            }
+            namedParameters.put(name, unmodifiableList(parameters));
+        }
+        this.namedParameters = unmodifiableMap(namedParameters);
+    }
+
+    /**
+     * Creates the parameters to execute the query with, using the given values
+     * for the named values and the prepared values for the other parameters.
+     *
+     * @throws IllegalArgumentException when a name is not bound in the query
+     *                                  or when a value is not valid for the named value.
+     */
+    public List<Object> bindParams(Map<String, ?> namedValues) {
+        if (namedValues.isEmpty()) {
+            return params;
+        }
+        Object[] boundParams = params.toArray();
+        for (Entry<String, ?> namedValue: namedValues.entrySet()) {
+            List<PreparedParameter> parameters = namedParameters.get(namedValue.getKey());
+            if (parameters == null) {
+                throw new IllegalArgumentException(String.format("No named value [%s] is bound "
+                        + "as parameter in the prepared query, available: %s.",
+                        namedValue.getKey(), namedParameters.keySet()));
+            }
+            for (PreparedParameter parameter: parameters) {
+                boundParams[parameter.getIndex()] = parameter.bind(namedValue.getKey(), namedValue.getValue());
+            }
+        }
+        return Arrays.asList(boundParams);
+    }
+
+    @Override
+    public String toString() {
+        return hql + " --- with: " + params;
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.result;
+
+import lombok.Value;
+
+/**
+ * The measurement of one execution of a query for a chunk of the values of a batched collection parameter.
+ */
+@Value
+public class ChunkTiming {
+    int chunkIndex;
+    /**
+     * The amount of collection values bound for this chunk.
+     */
+    int valueCount;
+    /**
+     * The amount of rows listed, or rows affected for update and delete queries.
+     */
+    int resultCount;
+    long nanos;
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.result;
+
+import java.util.List;
+
+/**
+ * A page of a keyset pagination, the next page is fetched with the continuation token.
+ */
+public class KeysetPage<T> {
+    private final List<T> results;
+    private final String continuationToken;
+
+    public KeysetPage(List<T> results, String continuationToken) {
+        this.results = results;
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * The results of this page.
+     */
+    public List<T> getResults() {
+        return results;
+    }
+
+    /**
+     * An opaque token to fetch the page after this one, null if this is the last page.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * There is a page after this one.
+     */
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.result;
+
+import java.util.List;
+
+/**
+ * The results of a page of a query, with the total amount of rows of the query without paging.
+ */
+public class PagedQueryResult<T> extends QueryResult<T> {
+    private final long totalCount;
+
+    public PagedQueryResult(List<T> results, List<ChunkTiming> chunkTimings, long totalCount) {
+        super(results, chunkTimings);
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * The amount of rows of the query, regardless of the first and max results.
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.result;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * The measurements of one query execution by the dao, see {@link be.shad.tsqb.dao.QueryExecutionListener}.
+ * The phases which weren't part of the execution have 0 nanos.
+ */
+@Value
+public class QueryExecutionEvent {
+    /**
+     * See {@link be.shad.tsqb.query.TypeSafeBaseQuery#fingerprint()}.
+     */
+    long fingerprint;
+    String hql;
+    /**
+     * The amount of values bound to the query, each value of a collection parameter counts.
+     */
+    int parameterCount;
+    /**
+     * The amount of rows listed, or rows affected for update and delete queries.
+     */
+    int rowCount;
+    /**
+     * Transforming the query to hql, or binding the named values of a prepared query.
+     */
+    long buildNanos;
+    long createQueryNanos;
+    long bindNanos;
+    /**
+     * Executing the query, including all chunks and merging them.
+     * When the rows are transformed while scrolling, this includes the transformation.
+     */
+    long executeNanos;
+    long transformNanos;
+    /**
+     * The executions per chunk when a collection parameter was split, empty otherwise.
+     */
+    List<ChunkTiming> chunkTimings;
+
+    public int getChunkCount() {
+        return chunkTimings.size();
+    }
+}
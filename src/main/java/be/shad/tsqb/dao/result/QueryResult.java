@@ -15,13 +15,20 @@
  */
 package be.shad.tsqb.dao.result;
 
+import java.util.Collections;
 import java.util.List;
 
 public class QueryResult<T> {
     private final List<T> results;
+    private final List<ChunkTiming> chunkTimings;
 
     public QueryResult(List<T> results) {
+        this(results, Collections.emptyList());
+    }
+
+    public QueryResult(List<T> results, List<ChunkTiming> chunkTimings) {
         this.results = results;
+        this.chunkTimings = chunkTimings;
     }
 
     /**
@@ -38,6 +45,14 @@ public class QueryResult<T> {
         return results;
     }
 
+    /**
+     * The measurements of the executions per chunk when a collection parameter
+     * was split over several executions, empty otherwise.
+     */
+    public List<ChunkTiming> getChunkTimings() {
+        return chunkTimings;
+    }
+
     /**
      * Only one result found
      */
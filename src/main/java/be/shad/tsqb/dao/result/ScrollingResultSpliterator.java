@@ -0,0 +1,102 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.dao.result;
+
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.transform.ResultTransformer;
+
+import be.shad.tsqb.selection.TypeSafeQueryResultTransformer;
+import be.shad.tsqb.selection.TypeSafeQueryResultTransformer.IncrementalTransformation;
+
+/**
+ * Reads the rows of a forward only scroll one by one and transforms them while reading.
+ * Results are handed out as soon as the transformation considers them complete,
+ * so only the results which are still being built are kept in memory.
+ * <p>
+ * The scroll is closed when the last row was read or when {@link #close()} is called.
+ */
+@SuppressWarnings("unchecked")
+public class ScrollingResultSpliterator<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+    private final ScrollableResults results;
+    private final ResultTransformer resultTransformer;
+    private final IncrementalTransformation transformation;
+    // linked list because a transformed result may be null
+    private final LinkedList<Object> completed = new LinkedList<>();
+    private final Consumer<Object> completedConsumer = completed::add;
+    private boolean closed;
+
+    public ScrollingResultSpliterator(ScrollableResults results, ResultTransformer resultTransformer) {
+        super(Long.MAX_VALUE, ORDERED);
+        this.results = results;
+        if (resultTransformer instanceof TypeSafeQueryResultTransformer) {
+            this.resultTransformer = null;
+            this.transformation = ((TypeSafeQueryResultTransformer) resultTransformer).startIncremental();
+        } else {
+            this.resultTransformer = resultTransformer;
+            this.transformation = null;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (completed.isEmpty()) {
+            if (closed) {
+                return false;
+            }
+            if (results.next()) {
+                accept(results.get());
+            } else {
+                if (transformation != null) {
+                    transformation.finish(completedConsumer);
+                }
+                close();
+            }
+        }
+        action.accept((T) completed.removeFirst());
+        return true;
+    }
+
+    /**
+     * Transforms the row the same way as the rows of a listed query.
+     */
+    private void accept(Object[] row) {
+        if (transformation != null) {
+            transformation.accept(row, completedConsumer);
+        } else {
+            Object value = row.length == 1 ? row[0]: row;
+            if (resultTransformer != null) {
+                completed.addAll(resultTransformer.transformList(new ArrayList<>(singletonList(value))));
+            } else {
+                completed.add(value);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            results.close();
+        }
+    }
+}
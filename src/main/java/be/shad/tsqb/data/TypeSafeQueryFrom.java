@@ -15,7 +15,7 @@
  */
 package be.shad.tsqb.data;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import be.shad.tsqb.helper.TypeSafeQueryHelper;
@@ -31,7 +31,7 @@ public class TypeSafeQueryFrom implements HqlQueryBuilder {
 
     private final TypeSafeQueryHelper helper;
     private final TypeSafeQueryProxyData root;
-    private final List<TypeSafeQueryJoin<?>> joins = new LinkedList<>();
+    private final List<TypeSafeQueryJoin<?>> joins = new ArrayList<>();
 
     public TypeSafeQueryFrom(TypeSafeQueryHelper helper,
             TypeSafeQueryProxyData root) {
@@ -52,9 +52,21 @@ public class TypeSafeQueryFrom implements HqlQueryBuilder {
     }
 
     public HqlQueryValue toHqlQueryValue(HqlQueryBuilderParams params) {
+        return toHqlQueryValue(params, null);
+    }
+
+    /**
+     * Renders the from with its joins. When selecting a count, fetch joins are rendered without fetch
+     * and left joins to a single entity are left out when their alias isn't used in the referencing hql
+     * or by another join, because such joins can't change the amount of rows.
+     *
+     * @param referencingHql the hql outside of the from clause, null to keep all joins.
+     */
+    public HqlQueryValue toHqlQueryValue(HqlQueryBuilderParams params, String referencingHql) {
         HqlQueryValueImpl from = new HqlQueryValueImpl();
         from.appendHql(helper.getEntityName(root.getPropertyType()));
         from.appendHql(" ").append(root.getAlias());
+        List<HqlQueryValue> joinValues = new ArrayList<>(joins.size());
         for (TypeSafeQueryJoin<?> join : joins) {
             TypeSafeQueryProxyData data = join.getData();
             JoinType effectiveJoinType = data.getEffectiveJoinType();
@@ -62,19 +74,91 @@ public class TypeSafeQueryFrom implements HqlQueryBuilder {
                 throw new IllegalArgumentException("The getter for [" + data.getProxy() + "] was called, "
                         + "but it was not passed to query.join(object, jointype).");
             }
+            if (params.isSelectingCount()) {
+                effectiveJoinType = withoutFetch(effectiveJoinType);
+            }
+            HqlQueryValueImpl joinValue = new HqlQueryValueImpl();
             if (data.getPropertyPath() == null) {
-                appendClassJoin(from, join, params);
+                appendClassJoin(joinValue, join, effectiveJoinType, params);
             } else if (effectiveJoinType != JoinType.None) {
                 if (isChildOfClassJoin(join)) {
-                    appendPropertyAsClassJoin(from, join, params);
+                    appendPropertyAsClassJoin(joinValue, join, effectiveJoinType, params);
                 } else {
-                    appendPropertyJoin(from, join, params);
+                    appendPropertyJoin(joinValue, join, effectiveJoinType, params);
                 }
             }
+            joinValues.add(joinValue);
+        }
+        if (params.isSelectingCount() && referencingHql != null) {
+            removeCountNeutralJoins(joinValues, referencingHql);
+        }
+        for (HqlQueryValue joinValue : joinValues) {
+            if (joinValue != null) {
+                from.appendHql(joinValue.getHql());
+                from.addParams(joinValue.getParams());
+            }
         }
         return from;
     }
 
+    /**
+     * Replaces the joins which can't change the amount of rows and which are not used
+     * by the referencing hql or by another remaining join with null. The joins are checked
+     * from last to first, so a join used by a join which is left out can be left out as well.
+     */
+    private void removeCountNeutralJoins(List<HqlQueryValue> joinValues, String referencingHql) {
+        for (int i = joinValues.size() - 1; i >= 0; i--) {
+            TypeSafeQueryProxyData data = joins.get(i).getData();
+            if (!isCountNeutral(data)) {
+                continue;
+            }
+            String alias = data.getAlias();
+            boolean referenced = isAliasUsed(referencingHql, alias);
+            for (int j = i + 1; !referenced && j < joinValues.size(); j++) {
+                HqlQueryValue other = joinValues.get(j);
+                referenced = other != null && isAliasUsed(other.getHql(), alias);
+            }
+            if (!referenced) {
+                joinValues.set(i, null);
+            }
+        }
+    }
+
+    /**
+     * A left join of a property to a single entity yields exactly one row per row of its parent.
+     */
+    private boolean isCountNeutral(TypeSafeQueryProxyData data) {
+        JoinType joinType = data.getEffectiveJoinType();
+        return data.getPropertyPath() != null
+                && (joinType == JoinType.Left || joinType == JoinType.LeftFetch)
+                && data.getProxyType().isEntity()
+                && !data.getProxyType().isCollection();
+    }
+
+    /**
+     * Checks whether the alias occurs as a whole word, hobj1 must not match hobj12.
+     */
+    private static boolean isAliasUsed(String hql, String alias) {
+        int index = hql.indexOf(alias);
+        while (index >= 0) {
+            int end = index + alias.length();
+            boolean start = index == 0 || !Character.isJavaIdentifierPart(hql.charAt(index - 1));
+            if (start && (end == hql.length() || !Character.isJavaIdentifierPart(hql.charAt(end)))) {
+                return true;
+            }
+            index = hql.indexOf(alias, end);
+        }
+        return false;
+    }
+
+    private static JoinType withoutFetch(JoinType joinType) {
+        switch (joinType) {
+            case Fetch: return JoinType.Inner;
+            case LeftFetch: return JoinType.Left;
+            default: return joinType;
+        }
+    }
+
     @Override
     public void appendTo(HqlQuery query, HqlQueryBuilderParams params) {
         HqlQueryValue from = toHqlQueryValue(params);
@@ -109,11 +193,12 @@ public class TypeSafeQueryFrom implements HqlQueryBuilder {
     /**
      * Add class join while validating an on case was specified.
      */
-    private void appendClassJoin(HqlQueryValueImpl from, TypeSafeQueryJoin<?> join, HqlQueryBuilderParams params) {
+    private void appendClassJoin(HqlQueryValueImpl from, TypeSafeQueryJoin<?> join,
+            JoinType joinType, HqlQueryBuilderParams params) {
         // example: 'left join Product hobj1 on ...'
         TypeSafeQueryProxyData data = join.getData();
         from.appendHql(" " +
-                getJoinTypeString(data.getEffectiveJoinType()) +
+                getJoinTypeString(joinType) +
                 " " + helper.getEntityName(data.getPropertyType()) +
                 " " + data.getAlias());
 
@@ -134,12 +219,13 @@ public class TypeSafeQueryFrom implements HqlQueryBuilder {
      * This is a work around because hibernate doesn't properly convert the hql to sql in this case.
      * (the hql looks fine, but the sql throws an SqlGrammarException and the sql property join is missing)
      */
-    private void appendPropertyAsClassJoin(HqlQueryValueImpl from, TypeSafeQueryJoin<?> join, HqlQueryBuilderParams params) {
+    private void appendPropertyAsClassJoin(HqlQueryValueImpl from, TypeSafeQueryJoin<?> join,
+            JoinType joinType, HqlQueryBuilderParams params) {
         // example: 'left join Product hobj1 on ...'
         TypeSafeQueryProxyData data = join.getData();
         String alias = data.getAlias();
         StringBuilder joinSB = new StringBuilder(" ")
-            .append(getJoinTypeString(data.getEffectiveJoinType()))
+            .append(getJoinTypeString(joinType))
             .append(" ").append(helper.getEntityName(data.getPropertyType()))
             .append(" ").append(alias).append(" on ");
         if (data.getProxyType().isCollection()) {
@@ -182,11 +268,12 @@ public class TypeSafeQueryFrom implements HqlQueryBuilder {
     /**
      *
      */
-    private void appendPropertyJoin(HqlQueryValueImpl from, TypeSafeQueryJoin<?> join, HqlQueryBuilderParams params) {
+    private void appendPropertyJoin(HqlQueryValueImpl from, TypeSafeQueryJoin<?> join,
+            JoinType joinType, HqlQueryBuilderParams params) {
         TypeSafeQueryProxyData data = join.getData();
         // example: 'left join fetch' 'hobj1'.'propertyPath' 'hobj2'
         from.appendHql(" " +
-                getJoinTypeString(data.getEffectiveJoinType()) +
+                getJoinTypeString(joinType) +
                 " " + data.getParent().getAlias() +
                 "." + data.getPropertyPath() +
                 " " + data.getAlias());
@@ -142,6 +142,7 @@ public class TypeSafeQueryProxyDataTree implements HqlQueryBuilder {
             }
         }
         queryData.add(child);
+        query.queryChanged();
         return child;
     }
 
@@ -158,6 +159,7 @@ public class TypeSafeQueryProxyDataTree implements HqlQueryBuilder {
         }
         parent.putChild(child);
         queryData.add(child);
+        query.queryChanged();
         return child;
     }
 
@@ -234,9 +236,18 @@ public class TypeSafeQueryProxyDataTree implements HqlQueryBuilder {
     }
 
     public HqlQueryValue toHqlQueryValue(HqlQueryBuilderParams params) {
+        return toHqlQueryValue(params, null);
+    }
+
+    /**
+     * @param referencingHql the hql outside of the from clause, used to leave out joins
+     *        which can't change a count, see {@link TypeSafeQueryFrom#toHqlQueryValue(HqlQueryBuilderParams, String)}.
+     *        Only used when there is one from, the joins of a from may be used by the joins of the others.
+     */
+    public HqlQueryValue toHqlQueryValue(HqlQueryBuilderParams params, String referencingHql) {
         HqlQueryValueImpl value = new HqlQueryValueImpl();
         for(TypeSafeQueryFrom from: froms) {
-            HqlQueryValue hqlQueryValue = from.toHqlQueryValue(params);
+            HqlQueryValue hqlQueryValue = from.toHqlQueryValue(params, froms.size() == 1 ? referencingHql: null);
             if (!value.getHql().isEmpty()) {
                 value.appendHql(", ");
             }
@@ -54,6 +54,10 @@ public class TypeSafeQueryGroupBys implements HqlQueryBuilder, Copyable {
         }
     }
 
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
     public <T> TypeSafeValue<T> add(TypeSafeValue<T> val) {
         values.add(val);
         return val;
@@ -15,6 +15,11 @@
  */
 package be.shad.tsqb.helper;
 
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -27,11 +32,19 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 
 import be.shad.tsqb.exceptions.TsqbException;
 
+/**
+ * Resolves the classes to select into. The constructors, builder() factories and build methods
+ * are resolved to method handles once per class, the builder specs are cached per class.
+ */
 public class ConcreteDtoClassResolverImpl implements ConcreteDtoClassResolver {
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final ConcurrentMap<Class<?>, SelectionBuilderSpec<?, ?>> builderSpecs = new ConcurrentHashMap<>();
 
     @Override
     @SuppressWarnings("unchecked")
@@ -73,7 +86,20 @@ public class ConcreteDtoClassResolverImpl implements ConcreteDtoClassResolver {
         }
     }
 
+    /**
+     * Creates a supplier which invokes the no-args constructor through a method handle.
+     * When the constructor can't be resolved, the supplier reports the problem when it is used.
+     */
     protected <T> Supplier<T> newInstanceSupplier(Class<T> clazz) {
+        try {
+            Constructor<T> constructor = clazz.getDeclaredConstructor();
+            return handleSupplier(lookup.unreflectConstructor(constructor).asType(methodType(Object.class)));
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            return reflectiveInstanceSupplier(clazz);
+        }
+    }
+
+    private <T> Supplier<T> reflectiveInstanceSupplier(Class<T> clazz) {
         return () -> {
             try {
                 return clazz.getDeclaredConstructor().newInstance();
@@ -83,12 +109,28 @@ public class ConcreteDtoClassResolverImpl implements ConcreteDtoClassResolver {
         };
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Creates a supplier which invokes the static factory method through a method handle.
+     */
     protected <T> Supplier<T> newInstanceSupplier(Method newInstance) {
+        try {
+            return handleSupplier(lookup.unreflect(newInstance).asType(methodType(Object.class)));
+        } catch (IllegalAccessException e) {
+            throw new TsqbException(e);
+        }
+    }
+
+    /**
+     * @param handle a handle of type ()Object.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> handleSupplier(MethodHandle handle) {
         return () -> {
             try {
-                return (T) newInstance.invoke(null);
-            } catch (IllegalAccessException | InvocationTargetException e) {
+                return (T) handle.invokeExact();
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new TsqbException(e);
             }
         };
@@ -105,11 +147,14 @@ public class ConcreteDtoClassResolverImpl implements ConcreteDtoClassResolver {
     @SuppressWarnings("unchecked")
     protected <T, R> BuildFn<T, R> getBuildFunction(Class<T> builderClass) {
         try {
-            Method buildMethod = getBuilderMethod(builderClass);
+            MethodHandle buildMethod = lookup.unreflect(getBuilderMethod(builderClass))
+                    .asType(methodType(Object.class, Object.class));
             return builder -> {
                 try {
-                    return (R) buildMethod.invoke(builder);
-                } catch (IllegalAccessException | InvocationTargetException e) {
+                    return (R) buildMethod.invokeExact((Object) builder);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
                     throw new IllegalArgumentException("buildMethodName: build " +
                             " could not be invoked on " + builder, e);
                 }
@@ -117,6 +162,9 @@ public class ConcreteDtoClassResolverImpl implements ConcreteDtoClassResolver {
         } catch (NoSuchMethodException e) {
             throw new IllegalArgumentException("buildMethodName: build " +
                     "is not found on " + builderClass.getCanonicalName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("buildMethodName: build " +
+                    "is not accessible on " + builderClass.getCanonicalName(), e);
         }
     }
 
@@ -138,9 +186,21 @@ public class ConcreteDtoClassResolverImpl implements ConcreteDtoClassResolver {
         }
     }
 
+    /**
+     * The spec is created once per class, it is immutable and shared by all selections of the class.
+     */
     @Override
     @SuppressWarnings("unchecked")
     public <SB, SR> SelectionBuilderSpec<SB, SR> createBuilderSpec(Class<SB> selectionBuilderClass) {
+        SelectionBuilderSpec<?, ?> spec = builderSpecs.get(selectionBuilderClass);
+        if (spec == null) {
+            spec = builderSpecs.computeIfAbsent(selectionBuilderClass, this::resolveBuilderSpec);
+        }
+        return (SelectionBuilderSpec<SB, SR>) spec;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <SB, SR> SelectionBuilderSpec<SB, SR> resolveBuilderSpec(Class<SB> selectionBuilderClass) {
         if (isBuilderClass(selectionBuilderClass)) {
             selectionBuilderClass = getSelectionBuilderClass(selectionBuilderClass);
             Class<SR> selectionResultClass = getResultClass(selectionBuilderClass);
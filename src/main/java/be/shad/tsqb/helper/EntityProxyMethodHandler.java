@@ -16,19 +16,16 @@
 package be.shad.tsqb.helper;
 
 import java.lang.reflect.Method;
-import java.util.Collection;
-import java.util.Map;
 
 import be.shad.tsqb.data.TypeSafeQueryProxyData;
+import be.shad.tsqb.proxy.SingleArgumentMethodHandler;
 import be.shad.tsqb.proxy.TypeSafeQueryProxyType;
 import be.shad.tsqb.query.TypeSafeDeleteQuery;
 import be.shad.tsqb.query.TypeSafeQueryInternal;
 import be.shad.tsqb.query.TypeSafeUpdateQuery;
 import be.shad.tsqb.query.TypeSafeUpdateQueryInternal;
 
-import javassist.util.proxy.MethodHandler;
-
-class EntityProxyMethodHandler implements MethodHandler {
+class EntityProxyMethodHandler implements SingleArgumentMethodHandler {
     private final TypeSafeQueryInternal query;
     private final TypeSafeQueryHelperImpl helper;
     private final TypeSafeQueryProxyData data;
@@ -43,13 +40,21 @@ class EntityProxyMethodHandler implements MethodHandler {
     }
 
     public Object invoke(Object self, Method m, Method proceed, Object[] args) {
-        if (m.getReturnType().equals(TypeSafeQueryProxyData.class)) {
-            return data;
-        }
-        if ("toString".equals(m.getName())) {
-            return String.format("Proxy of [%s]", data.toString());
+        return invokeSingle(self, m, args.length == 0 ? null: args[0]);
+    }
+
+    @Override
+    public Object invokeSingle(Object self, Method m, Object argument) {
+        ProxyMethodPlan plan = helper.getEntityMethodPlan(m);
+        switch (plan.getKind()) {
+            case PROXY_DATA:
+                return data;
+            case TO_STRING:
+                return String.format("Proxy of [%s]", data.toString());
+            default:
+                break;
         }
-        boolean setter = m.getName().startsWith("set");
+        boolean setter = plan.getKind() == ProxyMethodPlan.Kind.SETTER;
         if (setter && !(query instanceof TypeSafeUpdateQueryInternal)) {
             throw new IllegalArgumentException("Calling the setter of an entity proxy has no point. "
                     + "If this object was supposed to be used as selection proxy, "
@@ -58,7 +63,7 @@ class EntityProxyMethodHandler implements MethodHandler {
                     + "query.where(...) methods instead.");
         }
 
-        String method2Name = helper.method2PropertyName(m);
+        String method2Name = plan.getPropertyName();
         TypeSafeQueryProxyData child = data.getChild(method2Name);
         if (child == null) {
             child = helper.createChildData(query, data, method2Name);
@@ -72,7 +77,7 @@ class EntityProxyMethodHandler implements MethodHandler {
                     "This is not allowed in a delete/update query. Attempted to get: " + child);
         }
         if (setter) {
-            return handleSetterInvocation(child, args[0]);
+            return handleSetterInvocation(child, argument);
         }
         if (query.getActiveMultiJoinType() != null) {
             if (!child.getProxyType().isEntity()) {
@@ -83,15 +88,13 @@ class EntityProxyMethodHandler implements MethodHandler {
             // join type override is active, update the child join type:
             child.setJoinType(query.getActiveMultiJoinType());
         }
-        if (!Map.class.isAssignableFrom(m.getReturnType())
-                && !Collection.class.isAssignableFrom(m.getReturnType())
-                && child.getProxy() != null) {
+        if (!plan.isReturnsCollectionOrMap() && child.getProxy() != null) {
             // return the proxy without adding to the invocation queue to allow method chaining.
             return child.getProxy();
         }
         // remember the method invocation, to be used later...
         query.invocationWasMade(child);
-        return helper.getDummyValue(m.getReturnType());
+        return plan.getDummyValue();
     }
 
     private Object handleSetterInvocation(TypeSafeQueryProxyData child, Object value) {
@@ -0,0 +1,239 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.helper;
+
+import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.ComponentType;
+import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.CompositeType;
+import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.EntityCollectionType;
+import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.EntityType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.MapType;
+import org.hibernate.type.Type;
+
+import be.shad.tsqb.data.TypeSafeQueryProxyData;
+import be.shad.tsqb.exceptions.TsqbException;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyType;
+import lombok.Value;
+
+/**
+ * Caches the hibernate metadata which is needed while building queries:
+ * the metadata of a class, the type information of the properties and
+ * the identifier getter of entities. Everything is resolved lazily, once.
+ * <p>
+ * The cache is shared by all helpers of the same metamodel. The metamodel
+ * can't change after the session factory is built, a new session factory
+ * has a new metamodel and gets a new cache.
+ */
+final class HibernateMetaDataCache {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * The caches are only weakly referenced, they are kept alive by the helpers using them.
+     * (the cache references the metamodel, so a strong value would keep the key alive)
+     */
+    private static final Map<MetamodelImplementor, WeakReference<HibernateMetaDataCache>> CACHES = new WeakHashMap<>();
+
+    private final MetamodelImplementor metaModel;
+    private final ConcurrentMap<Class<?>, ClassInfo> classes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, PropertyInfo>> properties = new ConcurrentHashMap<>();
+
+    private HibernateMetaDataCache(MetamodelImplementor metaModel) {
+        this.metaModel = metaModel;
+    }
+
+    static HibernateMetaDataCache forMetaModel(MetamodelImplementor metaModel) {
+        synchronized (CACHES) {
+            WeakReference<HibernateMetaDataCache> reference = CACHES.get(metaModel);
+            HibernateMetaDataCache cache = reference == null ? null: reference.get();
+            if (cache == null) {
+                cache = new HibernateMetaDataCache(metaModel);
+                CACHES.put(metaModel, new WeakReference<>(cache));
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return the entity metadata or null if the class is not an entity.
+     */
+    ClassMetadata getMetaData(Class<?> clazz) {
+        return getClassInfo(clazz).metaData;
+    }
+
+    /**
+     * @return the registered basic type or null if the class is not a basic type.
+     */
+    BasicType getBasicType(Class<?> clazz) {
+        return getClassInfo(clazz).basicType;
+    }
+
+    /**
+     * Retrieves the identifier of an entity using its identifier getter.
+     */
+    Object getIdentifier(Object entity, ClassMetadata metaData) {
+        ClassInfo classInfo = getClassInfo(entity.getClass());
+        MethodHandle getter = classInfo.identifierGetter;
+        if (getter == null) {
+            getter = createIdentifierGetter(entity.getClass(), metaData.getIdentifierPropertyName());
+            classInfo.identifierGetter = getter;
+        }
+        try {
+            return getter.invokeExact(entity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new TsqbException(e);
+        }
+    }
+
+    private static MethodHandle createIdentifierGetter(Class<?> entityClass, String identifierPropertyName) {
+        try {
+            return MethodHandles.lookup().unreflect(entityClass.getMethod("get" +
+                    Character.toUpperCase(identifierPropertyName.charAt(0))
+                    + identifierPropertyName.substring(1))).asType(GETTER_TYPE);
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {
+            throw new TsqbException(e);
+        }
+    }
+
+    private ClassInfo getClassInfo(Class<?> clazz) {
+        ClassInfo classInfo = classes.get(clazz);
+        if (classInfo == null) {
+            // entityPersister(Class) looks up the persister by class name as well,
+            // but throws a MappingException when the class is not an entity.
+            EntityPersister persister = metaModel.entityPersisters().get(clazz.getName());
+            BasicType basicType = metaModel.getTypeConfiguration().getBasicTypeRegistry()
+                    .getRegisteredType(clazz.getName());
+            classInfo = new ClassInfo((ClassMetadata) persister, basicType);
+            ClassInfo existing = classes.putIfAbsent(clazz, classInfo);
+            if (existing != null) {
+                classInfo = existing;
+            }
+        }
+        return classInfo;
+    }
+
+    /**
+     * Retrieves the type information of a property of the parent data.
+     */
+    PropertyInfo getPropertyInfo(TypeSafeQueryProxyData parent, String property) {
+        Class<?> ownerClass;
+        String propertyPath;
+        if (parent.getProxyType().isComposite()) {
+            // composite properties are resolved using the entity which contains them:
+            ownerClass = parent.getCompositeTypeEntityParent().getPropertyType();
+            propertyPath = parent.getCompositePropertyPath() + "." + property;
+        } else {
+            ownerClass = parent.getPropertyType();
+            propertyPath = property;
+        }
+        ConcurrentMap<String, PropertyInfo> ownerProperties = properties.get(ownerClass);
+        if (ownerProperties == null) {
+            ownerProperties = properties.computeIfAbsent(ownerClass, k -> new ConcurrentHashMap<>());
+        }
+        PropertyInfo propertyInfo = ownerProperties.get(propertyPath);
+        if (propertyInfo == null) {
+            propertyInfo = createPropertyInfo(getTargetType(ownerClass, propertyPath));
+            ownerProperties.putIfAbsent(propertyPath, propertyInfo);
+        }
+        return propertyInfo;
+    }
+
+    private Type getTargetType(Class<?> ownerClass, String propertyPath) {
+        ClassMetadata metaData = getMetaData(ownerClass);
+        if (metaData != null) {
+            return metaData.getPropertyType(propertyPath);
+        }
+        org.hibernate.type.CompositeType hibernateType = metaModel
+                .embeddable(ownerClass).getHibernateType();
+        return hibernateType.getSubtypes()[hibernateType.getPropertyIndex(propertyPath)];
+    }
+
+    private PropertyInfo createPropertyInfo(Type propertyType) {
+        Class<?> targetClass = getTargetEntityClass(propertyType);
+        ClassMetadata metaData = getMetaData(targetClass);
+        TypeSafeQueryProxyType proxyType = null;
+        if (metaData != null || propertyType instanceof MapType) {
+            proxyType = propertyType.isCollectionType() ? EntityCollectionType: EntityType;
+        } else if (propertyType.isComponentType()) {
+            proxyType = propertyType instanceof org.hibernate.type.ComponentType ? ComponentType: CompositeType;
+        }
+        return new PropertyInfo(propertyType, targetClass, metaData, proxyType, getBasicType(targetClass) != null);
+    }
+
+    /**
+     * Retrieves the type information from hibernate.
+     */
+    private Class<?> getTargetEntityClass(Type propertyType) {
+        if (CollectionType.class.isAssignableFrom(propertyType.getClass())) {
+            CollectionType collectionType = (CollectionType) propertyType;
+            Type elementType = metaModel.collectionPersister(collectionType.getRole()).getElementType();
+            return elementType.getReturnedClass();
+        }
+        return propertyType.getReturnedClass();
+    }
+
+    /**
+     * The metadata of a class, the identifier getter is resolved on first use.
+     */
+    private static final class ClassInfo {
+        private final ClassMetadata metaData;
+        private final BasicType basicType;
+        private volatile MethodHandle identifierGetter;
+
+        private ClassInfo(ClassMetadata metaData, BasicType basicType) {
+            this.metaData = metaData;
+            this.basicType = basicType;
+        }
+    }
+
+    /**
+     * The resolved type information of a property.
+     */
+    @Value
+    static class PropertyInfo {
+        Type type;
+        Class<?> targetClass;
+        /**
+         * The metadata of the target class, if it is an entity.
+         */
+        ClassMetadata targetMetaData;
+        /**
+         * The proxy type to use for the property, null if the property is not proxied.
+         */
+        TypeSafeQueryProxyType proxyType;
+        boolean basicType;
+
+        String getIdentifierPropertyName() {
+            return targetMetaData == null ? null: targetMetaData.getIdentifierPropertyName();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.helper;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+
+import be.shad.tsqb.data.TypeSafeQueryProxyData;
+import be.shad.tsqb.selection.group.TypeSafeQuerySelectionGroupInternal;
+import lombok.Getter;
+
+/**
+ * Everything the proxy method handlers need to know about an invoked method
+ * which doesn't depend on the query, computed once per proxy class and method.
+ */
+@Getter
+final class ProxyMethodPlan {
+
+    enum Kind {
+        /** Retrieves the proxy data of the proxy itself. */
+        PROXY_DATA,
+        TO_STRING,
+        /** get(key) on a map selection proxy. */
+        MAP_GET,
+        /** put(key, value) on a map selection proxy. */
+        MAP_PUT,
+        SETTER,
+        GETTER
+    }
+
+    private final Kind kind;
+    private final String propertyName;
+    /**
+     * The parameter type of a setter or the return type of a getter.
+     */
+    private final Class<?> propertyType;
+    private final boolean noArgs;
+    /**
+     * Whether a setter returns the proxy itself (fluent setter).
+     */
+    private final boolean returnSelf;
+    private final boolean basicType;
+    private final boolean returnsCollection;
+    private final boolean returnsCollectionOrMap;
+    private final Object dummyValue;
+
+    private ProxyMethodPlan(TypeSafeQueryHelperImpl helper, Method m, Kind kind,
+            String propertyName, boolean returnSelf) {
+        Class<?> returnType = m.getReturnType();
+        this.kind = kind;
+        this.propertyName = propertyName;
+        this.propertyType = kind == Kind.SETTER && !noArgs(m) ? m.getParameterTypes()[0]: returnType;
+        this.noArgs = noArgs(m);
+        this.returnSelf = returnSelf;
+        this.basicType = helper.isBasicType(returnType);
+        this.returnsCollection = Collection.class.isAssignableFrom(returnType);
+        this.returnsCollectionOrMap = returnsCollection || Map.class.isAssignableFrom(returnType);
+        this.dummyValue = kind == Kind.GETTER && returnType != void.class ? helper.getDummyValue(returnType): null;
+    }
+
+    private static boolean noArgs(Method m) {
+        return m.getParameterCount() == 0;
+    }
+
+    /**
+     * Plans an invocation on an entity, component or composite proxy.
+     */
+    static ProxyMethodPlan forEntityMethod(TypeSafeQueryHelperImpl helper, Method m) {
+        Kind kind;
+        if (m.getReturnType().equals(TypeSafeQueryProxyData.class)) {
+            kind = Kind.PROXY_DATA;
+        } else if ("toString".equals(m.getName())) {
+            kind = Kind.TO_STRING;
+        } else if (m.getName().startsWith("set")) {
+            kind = Kind.SETTER;
+        } else {
+            kind = Kind.GETTER;
+        }
+        return new ProxyMethodPlan(helper, m, kind, helper.method2PropertyName(m), false);
+    }
+
+    /**
+     * Plans an invocation on a selection proxy.
+     */
+    static ProxyMethodPlan forSelectionMethod(TypeSafeQueryHelperImpl helper, Class<?> proxyClass, Method m) {
+        String methodName = m.getName();
+        if (m.getReturnType().equals(TypeSafeQuerySelectionGroupInternal.class)) {
+            return new ProxyMethodPlan(helper, m, Kind.PROXY_DATA, null, false);
+        }
+        if ("toString".equals(methodName)) {
+            return new ProxyMethodPlan(helper, m, Kind.TO_STRING, null, false);
+        }
+        if (Map.class.isAssignableFrom(proxyClass)) {
+            if ("get".equals(methodName)) {
+                return new ProxyMethodPlan(helper, m, Kind.MAP_GET, null, false);
+            }
+            if ("put".equals(methodName)) {
+                return new ProxyMethodPlan(helper, m, Kind.MAP_PUT, null, false);
+            }
+        }
+        boolean setter = methodName.startsWith("set");
+        String propertyName = helper.method2PropertyName(m);
+        boolean returnSelf = m.getReturnType().isAssignableFrom(proxyClass);
+        if (returnSelf && m.getParameterCount() == 1) {
+            setter = true;
+            propertyName = methodName;
+        }
+        return new ProxyMethodPlan(helper, m, setter ? Kind.SETTER: Kind.GETTER, propertyName, returnSelf);
+    }
+
+}
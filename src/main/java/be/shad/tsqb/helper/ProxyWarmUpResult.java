@@ -0,0 +1,45 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.helper;
+
+import lombok.Value;
+
+/**
+ * Outcome of {@link TypeSafeQueryHelperImpl#warmUp(java.util.Collection)}.
+ */
+@Value
+public class ProxyWarmUpResult {
+    /**
+     * The amount of classes for which a proxy class was requested.
+     */
+    int proxiedClasses;
+    /**
+     * The amount of proxy classes which had to be generated,
+     * classes which were generated before are not included.
+     */
+    int generatedClasses;
+    long durationNanos;
+
+    public long getDurationMillis() {
+        return durationNanos / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Generated %d proxy classes for %d classes in %dms",
+                generatedClasses, proxiedClasses, getDurationMillis());
+    }
+}
@@ -17,36 +17,51 @@ package be.shad.tsqb.helper;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.Map;
 
 import be.shad.tsqb.data.TypeSafeQuerySelectionProxyPropertyData;
+import be.shad.tsqb.proxy.SingleArgumentMethodHandler;
 import be.shad.tsqb.query.TypeSafeRootQueryInternal;
 import be.shad.tsqb.selection.group.TypeSafeQuerySelectionGroupImpl;
 import be.shad.tsqb.selection.group.TypeSafeQuerySelectionGroupInternal;
-import javassist.util.proxy.MethodHandler;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
-class SelectionDtoMethodHandler<T> implements MethodHandler {
+class SelectionDtoMethodHandler<T> implements SingleArgumentMethodHandler {
     private final TypeSafeQueryHelperImpl helper;
     private final TypeSafeRootQueryInternal query;
     private final TypeSafeQuerySelectionGroupInternal<T, ?> data;
 
     /**
-     *
+     * Only a map put has two arguments, the other methods have at most one
+     * and are handled like {@link #invokeSingle(Object, Method, Object)}.
      */
     public Object invoke(Object self, Method m, Method proceed, Object[] args) {
-        if (m.getReturnType().equals(TypeSafeQuerySelectionGroupInternal.class)) {
-            return data;
-        }
-        String methodName = m.getName();
-        if ("toString".equals(methodName)) {
-            return String.format("Selection Proxy of [%s]", data.toString());
-        }
-        if (handleMapInvocation(self, methodName, args)) {
+        ProxyMethodPlan plan = helper.getSelectionMethodPlan(self.getClass(), m);
+        if (plan.getKind() == ProxyMethodPlan.Kind.MAP_PUT) {
+            handleMapPut((String) args[0], args[1]);
             return null;
         }
-        if (args.length == 0 && data.getSelectionBuilderSpec().isBuilder()) {
+        return invoke(self, plan, args.length == 0 ? null: args[0]);
+    }
+
+    @Override
+    public Object invokeSingle(Object self, Method m, Object argument) {
+        return invoke(self, helper.getSelectionMethodPlan(self.getClass(), m), argument);
+    }
+
+    private Object invoke(Object self, ProxyMethodPlan plan, Object argument) {
+        switch (plan.getKind()) {
+            case PROXY_DATA:
+                return data;
+            case TO_STRING:
+                return String.format("Selection Proxy of [%s]", data.toString());
+            case MAP_GET:
+                handleMapGet((String) argument);
+                return null;
+            default:
+                break;
+        }
+        if (plan.isNoArgs() && data.getSelectionBuilderSpec().isBuilder()) {
             // builder method, return type may be final -> let the builder create a specific instance and
             // keep a mapping so we can find the builder based on the identity of the object
             @SuppressWarnings({"unchecked"})
@@ -55,23 +70,15 @@ class SelectionDtoMethodHandler<T> implements MethodHandler {
             return identity;
         }
 
-        boolean setter = methodName.startsWith("set");
-        String propertyName = helper.method2PropertyName(m);
-
-        boolean returnSelf = m.getReturnType().isAssignableFrom(data.getProxy().getClass());
-        if (returnSelf && m.getParameterTypes().length == 1) {
-            setter = true;
-            propertyName = m.getName();
-        }
-
-        TypeSafeQuerySelectionProxyPropertyData<Object> childData = getOrCreateChildData(propertyName, m, setter);
+        boolean setter = plan.getKind() == ProxyMethodPlan.Kind.SETTER;
+        TypeSafeQuerySelectionProxyPropertyData<Object> childData = getOrCreateChildData(plan, setter);
         if (setter) {
-            query.handleSetSelectionValue(childData, args[0]);
-            return returnSelf ? self: null;
-        } else if (helper.isBasicType(m.getReturnType())) {
+            query.handleSetSelectionValue(childData, argument);
+            return plan.isReturnSelf() ? self: null;
+        } else if (plan.isBasicType()) {
             query.queueInvokedSelection(childData);
-            return helper.getDummyValue(m.getReturnType());
-        } else if (Collection.class.isAssignableFrom(m.getReturnType())) {
+            return plan.getDummyValue();
+        } else if (plan.isReturnsCollection()) {
             query.queueInvokedSelection(childData);
             return null;
         } else {
@@ -80,16 +87,17 @@ class SelectionDtoMethodHandler<T> implements MethodHandler {
     }
 
     @SuppressWarnings({"unchecked"})
-    private <T> TypeSafeQuerySelectionProxyPropertyData<T> getOrCreateChildData(String propertyName, Method m, boolean setter) {
+    private <T> TypeSafeQuerySelectionProxyPropertyData<T> getOrCreateChildData(ProxyMethodPlan plan, boolean setter) {
+        String propertyName = plan.getPropertyName();
         TypeSafeQuerySelectionProxyPropertyData<T> childData = data.getChild(propertyName);
         if (childData != null) {
             return childData;
         }
-        Class<T> propertyType = (Class<T>) (setter ? m.getParameterTypes()[0]: m.getReturnType());
+        Class<T> propertyType = (Class<T>) plan.getPropertyType();
         TypeSafeQuerySelectionProxyPropertyData<T> newChildData = query.getDataTree()
                 .createSelectionData(propertyName, propertyType, data);
         if (!setter && newChildData.getSubGroup() == null
-                && !java.util.Collection.class.isAssignableFrom(propertyType)
+                && !Collection.class.isAssignableFrom(propertyType)
                 && !helper.isBasicType(propertyType)) {
             Class<T> concreteClass = helper.getConcreteDtoClassResolver().getConcreteClass(propertyType);
             TypeSafeQuerySelectionGroupInternal<T, T> subGroup = new TypeSafeQuerySelectionGroupImpl<>(
@@ -100,32 +108,24 @@ class SelectionDtoMethodHandler<T> implements MethodHandler {
         return newChildData;
     }
 
-    private boolean handleMapInvocation(Object self, String methodName, Object[] args) {
-        if (!(self instanceof Map)) {
-            return false;
+    private void handleMapGet(String mapSelectionKey) {
+        TypeSafeQuerySelectionProxyPropertyData<?> childData = data.getChild(mapSelectionKey);
+        if (childData == null) {
+            throw new IllegalArgumentException("Attempting to get data from a map proxy "
+                    + "which was not first put to the map proxy for key: "
+                    + mapSelectionKey);
         }
-        String mapSelectionKey = (String) args[0];
-        if ("get".equals(methodName)) {
-            TypeSafeQuerySelectionProxyPropertyData<?> childData = data.getChild(mapSelectionKey);
-            if (childData == null) {
-                throw new IllegalArgumentException("Attempting to get data from a map proxy "
-                        + "which was not first put to the map proxy for key: "
-                        + mapSelectionKey);
-            }
-            query.queueInvokedSelection(childData);
-            return true;
-        }
-        if ("put".equals(methodName)) {
-            query.clearInvokedSelection();
-            query.getProjections().setMapSelectionKeyForNextProjection(mapSelectionKey);
+        query.queueInvokedSelection(childData);
+    }
+
+    private void handleMapPut(String mapSelectionKey, Object value) {
+        query.clearInvokedSelection();
+        query.getProjections().setMapSelectionKeyForNextProjection(mapSelectionKey);
 
-            TypeSafeQuerySelectionProxyPropertyData<?> childData = data.getChild(mapSelectionKey);
-            if (childData == null) {
-                childData = query.getDataTree().createSelectionData(mapSelectionKey, Object.class, data);
-            }
-            query.getProjections().project(args[1], childData);
-            return true;
+        TypeSafeQuerySelectionProxyPropertyData<?> childData = data.getChild(mapSelectionKey);
+        if (childData == null) {
+            childData = query.getDataTree().createSelectionData(mapSelectionKey, Object.class, data);
         }
-        return false;
+        query.getProjections().project(value, childData);
     }
 }
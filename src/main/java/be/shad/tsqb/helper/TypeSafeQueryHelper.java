@@ -44,6 +44,11 @@ public interface TypeSafeQueryHelper {
      */
     Class<?> getEntityIdClass(Class<?> entityClass);
 
+    /**
+     * Uses the hibernate metadata to determine the ID property name for the given entityClass.
+     */
+    String getEntityIdPropertyName(Class<?> entityClass);
+
     /**
      * Uses the hibernate metadata to get the ID of the given entity
      */
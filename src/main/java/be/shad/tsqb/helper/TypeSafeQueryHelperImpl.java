@@ -16,17 +16,21 @@
 package be.shad.tsqb.helper;
 
 import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.ComponentType;
-import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.CompositeType;
-import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.EntityCollectionType;
 import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.EntityType;
 import static be.shad.tsqb.proxy.TypeSafeQueryProxyType.SelectionDtoType;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 
-import org.hibernate.MappingException;
 import org.hibernate.Session;
 import org.hibernate.engine.query.spi.HQLQueryPlan;
 import org.hibernate.engine.spi.LoadQueryInfluencers;
@@ -40,14 +44,12 @@ import org.hibernate.query.Query;
 import org.hibernate.resource.jdbc.spi.StatementInspector;
 import org.hibernate.type.BasicType;
 import org.hibernate.type.CollectionType;
-import org.hibernate.type.ComponentType;
-import org.hibernate.type.MapType;
 import org.hibernate.type.StringRepresentableType;
 import org.hibernate.type.Type;
 
 import be.shad.tsqb.NamedParameter;
 import be.shad.tsqb.data.TypeSafeQueryProxyData;
-import be.shad.tsqb.exceptions.TsqbException;
+import be.shad.tsqb.helper.HibernateMetaDataCache.PropertyInfo;
 import be.shad.tsqb.hql.HqlQuery;
 import be.shad.tsqb.proxy.TypeSafeQueryProxy;
 import be.shad.tsqb.proxy.TypeSafeQueryProxyFactory;
@@ -73,7 +75,10 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
 
     private final Supplier<Session> sessionSup;
     private final MetamodelImplementor metaModel;
+    private final HibernateMetaDataCache metaDataCache;
     private final TypeSafeQueryProxyFactory proxyFactory;
+    private final ConcurrentMap<Method, ProxyMethodPlan> entityMethodPlans = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, ProxyMethodPlan>> selectionMethodPlans = new ConcurrentHashMap<>();
     private final ConcreteDtoClassResolver classResolver;
 
     public TypeSafeQueryHelperImpl(Supplier<Session> sessionSup, MetamodelImplementor metaModel) {
@@ -83,6 +88,7 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
     public TypeSafeQueryHelperImpl(Supplier<Session> sessionSup, MetamodelImplementor metaModel, ConcreteDtoClassResolver classResolver) {
         this.sessionSup = sessionSup;
         this.metaModel = metaModel;
+        this.metaDataCache = HibernateMetaDataCache.forMetaModel(metaModel);
         this.classResolver = classResolver;
         this.proxyFactory = new TypeSafeQueryProxyFactory(classResolver);
     }
@@ -92,30 +98,37 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
         return classResolver;
     }
 
-    private Type getTargetType(TypeSafeQueryProxyData data, String property) {
-        if (data.getProxyType().isComposite()) {
-            return getMetaDataNonNull(data.getCompositeTypeEntityParent().getPropertyType()).
-                    getPropertyType(data.getCompositePropertyPath() + "." + property);
-        }
-        ClassMetadata metaData = getMetaData(data.getPropertyType());
-        if (metaData != null) {
-            return metaData.getPropertyType(property);
-        }
-        org.hibernate.type.CompositeType hibernateType = metaModel
-                .embeddable(data.getPropertyType()).getHibernateType();
-        return hibernateType.getSubtypes()[hibernateType.getPropertyIndex(property)];
+    /**
+     * Delegates to {@link #warmUp(Collection)} without dto classes.
+     */
+    public ProxyWarmUpResult warmUp() {
+        return warmUp(Collections.emptyList());
     }
 
     /**
-     * Retrieves the type information from hibernate.
+     * Generates the proxy classes for all entities and embeddables known in the
+     * hibernate metamodel and for the given dto classes, so the first queries
+     * don't pay for the proxy class generation.
+     * <p>
+     * The classes are generated in parallel, this is meant to be called once at startup.
+     * Classes which can't be proxied (final classes) are skipped.
      */
-    private Class<?> getTargetEntityClass(Type propertyType) {
-        if (CollectionType.class.isAssignableFrom(propertyType.getClass())) {
-            CollectionType collectionType = (CollectionType) propertyType;
-            Type elementType = metaModel.collectionPersister(collectionType.getRole()).getElementType();
-            return elementType.getReturnedClass();
-        }
-        return propertyType.getReturnedClass();
+    public ProxyWarmUpResult warmUp(Collection<Class<?>> dtoClasses) {
+        long start = System.nanoTime();
+        List<Entry<Class<?>, TypeSafeQueryProxyType>> proxyRequests = new ArrayList<>();
+        metaModel.getEntities().forEach(e -> proxyRequests.add(proxyRequest(e.getJavaType(), EntityType)));
+        metaModel.getEmbeddables().forEach(e -> proxyRequests.add(proxyRequest(e.getJavaType(), ComponentType)));
+        dtoClasses.forEach(c -> proxyRequests.add(proxyRequest(c, SelectionDtoType)));
+        proxyRequests.removeIf(r -> r.getKey() == null || Modifier.isFinal(r.getKey().getModifiers()));
+
+        long generated = proxyRequests.parallelStream()
+                .filter(r -> proxyFactory.generateProxyClass(r.getKey(), r.getValue()))
+                .count();
+        return new ProxyWarmUpResult(proxyRequests.size(), (int) generated, System.nanoTime() - start);
+    }
+
+    private static Entry<Class<?>, TypeSafeQueryProxyType> proxyRequest(Class<?> clazz, TypeSafeQueryProxyType type) {
+        return new SimpleEntry<>(clazz, type);
     }
 
     @Override
@@ -133,16 +146,14 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
         return getMetaDataNonNull(entityClass).getIdentifierType().getReturnedClass();
     }
 
+    @Override
+    public String getEntityIdPropertyName(Class<?> entityClass) {
+        return getMetaDataNonNull(entityClass).getIdentifierPropertyName();
+    }
+
     @Override
     public Object getIdentifier(Object entity) {
-        String identifierPropertyName = getMetaDataNonNull(entity.getClass()).getIdentifierPropertyName();
-        try {
-            return entity.getClass().getMethod("get" +
-                                Character.toUpperCase(identifierPropertyName.charAt(0))
-                                + identifierPropertyName.substring(1)).invoke(entity);
-        } catch (NoSuchMethodException | SecurityException | IllegalAccessException | InvocationTargetException e) {
-            throw new TsqbException(e);
-        }
+        return metaDataCache.getIdentifier(entity, getMetaDataNonNull(entity.getClass()));
     }
 
     @Override
@@ -166,7 +177,7 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
     }
 
     private BasicType getBasicType(Class<?> type) {
-        return metaModel.getTypeConfiguration().getBasicTypeRegistry().getRegisteredType(type.getName());
+        return metaDataCache.getBasicType(type);
     }
 
     boolean isBasicType(Class<?> returnType) {
@@ -213,21 +224,15 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
      * Creates data based on the hibernate metadata for the given <code>property</code>.
      */
     TypeSafeQueryProxyData createChildData(TypeSafeQueryInternal query, TypeSafeQueryProxyData parent, String property) {
-        Type propertyType = getTargetType(parent, property);
-        Class<?> targetClass = getTargetEntityClass(propertyType);
-        ClassMetadata metadata = getMetaData(targetClass);
-        if (metadata == null && !propertyType.isComponentType() && !(propertyType instanceof MapType)) {
+        PropertyInfo propertyInfo = metaDataCache.getPropertyInfo(parent, property);
+        Class<?> targetClass = propertyInfo.getTargetClass();
+        TypeSafeQueryProxyType proxyType = propertyInfo.getProxyType();
+        if (proxyType == null) {
             return query.getDataTree().createData(parent, property, targetClass);
         }
-        TypeSafeQueryProxyType proxyType;
-        if (metadata != null || propertyType instanceof MapType) {
-            proxyType = propertyType.isCollectionType() ? EntityCollectionType: EntityType;
-        } else {
-            proxyType = propertyType instanceof ComponentType ? ComponentType: CompositeType;
-        }
-        TypeSafeQueryProxy proxy = isBasicType(targetClass) ? null: (TypeSafeQueryProxy) proxyFactory.getProxy(targetClass, proxyType);
+        TypeSafeQueryProxy proxy = propertyInfo.isBasicType() ? null: (TypeSafeQueryProxy) proxyFactory.getProxy(targetClass, proxyType);
         TypeSafeQueryProxyData data = query.getDataTree().createData(parent, property, targetClass,
-                proxyType, metadata == null ? null: metadata.getIdentifierPropertyName(), proxy);
+                proxyType, propertyInfo.getIdentifierPropertyName(), proxy);
         if (proxy != null) {
             setEntityProxyMethodListener(query, proxy, data);
         }
@@ -243,11 +248,7 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
     }
 
     private ClassMetadata getMetaData(Class<?> targetClass) {
-        try {
-            return (ClassMetadata) metaModel.entityPersister(targetClass);
-        } catch (MappingException ex) {
-            return null;
-        }
+        return metaDataCache.getMetaData(targetClass);
     }
 
     @Override
@@ -271,6 +272,32 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
         return data;
     }
 
+    /**
+     * The plan for a method invoked on an entity proxy, this doesn't depend on the proxy class.
+     */
+    ProxyMethodPlan getEntityMethodPlan(Method m) {
+        ProxyMethodPlan plan = entityMethodPlans.get(m);
+        if (plan == null) {
+            plan = entityMethodPlans.computeIfAbsent(m, k -> ProxyMethodPlan.forEntityMethod(this, k));
+        }
+        return plan;
+    }
+
+    /**
+     * The plan for a method invoked on a selection proxy of the given proxy class.
+     */
+    ProxyMethodPlan getSelectionMethodPlan(Class<?> proxyClass, Method m) {
+        ConcurrentMap<Method, ProxyMethodPlan> plans = selectionMethodPlans.get(proxyClass);
+        if (plans == null) {
+            plans = selectionMethodPlans.computeIfAbsent(proxyClass, k -> new ConcurrentHashMap<>());
+        }
+        ProxyMethodPlan plan = plans.get(m);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(m, k -> ProxyMethodPlan.forSelectionMethod(this, proxyClass, k));
+        }
+        return plan;
+    }
+
     /**
      * Simple conversion to the property path to be used in the query building phase.
      */
@@ -295,7 +322,7 @@ public class TypeSafeQueryHelperImpl implements TypeSafeQueryHelper {
 
     @Override
     public String getMappedByProperty(TypeSafeQueryProxyData child) {
-        Type propertyType = getTargetType(child.getParent(), child.getPropertyPath());
+        Type propertyType = metaDataCache.getPropertyInfo(child.getParent(), child.getPropertyPath()).getType();
         if (!propertyType.isCollectionType()) {
             throw new IllegalArgumentException("Method not designed to fetch MappedByProperty "
                     + "for a non-collection type. PropertyType was: " + propertyType);
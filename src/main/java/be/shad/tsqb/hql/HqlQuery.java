@@ -15,7 +15,9 @@
  */
 package be.shad.tsqb.hql;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -31,6 +33,7 @@ public class HqlQuery implements HqlQueryValue {
     private final StringBuilder groupBy = new StringBuilder();
     private final StringBuilder having = new StringBuilder();
     private final StringBuilder orderBy = new StringBuilder();
+    private final List<String> selectParts = new ArrayList<>();
     private final List<Object> params = new LinkedList<>();
     private ResultTransformer resultTransformer;
 
@@ -59,6 +62,14 @@ public class HqlQuery implements HqlQueryValue {
             select.append(", ");
         }
         select.append(selectPart);
+        selectParts.add(selectPart);
+    }
+
+    /**
+     * @return the select parts in the order they were appended, read only.
+     */
+    public List<String> getSelectParts() {
+        return Collections.unmodifiableList(selectParts);
     }
 
     public String getFrom() {
@@ -86,6 +97,16 @@ public class HqlQuery implements HqlQueryValue {
         where.append(wherePart);
     }
 
+    /**
+     * Wraps the where clause in parentheses, so a part which is appended afterwards
+     * restricts the whole clause instead of only the last part of an or.
+     */
+    public void groupWhere() {
+        if (where.length() > 0) {
+            where.insert(0, '(').append(')');
+        }
+    }
+
     public String getGroupBy() {
         if (groupBy.length() > 0) {
             return " group by " + groupBy.toString();
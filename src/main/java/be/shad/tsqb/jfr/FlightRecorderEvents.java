@@ -0,0 +1,48 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.jfr;
+
+/**
+ * The flight recorder events of this library, see the events in this package.
+ * <p>
+ * Events are only created when the flight recorder api is available on the jdk, older java 8 runtimes
+ * don't have it. While an event type is not enabled in a running recording, its start method returns null
+ * so nothing is allocated or measured for it.
+ */
+public final class FlightRecorderEvents {
+
+    /**
+     * The category under which the events are listed in the flight recorder.
+     */
+    public static final String CATEGORY = "TypeSafeQueryBuilder";
+
+    /**
+     * Whether the jdk.jfr api is available, events must only be used when it is.
+     */
+    public static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecorderEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
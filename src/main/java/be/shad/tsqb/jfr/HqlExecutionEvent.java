@@ -0,0 +1,89 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One execution of a query by the dao. A query with a batched collection parameter
+ * is executed once per chunk, each execution is a separate event.
+ */
+@Name("be.shad.tsqb.HqlExecution")
+@Label("HQL Execution")
+@Category(FlightRecorderEvents.CATEGORY)
+@Description("Executing a query, or one chunk of a query with a batched collection parameter")
+public final class HqlExecutionEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(HqlExecutionEvent.class);
+
+    @Label("Fingerprint")
+    @Description("See TypeSafeBaseQuery.fingerprint()")
+    private long fingerprint;
+
+    @Label("HQL Length")
+    private int hqlLength;
+
+    @Label("Chunk Index")
+    private int chunkIndex;
+
+    @Label("Chunk Size")
+    @Description("The number of values bound to the batched parameter, 0 when the query isn't batched")
+    private int chunkSize;
+
+    @Label("Row Count")
+    @Description("The number of rows listed or updated")
+    private int rowCount;
+
+    /**
+     * Whether the event is enabled in a running recording,
+     * only call when {@link FlightRecorderEvents#AVAILABLE}.
+     */
+    public static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Creates and begins the event, only call when {@link FlightRecorderEvents#AVAILABLE}.
+     *
+     * @return null when the event isn't enabled in a running recording.
+     */
+    public static HqlExecutionEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        HqlExecutionEvent event = new HqlExecutionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event with the executed query when it is recorded.
+     */
+    public void record(long fingerprint, int hqlLength, int chunkIndex, int chunkSize, int rowCount) {
+        if (shouldCommit()) {
+            this.fingerprint = fingerprint;
+            this.hqlLength = hqlLength;
+            this.chunkIndex = chunkIndex;
+            this.chunkSize = chunkSize;
+            this.rowCount = rowCount;
+            commit();
+        }
+    }
+}
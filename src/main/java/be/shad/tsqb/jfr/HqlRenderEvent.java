@@ -0,0 +1,76 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.jfr;
+
+import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.query.QueryFingerprint;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Rendering a root query to hql, including its subqueries.
+ */
+@Name("be.shad.tsqb.HqlRender")
+@Label("HQL Render")
+@Category(FlightRecorderEvents.CATEGORY)
+@Description("Rendering a type safe query to hql")
+public final class HqlRenderEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(HqlRenderEvent.class);
+
+    @Label("Fingerprint")
+    @Description("See TypeSafeBaseQuery.fingerprint()")
+    private long fingerprint;
+
+    @Label("HQL Length")
+    private int hqlLength;
+
+    @Label("Parameter Count")
+    private int parameterCount;
+
+    @Label("Result Class")
+    private Class<?> resultClass;
+
+    /**
+     * Creates and begins the event, only call when {@link FlightRecorderEvents#AVAILABLE}.
+     *
+     * @return null when the event isn't enabled in a running recording.
+     */
+    public static HqlRenderEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        HqlRenderEvent event = new HqlRenderEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event with the rendered query when it is recorded.
+     */
+    public void record(HqlQuery query, Class<?> resultClass) {
+        if (shouldCommit()) {
+            this.fingerprint = QueryFingerprint.of(query, resultClass);
+            this.hqlLength = query.getHql().length();
+            this.parameterCount = query.getParams().size();
+            this.resultClass = resultClass;
+            commit();
+        }
+    }
+}
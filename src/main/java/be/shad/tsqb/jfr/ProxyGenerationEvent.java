@@ -0,0 +1,71 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Generating or loading the proxy class of an entity or selection dto, this happens once per class.
+ */
+@Name("be.shad.tsqb.ProxyGeneration")
+@Label("Proxy Generation")
+@Category(FlightRecorderEvents.CATEGORY)
+@Description("Generating the proxy class of an entity or selection dto")
+public final class ProxyGenerationEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(ProxyGenerationEvent.class);
+
+    @Label("Proxied Class")
+    private Class<?> proxiedClass;
+
+    @Label("Entity")
+    @Description("Whether the proxy is used for entities and composite types, or for selection dtos")
+    private boolean entity;
+
+    @Label("Pregenerated")
+    @Description("Whether the proxy class was generated at build time and only had to be loaded")
+    private boolean pregenerated;
+
+    /**
+     * Creates and begins the event, only call when {@link FlightRecorderEvents#AVAILABLE}.
+     *
+     * @return null when the event isn't enabled in a running recording.
+     */
+    public static ProxyGenerationEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ProxyGenerationEvent event = new ProxyGenerationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event with the proxied class when it is recorded.
+     */
+    public void record(Class<?> proxiedClass, boolean entity, boolean pregenerated) {
+        if (shouldCommit()) {
+            this.proxiedClass = proxiedClass;
+            this.entity = entity;
+            this.pregenerated = pregenerated;
+            commit();
+        }
+    }
+}
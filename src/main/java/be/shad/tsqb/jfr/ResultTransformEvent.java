@@ -0,0 +1,70 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Transforming the listed rows of a query into the selected dtos.
+ */
+@Name("be.shad.tsqb.ResultTransform")
+@Label("Result Transform")
+@Category(FlightRecorderEvents.CATEGORY)
+@Description("Transforming the listed rows into the selected results")
+public final class ResultTransformEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(ResultTransformEvent.class);
+
+    @Label("Result Class")
+    private Class<?> resultClass;
+
+    @Label("Row Count")
+    private int rowCount;
+
+    @Label("Result Count")
+    @Description("The number of results after merging the rows with the same identity")
+    private int resultCount;
+
+    /**
+     * Creates and begins the event, only call when {@link FlightRecorderEvents#AVAILABLE}.
+     *
+     * @return null when the event isn't enabled in a running recording.
+     */
+    public static ResultTransformEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ResultTransformEvent event = new ResultTransformEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event with the transformed counts when it is recorded.
+     */
+    public void record(Class<?> resultClass, int rowCount, int resultCount) {
+        if (shouldCommit()) {
+            this.resultClass = resultClass;
+            this.rowCount = rowCount;
+            this.resultCount = resultCount;
+            commit();
+        }
+    }
+}
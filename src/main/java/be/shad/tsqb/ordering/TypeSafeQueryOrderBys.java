@@ -15,6 +15,7 @@
  */
 package be.shad.tsqb.ordering;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -83,9 +84,17 @@ public class TypeSafeQueryOrderBys implements OnGoingOrderBy, HqlQueryBuilder, C
         return null;
     }
 
+    /**
+     * @return the order bys in the order they were added, read only.
+     */
+    public List<OrderBy> getOrderBys() {
+        return Collections.unmodifiableList(orderBys);
+    }
+
     @Override
     public OnGoingOrderBy by(OrderBy orderBy) {
         orderBys.add(orderBy);
+        query.queryChanged();
         return this;
     }
 
@@ -0,0 +1,46 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.proxy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the proxy classes should be generated at build time
+ * by the {@link be.shad.tsqb.proxy.processor.TypeSafeQueryProxyProcessor}.
+ * <p>
+ * The {@link TypeSafeQueryProxyFactory} uses the pre-generated classes when
+ * they are present instead of generating proxy classes with javassist.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateTypeSafeQueryProxy {
+
+    /**
+     * Generate the proxy used when the class is used as entity or component in a query.
+     */
+    boolean entity() default true;
+
+    /**
+     * Generate the proxy used when the class is selected into (dto selection).
+     */
+    boolean selection() default false;
+
+}
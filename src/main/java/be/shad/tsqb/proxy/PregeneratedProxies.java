@@ -0,0 +1,124 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.proxy;
+
+import java.lang.reflect.Method;
+
+import be.shad.tsqb.exceptions.TsqbException;
+import javassist.util.proxy.MethodHandler;
+
+/**
+ * Naming convention and runtime support for the proxy classes which are
+ * generated at build time by the {@link be.shad.tsqb.proxy.processor.TypeSafeQueryProxyProcessor}.
+ * <p>
+ * A pre-generated proxy class lives in the package of the proxied class, its name is
+ * the binary name of the proxied class without package, with '$' replaced by '_',
+ * followed by {@link #ENTITY_PROXY_SUFFIX} or {@link #SELECTION_PROXY_SUFFIX}.
+ */
+public final class PregeneratedProxies {
+    public static final String ENTITY_PROXY_SUFFIX = "_TsqbProxy";
+    public static final String SELECTION_PROXY_SUFFIX = "_TsqbSelectionProxy";
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private PregeneratedProxies() {
+    }
+
+    /**
+     * @param binaryName the binary name of the proxied class, see {@link Class#getName()}.
+     * @return the binary name of the pre-generated proxy class.
+     */
+    public static String getProxyClassName(String binaryName, boolean entity) {
+        int packageEnd = binaryName.lastIndexOf('.');
+        String packagePrefix = binaryName.substring(0, packageEnd + 1);
+        String flatName = binaryName.substring(packageEnd + 1).replace('$', '_');
+        return packagePrefix + flatName + (entity ? ENTITY_PROXY_SUFFIX: SELECTION_PROXY_SUFFIX);
+    }
+
+    /**
+     * Looks up the pre-generated proxy class with the class loader of the proxied class.
+     *
+     * @return the pre-generated class or null if it doesn't exist.
+     */
+    static Class<?> findProxyClass(Class<?> concreteClass, boolean entity) {
+        ClassLoader classLoader = concreteClass.getClassLoader();
+        if (classLoader == null) {
+            return null;
+        }
+        try {
+            Class<?> proxyClass = Class.forName(getProxyClassName(
+                    concreteClass.getName(), entity), false, classLoader);
+            if (proxyClass.getSuperclass() != concreteClass) {
+                throw new IllegalStateException(String.format("Pre-generated proxy class [%s] "
+                        + "does not extend [%s].", proxyClass, concreteClass));
+            }
+            return proxyClass;
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolves a proxied method, used in the static initializer of a pre-generated proxy.
+     */
+    public static Method getMethod(Class<?> declaringClass, String name, Class<?>... parameterTypes) {
+        try {
+            return declaringClass.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new TsqbException(String.format("Pre-generated proxy method [%s.%s] "
+                    + "no longer exists, regenerate the proxy.", declaringClass.getName(), name), e);
+        }
+    }
+
+    /**
+     * Dispatches a proxied method invocation to the handler of the proxy.
+     */
+    public static Object invoke(MethodHandler handler, Object self, Method method, Object[] args) {
+        if (handler == null) {
+            throw new IllegalStateException("No handler was set on proxy " + self.getClass().getName());
+        }
+        try {
+            return handler.invoke(self, method, null, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new TsqbException(e);
+        }
+    }
+
+    /**
+     * Dispatches the invocation of a proxied method with at most one parameter to the handler
+     * of the proxy, without an arguments array when it is a {@link SingleArgumentMethodHandler}.
+     *
+     * @param argument the argument, null when the method has no parameters.
+     */
+    public static Object invokeSingle(MethodHandler handler, Object self, Method method, Object argument) {
+        if (handler == null) {
+            throw new IllegalStateException("No handler was set on proxy " + self.getClass().getName());
+        }
+        try {
+            if (handler instanceof SingleArgumentMethodHandler) {
+                return ((SingleArgumentMethodHandler) handler).invokeSingle(self, method, argument);
+            }
+            Object[] args = method.getParameterCount() == 0 ? NO_ARGS: new Object[] { argument };
+            return handler.invoke(self, method, null, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new TsqbException(e);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.proxy;
+
+import java.lang.reflect.Method;
+
+import javassist.util.proxy.MethodHandler;
+
+/**
+ * A method handler which can be invoked without an arguments array for methods with at most one
+ * parameter, the getters and setters of a proxy. The pre-generated proxies call it directly
+ * instead of {@link #invoke(Object, Method, Method, Object[])}, see {@link PregeneratedProxies}.
+ */
+public interface SingleArgumentMethodHandler extends MethodHandler {
+
+    /**
+     * Handles the invocation of a method with at most one parameter.
+     *
+     * @param argument the argument, null when the method has no parameters.
+     */
+    Object invokeSingle(Object self, Method method, Object argument) throws Throwable;
+
+}
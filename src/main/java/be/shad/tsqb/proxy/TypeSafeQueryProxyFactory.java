@@ -15,22 +15,47 @@
  */
 package be.shad.tsqb.proxy;
 
-import java.util.HashMap;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import be.shad.tsqb.exceptions.TsqbException;
 import javassist.util.proxy.MethodFilter;
 import javassist.util.proxy.ProxyFactory;
 import be.shad.tsqb.helper.ConcreteDtoClassResolver;
+import be.shad.tsqb.jfr.FlightRecorderEvents;
+import be.shad.tsqb.jfr.ProxyGenerationEvent;
 
 /**
  * Provides the proxies using javaassist.
  * <p>
  * the proxied classes are cached for faster proxy creation and
  * to prevent extra class creations everytime a proxy is requested.
+ * <p>
+ * Lookups of known proxy classes don't lock, a proxy class is only
+ * generated once per requested class and proxy type. Proxies are
+ * instantiated using a constructor handle which is resolved once
+ * when the proxy class is generated.
+ * <p>
+ * Generated proxy classes are shared by all factories through a registry
+ * attached to the concrete class (see {@link ClassValue}), so creating
+ * another helper or dao doesn't generate the classes again and the proxy
+ * classes can be unloaded together with the class loader of the proxied class.
+ * Proxy classes generated at build time (see {@link GenerateTypeSafeQueryProxy})
+ * are used instead of generating a class when they are present.
+ * The requested class is resolved to the concrete class with the resolver
+ * of this factory, so factories with different resolvers only share proxy
+ * classes when they resolve to the same concrete class.
  */
 public final class TypeSafeQueryProxyFactory {
 
+    private static final MethodType NEW_INSTANCE_TYPE = MethodType.methodType(Object.class);
     private static final MethodFilter METHOD_FILTER = m -> {
         switch (m.getName()) {
             case "finalize":
@@ -42,47 +67,180 @@ public final class TypeSafeQueryProxyFactory {
         }
     };
 
-    private final Map<Class<?>, Class<?>>[] proxyClasses;
+    /**
+     * Process wide registry: the proxy classes per concrete class,
+     * one slot for entity proxies and one for selection proxies.
+     */
+    private static final ClassValue<ProxyClasses> REGISTRY = new ClassValue<ProxyClasses>() {
+        @Override
+        protected ProxyClasses computeValue(Class<?> concreteClass) {
+            return new ProxyClasses(concreteClass);
+        }
+    };
+
+    private final Map<TypeSafeQueryProxyType, ConcurrentMap<Class<?>, ProxyClass>> proxyClasses =
+            new EnumMap<>(TypeSafeQueryProxyType.class);
+    private final ConcurrentMap<Class<?>, ProxyClasses> jdkProxyClasses = new ConcurrentHashMap<>();
     private final ConcreteDtoClassResolver classResolver;
 
-    @SuppressWarnings("unchecked")
     public TypeSafeQueryProxyFactory(ConcreteDtoClassResolver classResolver) {
         this.classResolver = classResolver;
-        proxyClasses = new HashMap[TypeSafeQueryProxyType.values().length];
-        for (int i = 0, n = TypeSafeQueryProxyType.values().length; i < n; i++) {
-            proxyClasses[i] = new HashMap<>();
+        for (TypeSafeQueryProxyType type: TypeSafeQueryProxyType.values()) {
+            proxyClasses.put(type, new ConcurrentHashMap<>());
         }
     }
 
+    @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<T> fromClass, TypeSafeQueryProxyType type) {
-        try {
-            return getProxyClass(fromClass, type).newInstance();
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new TsqbException(e);
+        return (T) getProxyClass(fromClass, type).newInstance();
+    }
+
+    /**
+     * Makes sure the proxy class for the requested class and type exists,
+     * without creating a proxy instance.
+     *
+     * @return true if the proxy class had to be generated, false if it already existed.
+     */
+    public boolean generateProxyClass(Class<?> requestedClass, TypeSafeQueryProxyType type) {
+        Class<?> concreteClass = classResolver.getConcreteClass(requestedClass);
+        ProxyClasses concreteProxyClasses = getProxyClasses(concreteClass);
+        boolean generated = concreteProxyClasses.generateProxyClass(type);
+        cacheProxyClass(requestedClass, concreteClass, type, concreteProxyClasses.getProxyClass(type));
+        return generated;
+    }
+
+    /**
+     * Looks up the proxy class in the cache of this factory first,
+     * the shared registry is only consulted the first time a class is requested.
+     */
+    private ProxyClass getProxyClass(Class<?> requestedClass, TypeSafeQueryProxyType type) {
+        ProxyClass proxyClass = proxyClasses.get(type).get(requestedClass);
+        if (proxyClass == null) {
+            Class<?> concreteClass = classResolver.getConcreteClass(requestedClass);
+            proxyClass = getProxyClasses(concreteClass).getProxyClass(type);
+            cacheProxyClass(requestedClass, concreteClass, type, proxyClass);
         }
+        return proxyClass;
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> Class<T> getProxyClass(Class<T> requestedClass, TypeSafeQueryProxyType type) {
-        synchronized ( proxyClasses) {
-            Class<?> proxyClass = proxyClasses[type.ordinal()].get(requestedClass);
-            if (proxyClass == null) {
-                ProxyFactory f = new ProxyFactory();
-                Class<?> concreteClass = classResolver.getConcreteClass(requestedClass);
-                f.setSuperclass(concreteClass); // what if the super class is final?? guess it will give an exception..
-                if (type.isEntity() || type.isComposite()) {
-                    f.setInterfaces(new Class[] { TypeSafeQueryProxy.class });
-                } else {
-                    f.setInterfaces(new Class[] { TypeSafeQuerySelectionProxy.class });
-                }
-                f.setFilter(METHOD_FILTER);
-                proxyClass = f.createClass();
-                proxyClasses[type.ordinal()].put(requestedClass, proxyClass);
-                if (requestedClass != concreteClass) {
-                    proxyClasses[type.ordinal()].put(concreteClass, proxyClass);
+    private void cacheProxyClass(Class<?> requestedClass, Class<?> concreteClass,
+            TypeSafeQueryProxyType type, ProxyClass proxyClass) {
+        ConcurrentMap<Class<?>, ProxyClass> typeProxyClasses = proxyClasses.get(type);
+        typeProxyClasses.putIfAbsent(requestedClass, proxyClass);
+        if (requestedClass != concreteClass) {
+            typeProxyClasses.putIfAbsent(concreteClass, proxyClass);
+        }
+    }
+
+    private ProxyClasses getProxyClasses(Class<?> concreteClass) {
+        if (concreteClass.getClassLoader() == null) {
+            // registering proxies on jdk classes (HashMap, ArrayList, ...) would
+            // keep the class loader of the generated proxy class alive forever.
+            return jdkProxyClasses.computeIfAbsent(concreteClass, ProxyClasses::new);
+        }
+        return REGISTRY.get(concreteClass);
+    }
+
+    /**
+     * The proxy classes generated for a concrete class.
+     * Classes are generated on first use, at most once per slot.
+     */
+    private static final class ProxyClasses {
+        private static final int ENTITY_SLOT = 0;
+        private static final int SELECTION_SLOT = 1;
+
+        private final Class<?> concreteClass;
+        private final AtomicReferenceArray<ProxyClass> slots = new AtomicReferenceArray<>(2);
+
+        private ProxyClasses(Class<?> concreteClass) {
+            this.concreteClass = concreteClass;
+        }
+
+        private static boolean isEntitySlot(TypeSafeQueryProxyType type) {
+            return type.isEntity() || type.isComposite();
+        }
+
+        private static int getSlot(TypeSafeQueryProxyType type) {
+            return isEntitySlot(type) ? ENTITY_SLOT: SELECTION_SLOT;
+        }
+
+        /**
+         * @return true if this call generated the proxy class, false if it already existed
+         *         or another thread generated it meanwhile.
+         */
+        private boolean generateProxyClass(TypeSafeQueryProxyType type) {
+            int slot = getSlot(type);
+            if (slots.get(slot) != null) {
+                return false;
+            }
+            synchronized (this) {
+                if (slots.get(slot) != null) {
+                    return false;
                 }
+                slots.set(slot, createProxyClass(concreteClass, isEntitySlot(type)));
+                return true;
+            }
+        }
+
+        private ProxyClass getProxyClass(TypeSafeQueryProxyType type) {
+            int slot = getSlot(type);
+            ProxyClass proxyClass = slots.get(slot);
+            if (proxyClass == null) {
+                generateProxyClass(type);
+                proxyClass = slots.get(slot);
+            }
+            return proxyClass;
+        }
+    }
+
+    private static ProxyClass createProxyClass(Class<?> concreteClass, boolean entity) {
+        ProxyGenerationEvent event = FlightRecorderEvents.AVAILABLE ? ProxyGenerationEvent.start(): null;
+        Class<?> pregenerated = PregeneratedProxies.findProxyClass(concreteClass, entity);
+        if (pregenerated != null) {
+            if (event != null) {
+                event.record(concreteClass, entity, true);
+            }
+            return new ProxyClass(pregenerated);
+        }
+        ProxyFactory f = new ProxyFactory();
+        f.setSuperclass(concreteClass); // what if the super class is final?? guess it will give an exception..
+        if (entity) {
+            f.setInterfaces(new Class[] { TypeSafeQueryProxy.class });
+        } else {
+            f.setInterfaces(new Class[] { TypeSafeQuerySelectionProxy.class });
+        }
+        f.setFilter(METHOD_FILTER);
+        Class<?> proxyClass = f.createClass();
+        if (event != null) {
+            event.record(concreteClass, entity, false);
+        }
+        return new ProxyClass(proxyClass);
+    }
+
+    /**
+     * A generated proxy class together with the handle to its no-args constructor.
+     */
+    private static final class ProxyClass {
+        private final MethodHandle constructor;
+
+        private ProxyClass(Class<?> proxyClass) {
+            try {
+                Constructor<?> noArgs = proxyClass.getDeclaredConstructor();
+                noArgs.setAccessible(true);
+                this.constructor = MethodHandles.lookup().unreflectConstructor(noArgs).asType(NEW_INSTANCE_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new TsqbException(e);
+            }
+        }
+
+        private Object newInstance() {
+            try {
+                return constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new TsqbException(e);
             }
-            return (Class<T>) proxyClass;
         }
     }
 
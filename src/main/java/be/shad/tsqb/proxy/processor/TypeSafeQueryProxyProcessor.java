@@ -0,0 +1,291 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.proxy.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import be.shad.tsqb.proxy.GenerateTypeSafeQueryProxy;
+import be.shad.tsqb.proxy.PregeneratedProxies;
+import be.shad.tsqb.proxy.TypeSafeQueryProxy;
+import be.shad.tsqb.proxy.TypeSafeQuerySelectionProxy;
+
+/**
+ * Generates the proxy classes for classes annotated with {@link GenerateTypeSafeQueryProxy}
+ * at build time, so the proxy factory doesn't need to generate them with javassist.
+ * <p>
+ * The generated proxies override the same methods as the javassist proxies
+ * and pass each invocation straight to the method handler of the proxy,
+ * using a {@link java.lang.reflect.Method} which is resolved once per class.
+ * Methods with at most one parameter pass their argument without arguments array,
+ * see {@link be.shad.tsqb.proxy.SingleArgumentMethodHandler}.
+ * <p>
+ * The processor is not registered as a service, add it to the annotation processors
+ * of the compiler (-processor be.shad.tsqb.proxy.processor.TypeSafeQueryProxyProcessor).
+ */
+@SupportedAnnotationTypes("be.shad.tsqb.proxy.GenerateTypeSafeQueryProxy")
+public class TypeSafeQueryProxyProcessor extends AbstractProcessor {
+    private static final String METHOD_HANDLER = "javassist.util.proxy.MethodHandler";
+    private static final String PROXY_OBJECT = "javassist.util.proxy.ProxyObject";
+    private static final String SUPPORT = PregeneratedProxies.class.getName();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element: roundEnv.getElementsAnnotatedWith(GenerateTypeSafeQueryProxy.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "Only classes can be proxied.");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (!validate(type)) {
+                continue;
+            }
+            GenerateTypeSafeQueryProxy config = type.getAnnotation(GenerateTypeSafeQueryProxy.class);
+            if (config.entity()) {
+                generate(type, true);
+            }
+            if (config.selection()) {
+                generate(type, false);
+            }
+        }
+        return true;
+    }
+
+    private boolean validate(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.FINAL)) {
+            error(type, "A final class can't be proxied.");
+            return false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "An inner class must be static to be proxied.");
+            return false;
+        }
+        for (ExecutableElement constructor: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(type, "A proxied class requires a non-private no-args constructor.");
+        return false;
+    }
+
+    private void generate(TypeElement type, boolean entity) {
+        String packageName = getPackage(type).getQualifiedName().toString();
+        String proxyName = PregeneratedProxies.getProxyClassName(
+                processingEnv.getElementUtils().getBinaryName(type).toString(), entity);
+        String proxySimpleName = proxyName.substring(proxyName.lastIndexOf('.') + 1);
+        String superName = erasure(type.asType());
+        Class<?> proxyInterface = entity ? TypeSafeQueryProxy.class: TypeSafeQuerySelectionProxy.class;
+
+        List<ExecutableElement> methods = getProxiedMethods(type, proxyInterface, packageName);
+        StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * Proxy generated by ").append(getClass().getName()).append(", do not edit.\n */\n");
+        src.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+        src.append("public class ").append(proxySimpleName).append(" extends ").append(superName)
+           .append(" implements ").append(proxyInterface.getName()).append(", ").append(PROXY_OBJECT).append(" {\n");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            src.append("    private static final java.lang.reflect.Method tsqb$m").append(i)
+               .append(" = ").append(SUPPORT).append(".getMethod(")
+               .append(erasure(method.getEnclosingElement().asType())).append(".class, \"")
+               .append(method.getSimpleName()).append("\"");
+            for (VariableElement parameter: method.getParameters()) {
+                src.append(", ").append(erasure(parameter.asType())).append(".class");
+            }
+            src.append(");\n");
+        }
+        src.append("\n    private ").append(METHOD_HANDLER).append(" tsqb$handler;\n\n");
+        src.append("    @Override\n    public void setHandler(").append(METHOD_HANDLER).append(" handler) {\n")
+           .append("        this.tsqb$handler = handler;\n    }\n\n");
+        src.append("    @Override\n    public ").append(METHOD_HANDLER).append(" getHandler() {\n")
+           .append("        return tsqb$handler;\n    }\n");
+        for (int i = 0; i < methods.size(); i++) {
+            appendMethod(src, methods.get(i), i);
+        }
+        src.append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(proxyName, type).openWriter()) {
+            writer.write(src.toString());
+        } catch (IOException e) {
+            error(type, "Failed to write proxy " + proxyName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collects the methods the javassist proxy would override: all overridable methods
+     * except finalize, hashCode and equals, and the data method of the proxy interface.
+     * Of the java.lang.Object methods, only toString is proxied.
+     */
+    private List<ExecutableElement> getProxiedMethods(TypeElement type, Class<?> proxyInterface, String packageName) {
+        Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        TypeElement interfaceElement = processingEnv.getElementUtils().getTypeElement(proxyInterface.getName());
+        List<ExecutableElement> candidates = new ArrayList<>();
+        candidates.addAll(ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type)));
+        candidates.addAll(ElementFilter.methodsIn(interfaceElement.getEnclosedElements()));
+        for (ExecutableElement method: candidates) {
+            if (!isProxied(method, packageName)) {
+                continue;
+            }
+            String key = getSignatureKey(method);
+            ExecutableElement existing = methods.get(key);
+            if (existing == null || isAbstract(existing) && !isAbstract(method)) {
+                methods.put(key, method);
+            }
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    private boolean isProxied(ExecutableElement method, String packageName) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)
+                || modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        String name = method.getSimpleName().toString();
+        switch (name) {
+            case "finalize":
+            case "hashCode":
+            case "equals":
+                return false;
+            case "setHandler":
+            case "getHandler":
+                // implemented by the proxy itself.
+                return false;
+            default:
+                break;
+        }
+        TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+        if (declaringType.getQualifiedName().contentEquals(Object.class.getName())) {
+            return "toString".equals(name);
+        }
+        if (!modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.PROTECTED)) {
+            // package private methods of a super class in another package can't be overridden.
+            return getPackage(declaringType).getQualifiedName().contentEquals(packageName);
+        }
+        return true;
+    }
+
+    private void appendMethod(StringBuilder src, ExecutableElement method, int index) {
+        Set<Modifier> modifiers = method.getModifiers();
+        TypeMirror returnType = method.getReturnType();
+        String name = method.getSimpleName().toString();
+        src.append("\n    @Override\n    ");
+        if (modifiers.contains(Modifier.PUBLIC) || method.getEnclosingElement().getKind() == ElementKind.INTERFACE) {
+            src.append("public ");
+        } else if (modifiers.contains(Modifier.PROTECTED)) {
+            src.append("protected ");
+        }
+        src.append(erasure(returnType)).append(" ").append(name).append("(");
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            String separator = i == 0 ? "": ", ";
+            src.append(separator).append(erasure(method.getParameters().get(i).asType())).append(" p").append(i);
+            args.append(separator).append("p").append(i);
+        }
+        src.append(")");
+        for (int i = 0; i < method.getThrownTypes().size(); i++) {
+            src.append(i == 0 ? " throws ": ", ").append(erasure(method.getThrownTypes().get(i)));
+        }
+        src.append(" {\n");
+        boolean isVoid = returnType.getKind() == TypeKind.VOID;
+        if (!isAbstract(method)) {
+            // behave like a javassist proxy without handler:
+            src.append("        if (tsqb$handler == null) {\n            ");
+            if (isVoid) {
+                src.append("super.").append(name).append("(").append(args).append(");\n            return;\n");
+            } else {
+                src.append("return super.").append(name).append("(").append(args).append(");\n");
+            }
+            src.append("        }\n");
+        }
+        String invocation;
+        if (method.getParameters().size() <= 1) {
+            // getters and setters are passed on without arguments array:
+            invocation = SUPPORT + ".invokeSingle(tsqb$handler, this, tsqb$m" + index
+                    + ", " + (args.length() == 0 ? "null": args) + ")";
+        } else {
+            invocation = SUPPORT + ".invoke(tsqb$handler, this, tsqb$m" + index
+                    + ", new java.lang.Object[] {" + args + "})";
+        }
+        if (isVoid) {
+            src.append("        ").append(invocation).append(";\n");
+        } else if (returnType.getKind().isPrimitive()) {
+            String boxed = processingEnv.getTypeUtils().boxedClass((PrimitiveType) returnType)
+                    .getQualifiedName().toString();
+            src.append("        return ((").append(boxed).append(") ").append(invocation).append(").")
+               .append(returnType.getKind().name().toLowerCase()).append("Value();\n");
+        } else {
+            src.append("        return (").append(erasure(returnType)).append(") ").append(invocation).append(";\n");
+        }
+        src.append("    }\n");
+    }
+
+    private String getSignatureKey(ExecutableElement method) {
+        StringBuilder key = new StringBuilder(method.getSimpleName());
+        for (VariableElement parameter: method.getParameters()) {
+            key.append(',').append(erasure(parameter.asType()));
+        }
+        return key.toString();
+    }
+
+    private boolean isAbstract(ExecutableElement method) {
+        return method.getModifiers().contains(Modifier.ABSTRACT);
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private PackageElement getPackage(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+}
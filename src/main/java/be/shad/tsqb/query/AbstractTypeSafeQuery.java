@@ -89,6 +89,7 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
     private final TypeSafeQueryGroupBys groupBys;
     private final TypeSafeQueryOrderBys orderBys;
     private JoinType activeMultiJoinType;
+    private Long fingerprint;
 
     /**
      * Copy constructor
@@ -204,6 +205,7 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
             case Right: joinType = JoinType.Right; break;
         }
         data.setJoinType(joinType);
+        queryChanged();
         if (name != null) {
             named().name(data.getProxy(), name);
         }
@@ -290,6 +292,7 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
                     data.getPropertyPath(), data.getPropertyType());
         }
         data.setJoinType(params.getJoinType());
+        queryChanged();
         if (params.getName() != null) {
             named().name(data.getProxy(), params.getName());
         }
@@ -543,31 +546,32 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
 
     @Override
     public TypeSafeValue<Boolean> groupBy(Boolean val) {
-        return groupBys.add(toValue(val));
+        return groupBy(toValue(val));
     }
 
     @Override
     public TypeSafeValue<Date> groupBy(Date val) {
-        return groupBys.add(toValue(val));
+        return groupBy(toValue(val));
     }
 
     @Override
     public <E extends Enum<E>> TypeSafeValue<E> groupBy(E val) {
-        return groupBys.add(toValue(val));
+        return groupBy(toValue(val));
     }
 
     @Override
     public <N extends Number> TypeSafeValue<N> groupBy(N val) {
-        return groupBys.add(toValue(val));
+        return groupBy(toValue(val));
     }
 
     @Override
     public TypeSafeValue<String> groupBy(String val) {
-        return groupBys.add(toValue(val));
+        return groupBy(toValue(val));
     }
 
     @Override
     public <T> TypeSafeValue<T> groupBy(TypeSafeValue<T> val) {
+        queryChanged();
         return groupBys.add(val);
     }
 
@@ -639,6 +643,30 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
         }
     }
 
+    /**
+     * The fingerprint is cached until the query changes, see {@link #queryChanged()}.
+     */
+    @Override
+    public long fingerprint() {
+        if (fingerprint == null) {
+            fingerprint = createFingerprint();
+        }
+        return fingerprint;
+    }
+
+    protected long createFingerprint() {
+        return QueryFingerprint.of(toHqlQueryValue(new HqlQueryBuilderParamsImpl()));
+    }
+
+    @Override
+    public void queryChanged() {
+        fingerprint = null;
+        TypeSafeQueryInternal parentQuery = getParentQuery();
+        if (parentQuery != null && parentQuery != this) {
+            parentQuery.queryChanged();
+        }
+    }
+
     @Override
     public String toFormattedString() {
         HqlQueryBuilderParamsImpl params = new HqlQueryBuilderParamsImpl();
@@ -714,23 +742,70 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
         return new TypeSafeValueFunctions(this);
     }
 
+    /**
+     * Whether this is a root query which lists rows without grouping or aggregating them,
+     * the rows of an and-ed in restriction are then the union of the rows of each chunk of its values.
+     */
+    private boolean isListingRowsOnly() {
+        return this instanceof TypeSafeRootQuery && groupBys.isEmpty()
+                && havingRestrictions.isEmpty() && !projections.isAggregating();
+    }
+
     /**
      * Compose a query object with the selections, from, wheres, group bys and order bys.
      */
     protected HqlQuery toHqlQuery(HqlQueryBuilderParams params) {
+        return toHqlQuery(params, null);
+    }
+
+    /**
+     * Compose a query object with the selections, from, wheres, group bys and order bys.
+     * When a count query is given, it is filled with the count of the rows of the query
+     * in the same pass, the where part is rendered once and shared by both.
+     */
+    protected HqlQuery toHqlQuery(HqlQueryBuilderParams params, HqlQuery countQuery) {
         HqlQuery query = new HqlQuery();
 
         // append select part:
         projections.appendTo(query, params);
 
-        // append from part + their joins:
-        dataTree.appendTo(query, params);
+        // append from part + their joins, a count leaves out the joins which can't change it,
+        // the where part is rendered first in that case to know which joins it uses:
+        HqlQueryValue hqlFrom;
+        HqlQueryValue hqlWhereRestrictions;
+        if (params.isSelectingCount()) {
+            hqlWhereRestrictions = whereRestrictions.toHqlQueryValue(params);
+            hqlFrom = dataTree.toHqlQueryValue(params, hqlWhereRestrictions.getHql());
+        } else {
+            hqlFrom = dataTree.toHqlQueryValue(params);
+            boolean restrictingWholeQuery = params.setRestrictingWholeQuery(
+                    countQuery == null && isListingRowsOnly());
+            hqlWhereRestrictions = whereRestrictions.toHqlQueryValue(params);
+            params.setRestrictingWholeQuery(restrictingWholeQuery);
+        }
+        query.appendFrom(hqlFrom.getHql());
+        query.addParams(hqlFrom.getParams());
 
         // append where part:
-        HqlQueryValue hqlWhereRestrictions = whereRestrictions.toHqlQueryValue(params);
         query.appendWhere(hqlWhereRestrictions.getHql());
         query.addParams(hqlWhereRestrictions.getParams());
 
+        if (countQuery != null) {
+            boolean selectingCount = params.isSelectingCount();
+            params.setSelectingCount(true);
+            if (!havingRestrictions.isEmpty()) {
+                throw new IllegalArgumentException("Cannot create a selecting count query when having is used.");
+            }
+            projections.appendTo(countQuery, params);
+            HqlQueryValue hqlCountFrom = dataTree.toHqlQueryValue(params, hqlWhereRestrictions.getHql());
+            countQuery.appendFrom(hqlCountFrom.getHql());
+            countQuery.addParams(hqlCountFrom.getParams());
+            countQuery.appendWhere(hqlWhereRestrictions.getHql());
+            countQuery.addParams(hqlWhereRestrictions.getParams());
+            groupBys.appendTo(countQuery, params);
+            params.setSelectingCount(selectingCount);
+        }
+
         // append group part:
         groupBys.appendTo(query, params);
 
@@ -741,8 +816,10 @@ public abstract class AbstractTypeSafeQuery implements TypeSafeQuery, TypeSafeQu
         query.appendHaving(hqlHavingRestrictions.getHql());
         query.addParams(hqlHavingRestrictions.getParams());
 
-        // append order part:
-        orderBys.appendTo(query, params);
+        // append order part, the order doesn't change a count:
+        if (!params.isSelectingCount()) {
+            orderBys.appendTo(query, params);
+        }
 
         return query;
     }
@@ -0,0 +1,166 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.query;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import be.shad.tsqb.CollectionNamedParameter;
+import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.values.HqlQueryValue;
+
+/**
+ * Computes a stable 64 bit hash of the shape of a query, to group metrics and
+ * cache entries by query shape rather than by the literal hql.
+ * <p>
+ * The hash is computed in one pass over the hql and the params:
+ * <ul>
+ * <li>entity aliases (hobj1, hobj2, ...) are renumbered in order of appearance,
+ *     so the alias counter of the query doesn't influence the fingerprint.</li>
+ * <li>named parameters only contribute their position, not their name.</li>
+ * <li>parameter values only contribute their type: the value class, or the element
+ *     class for collections, regardless of the amount of elements.</li>
+ * </ul>
+ * The hql contains the from/join tree, the projections, the restrictions
+ * and the group/order bys, the result class is added for dto selections.
+ */
+public final class QueryFingerprint {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String ALIAS_PREFIX = "hobj";
+    private static final String PARAM_PREFIX = ":np";
+
+    private long hash = FNV_OFFSET_BASIS;
+    private int[] canonicalAliases = new int[16];
+    private int aliasCount;
+
+    private QueryFingerprint() {
+    }
+
+    public static long of(HqlQueryValue hqlQuery) {
+        return of(hqlQuery, null);
+    }
+
+    /**
+     * @param resultClass the class the results are selected into, may be null.
+     */
+    public static long of(HqlQueryValue hqlQuery, Class<?> resultClass) {
+        QueryFingerprint fingerprint = new QueryFingerprint();
+        fingerprint.addHql(hqlQuery.getHql());
+        for (Object param: hqlQuery.getParams()) {
+            fingerprint.addParam(param);
+        }
+        if (resultClass != null) {
+            fingerprint.add(resultClass.getName());
+        }
+        return fingerprint.hash;
+    }
+
+    private void addHql(String hql) {
+        int length = hql.length();
+        int i = 0;
+        while (i < length) {
+            int end = numberedTokenEnd(hql, i, ALIAS_PREFIX);
+            if (end > 0) {
+                add('$');
+                add(canonicalAlias(parseNumber(hql, i + ALIAS_PREFIX.length(), end)));
+                i = end;
+                continue;
+            }
+            end = numberedTokenEnd(hql, i, PARAM_PREFIX);
+            if (end > 0) {
+                add(':');
+                add('?');
+                i = end;
+                continue;
+            }
+            add(hql.charAt(i++));
+        }
+    }
+
+    /**
+     * Checks whether the token at the index is the prefix followed by a number,
+     * and that it isn't part of a longer identifier.
+     *
+     * @return the end index of the token, or -1 if there is no such token at the index.
+     */
+    private static int numberedTokenEnd(String hql, int index, String prefix) {
+        if (!hql.startsWith(prefix, index)
+                || index > 0 && Character.isJavaIdentifierPart(hql.charAt(index - 1))) {
+            return -1;
+        }
+        int numberStart = index + prefix.length();
+        int end = numberStart;
+        while (end < hql.length() && Character.isDigit(hql.charAt(end))) {
+            end++;
+        }
+        if (end == numberStart || end < hql.length() && Character.isJavaIdentifierPart(hql.charAt(end))) {
+            return -1;
+        }
+        return end;
+    }
+
+    private static int parseNumber(String hql, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            number = number * 10 + hql.charAt(i) - '0';
+        }
+        return number;
+    }
+
+    /**
+     * @return the order in which the alias appeared first, starting at 1.
+     */
+    private int canonicalAlias(int alias) {
+        if (alias >= canonicalAliases.length) {
+            canonicalAliases = Arrays.copyOf(canonicalAliases, Math.max(alias + 1, canonicalAliases.length * 2));
+        }
+        if (canonicalAliases[alias] == 0) {
+            canonicalAliases[alias] = ++aliasCount;
+        }
+        return canonicalAliases[alias];
+    }
+
+    private void addParam(Object param) {
+        add('|');
+        Object value = param;
+        if (param instanceof NamedParameter) {
+            value = ((NamedParameter) param).getValue();
+            if (param instanceof CollectionNamedParameter && ((CollectionNamedParameter) param).hasBatchSize()) {
+                add('b');
+            }
+        }
+        if (value instanceof Collection<?>) {
+            add('*');
+            Iterator<?> it = ((Collection<?>) value).iterator();
+            value = it.hasNext() ? it.next(): null;
+        }
+        add(value == null ? "null": value.getClass().getName());
+    }
+
+    private void add(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            add(value.charAt(i));
+        }
+    }
+
+    private void add(int value) {
+        hash ^= value;
+        hash *= FNV_PRIME;
+    }
+
+}
@@ -70,6 +70,16 @@ public interface TypeSafeBaseQuery extends WhereRestrictions, HqlQueryValueBuild
      */
     TypeSafeNameds named();
 
+    /**
+     * Computes a hash of the shape of the query: the from/join tree, the projections,
+     * the restrictions, the group/order bys and the types of the parameters.
+     * Aliases, parameter names and parameter values don't influence the fingerprint.
+     * <p>
+     * This transforms the query to hql, see {@link QueryFingerprint}.
+     * The result is cached until the query or one of its subqueries changes.
+     */
+    long fingerprint();
+
     /**
      * @return a custom value, the hql will be injected into the query where the value is used.
      */
@@ -1,5 +1,7 @@
 package be.shad.tsqb.query;
 
+import java.util.Set;
+
 public interface TypeSafeNameds {
 
     /**
@@ -9,6 +11,11 @@ public interface TypeSafeNameds {
      */
     <NAMED> NAMED name(NAMED object, String name) throws IllegalArgumentException;
 
+    /**
+     * @return the names of all named objects.
+     */
+    Set<String> getNames();
+
     /**
      * Same as proxy and value, but using Object.class, no class check support.
      * The named object must still not be null.
@@ -1,8 +1,10 @@
 package be.shad.tsqb.query;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import be.shad.tsqb.query.copy.CopyContext;
 import be.shad.tsqb.query.copy.Copyable;
@@ -41,6 +43,11 @@ public class TypeSafeNamedsImpl implements TypeSafeNameds, Copyable {
         return object;
     }
 
+    @Override
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(nameds.keySet());
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> T get(String name) throws IllegalArgumentException {
@@ -72,6 +72,12 @@ public interface TypeSafeQueryInternal extends TypeSafeQuery, Copyable {
      */
     void invocationWasMade(TypeSafeQueryProxyData data);
 
+    /**
+     * Clears the cached fingerprint of this query and of the queries it is part of,
+     * called when a part of the query which is rendered to hql changes.
+     */
+    void queryChanged();
+
     /**
      * Generates a new entity alias.
      */
@@ -33,6 +33,8 @@ import be.shad.tsqb.data.TypeSafeQuerySelectionProxyPropertyData;
 import be.shad.tsqb.helper.SelectionBuilderSpec;
 import be.shad.tsqb.helper.TypeSafeQueryHelper;
 import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.jfr.FlightRecorderEvents;
+import be.shad.tsqb.jfr.HqlRenderEvent;
 import be.shad.tsqb.proxy.TypeSafeQueryProxy;
 import be.shad.tsqb.proxy.TypeSafeQuerySelectionProxy;
 import be.shad.tsqb.query.copy.CopyContext;
@@ -237,6 +239,7 @@ public class TypeSafeRootQueryImpl extends AbstractTypeSafeQuery implements Type
             }
         }
         current.getTypeSafeProxyData().setCustomAlias(customAlias);
+        queryChanged();
     }
 
     @Override
@@ -263,6 +266,7 @@ public class TypeSafeRootQueryImpl extends AbstractTypeSafeQuery implements Type
     @Override
     public void setDefaultRestrictionPredicate(RestrictionPredicate restrictionPredicate) {
         this.restrictionPredicate = restrictionPredicate;
+        queryChanged();
     }
 
     @Override
@@ -507,7 +511,21 @@ public class TypeSafeRootQueryImpl extends AbstractTypeSafeQuery implements Type
 
     @Override
     public HqlQuery toHqlQuery(HqlQueryBuilderParams params) {
-        return super.toHqlQuery(params);
+        return toHqlQuery(params, null);
+    }
+
+    /**
+     * Renders the query and, when a count query is given, fills it with the count of the rows
+     * of the query in the same pass, instead of building the query again to count.
+     */
+    @Override
+    public HqlQuery toHqlQuery(HqlQueryBuilderParams params, HqlQuery countQuery) {
+        HqlRenderEvent event = FlightRecorderEvents.AVAILABLE ? HqlRenderEvent.start(): null;
+        HqlQuery hqlQuery = super.toHqlQuery(params, countQuery);
+        if (event != null) {
+            event.record(hqlQuery, getProjections().getResultClass());
+        }
+        return hqlQuery;
     }
 
     @Override
@@ -515,6 +533,15 @@ public class TypeSafeRootQueryImpl extends AbstractTypeSafeQuery implements Type
         return toHqlQuery(params);
     }
 
+    /**
+     * Includes the result class when selecting into a dto.
+     */
+    @Override
+    protected long createFingerprint() {
+        return QueryFingerprint.of(toHqlQueryValue(new HqlQueryBuilderParamsImpl()),
+                getProjections().getResultClass());
+    }
+
     @Override
     public TypeSafeNameds named() {
         return namedObjects;
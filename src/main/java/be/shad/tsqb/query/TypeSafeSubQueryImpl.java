@@ -102,7 +102,11 @@ public class TypeSafeSubQueryImpl<T> extends AbstractTypeSafeQuery implements Ty
                     + "If you are using exists/not exists, then use it by calling the selectExists or selectNotExists on "
                     + "this subquery instead of another custom way, or select a value.");
         }
+        // the subquery of a count query selects its own values:
+        boolean selectingCount = params.isSelectingCount();
+        params.setSelectingCount(false);
         HqlQuery query = toHqlQuery(params);
+        params.setSelectingCount(selectingCount);
         return new HqlQueryValueImpl("(" +query.getHql() + ")", query.getParams());
     }
 
@@ -87,6 +87,7 @@ public class TypeSafeUpdateQueryImpl extends TypeSafeRootQueryImpl implements Ty
         updateValue.property = property;
         updateValue.updateValue = value;
         updateValues.add(updateValue);
+        queryChanged();
     }
 
     @Override
@@ -153,6 +153,23 @@ public interface OnGoingRestriction<VAL, CONTINUED extends ContinuedOnGoingRestr
      */
     <T extends VAL> CONTINUED in(Collection<T> values, RestrictionPredicate predicate, Integer batchSize);
 
+    /**
+     * Generates: left in (select value from temp table)
+     * <p>
+     * The values are loaded into the temp table by the dao when the query is executed,
+     * so the whole filter runs as one statement regardless of the amount of values.
+     * Meant for very large collections of integral numbers or strings,
+     * requires {@link be.shad.tsqb.temptable.TempTableValue} to be mapped.
+     */
+    <T extends VAL> CONTINUED inTempTable(Collection<T> values);
+
+    /**
+     * Generates: left not in (select value from temp table)
+     *
+     * @see #inTempTable(Collection)
+     */
+    <T extends VAL> CONTINUED notInTempTable(Collection<T> values);
+
     /**
      * Generates: left in ( valuesRepresentative )
      * <p>
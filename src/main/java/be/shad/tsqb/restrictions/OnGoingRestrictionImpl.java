@@ -32,6 +32,7 @@ import be.shad.tsqb.restrictions.named.NamedParameterBinderImpl;
 import be.shad.tsqb.restrictions.named.SingleNamedParameterBinder;
 import be.shad.tsqb.restrictions.predicate.RestrictionPredicate;
 import be.shad.tsqb.values.CollectionTypeSafeValue;
+import be.shad.tsqb.values.TempTableCollectionTypeSafeValue;
 import be.shad.tsqb.values.DirectTypeSafeValue;
 import be.shad.tsqb.values.TypeSafeValue;
 
@@ -275,6 +276,23 @@ public abstract class OnGoingRestrictionImpl<VAL, CONTINUED extends ContinuedOnG
         return in(createCollectionTypeSafeValue((Collection<VAL>) values, batchSize));
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends VAL> CONTINUED inTempTable(Collection<T> values) {
+        return in(createTempTableCollectionTypeSafeValue((Collection<VAL>) values));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends VAL> CONTINUED notInTempTable(Collection<T> values) {
+        return notIn(createTempTableCollectionTypeSafeValue((Collection<VAL>) values));
+    }
+
+    private TypeSafeValue<VAL> createTempTableCollectionTypeSafeValue(Collection<VAL> values) {
+        return new TempTableCollectionTypeSafeValue<>(group.getQuery(), getSupportedValueClass(),
+                startValue.getValueClass(), values);
+    }
+
     private TypeSafeValue<VAL> createCollectionTypeSafeValue(Collection<VAL> values, Integer batchSize) {
         return group.getQuery().getHelper().createCollectionTypeSafeValue(group.getQuery(), getSupportedValueClass(), values, batchSize);
     }
@@ -16,6 +16,7 @@
 package be.shad.tsqb.restrictions;
 
 import static be.shad.tsqb.restrictions.RestrictionOperator.EXISTS;
+import static be.shad.tsqb.restrictions.RestrictionOperator.IN;
 import static be.shad.tsqb.restrictions.RestrictionOperator.NOT_EXISTS;
 import be.shad.tsqb.query.TypeSafeQueryInternal;
 import be.shad.tsqb.query.TypeSafeSubQuery;
@@ -25,6 +26,7 @@ import be.shad.tsqb.restrictions.predicate.RestrictionGuard;
 import be.shad.tsqb.restrictions.predicate.RestrictionPredicate;
 import be.shad.tsqb.selection.TypeSafeQueryProjections;
 import be.shad.tsqb.values.CastTypeSafeValue;
+import be.shad.tsqb.values.CollectionTypeSafeValue;
 import be.shad.tsqb.values.DirectTypeSafeValue;
 import be.shad.tsqb.values.HqlQueryBuilderParams;
 import be.shad.tsqb.values.HqlQueryValue;
@@ -84,6 +86,7 @@ public class RestrictionImpl<VAL> implements Restriction, RestrictionGuard {
 
     public void setOperator(RestrictionOperator operator) {
         this.operator = operator;
+        query.queryChanged();
     }
 
     @Override
@@ -98,6 +101,7 @@ public class RestrictionImpl<VAL> implements Restriction, RestrictionGuard {
     public void setLeft(TypeSafeValue<VAL> left) {
         this.left = left;
         validateInScope(left);
+        query.queryChanged();
     }
 
     public TypeSafeValue<VAL> getRight() {
@@ -107,6 +111,7 @@ public class RestrictionImpl<VAL> implements Restriction, RestrictionGuard {
     public void setRight(TypeSafeValue<VAL> right) {
         this.right = right;
         validateInScope(right);
+        query.queryChanged();
     }
 
     private void validateInScope(TypeSafeValue<VAL> value) {
@@ -115,6 +120,8 @@ public class RestrictionImpl<VAL> implements Restriction, RestrictionGuard {
 
     @Override
     public HqlQueryValue toHqlQueryValue(HqlQueryBuilderParams params) {
+        // only the values of an in restricting the whole query can be split, not values nested in the sides:
+        boolean restrictingWholeQuery = params.setRestrictingWholeQuery(false);
         HqlQueryValueImpl value = new HqlQueryValueImpl();
         if (left != null) {
             HqlQueryValue hqlQueryValue;
@@ -138,11 +145,15 @@ public class RestrictionImpl<VAL> implements Restriction, RestrictionGuard {
                 hqlQueryValue = right.toHqlQueryValue(params);
                 params.setRequiresLiterals(previous);
             } else {
+                params.setRestrictingWholeQuery(restrictingWholeQuery && operator == IN
+                        && left != null && right instanceof CollectionTypeSafeValue);
                 hqlQueryValue = right.toHqlQueryValue(params);
+                params.setRestrictingWholeQuery(false);
             }
             value.appendHql(hqlQueryValue.getHql());
             value.addParams(hqlQueryValue.getParams());
         }
+        params.setRestrictingWholeQuery(restrictingWholeQuery);
         return value;
     }
 
@@ -171,12 +171,16 @@ public class RestrictionsGroupImpl extends RestrictionChainableImpl implements R
      */
     @Override
     public HqlQueryValueImpl toHqlQueryValue(HqlQueryBuilderParams params) {
+        // an or'd restriction doesn't restrict the whole query:
+        boolean restrictingWholeQuery = params.setRestrictingWholeQuery(
+                params.isRestrictingWholeQuery() && !hasOr());
         HqlQueryValueImpl value = new HqlQueryValueImpl();
         for(RestrictionNode item: restrictions) {
             if (isRestrictionApplicable(item.getRestriction())) {
                 addRestrictionToHqlQueryValue(item, value, params);
             }
         }
+        params.setRestrictingWholeQuery(restrictingWholeQuery);
         if (value.isEmpty() || !isAddBrackets()) {
             return value;
         }
@@ -194,7 +198,7 @@ public class RestrictionsGroupImpl extends RestrictionChainableImpl implements R
             if (!value.isEmpty()) {
                 if (item.getType() == RestrictionNodeType.And) {
                     value.appendHql(" and ");
-                } else if (item.getType() == RestrictionNodeType.Or) {
+                } else if (item.getType() == Or) {
                     value.appendHql(" or ");
                 } // else null, root
             }
@@ -203,6 +207,15 @@ public class RestrictionsGroupImpl extends RestrictionChainableImpl implements R
         }
     }
 
+    private boolean hasOr() {
+        for(RestrictionNode item: restrictions) {
+            if (item.getType() == RestrictionNodeType.Or) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean isRestrictionApplicable(Restriction restriction) {
         if (restriction instanceof RestrictionGuard) {
             return ((RestrictionGuard) restriction).isRestrictionApplicable();
@@ -299,6 +312,7 @@ public class RestrictionsGroupImpl extends RestrictionChainableImpl implements R
                     + "Did you nest query.where inside a query.where?");
         }
         restrictions.add(new RestrictionNode(addRestriction, restrictions.isEmpty() ? null: type));
+        query.queryChanged();
         return this;
     }
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.selection;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Flat open addressing index of the results of a selection group by their identity values.
+ * <p>
+ * Single Long or Integer identities are stored as primitive keys so they aren't retained boxed,
+ * other identities are stored as their value, or as a copy of the values when composite.
+ * The Long and Integer keys are kept apart to match the equality of the boxed values.
+ */
+public class SelectionIdentityIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Object LONG_KEY = new Object();
+    private static final Object INTEGER_KEY = new Object();
+
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private long[] longKeys = new long[INITIAL_CAPACITY];
+    private SelectionTreeResult[] results = new SelectionTreeResult[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds the result for the identity unless a result was already added for the same identity.
+     * The identity values are copied when they are added, so the array can be reused.
+     *
+     * @return the result which was added before for the identity, or null if the result was added.
+     */
+    public SelectionTreeResult putIfAbsent(Object[] identity, SelectionTreeResult result) {
+        Object key;
+        long longKey = 0;
+        int hash;
+        if (identity.length == 1) {
+            Object value = identity[0];
+            if (value instanceof Long) {
+                key = LONG_KEY;
+                longKey = (Long) value;
+                hash = mix(Long.hashCode(longKey));
+            } else if (value instanceof Integer) {
+                key = INTEGER_KEY;
+                longKey = (Integer) value;
+                hash = mix(Long.hashCode(longKey));
+            } else {
+                key = value;
+                hash = mix(Objects.hashCode(value));
+            }
+        } else {
+            key = identity;
+            hash = mix(Arrays.hashCode(identity));
+        }
+
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        for(Object existing = keys[i]; existing != null; existing = keys[i = (i + 1) & mask]) {
+            if (matches(existing, longKeys[i], key, longKey)) {
+                return results[i];
+            }
+        }
+        keys[i] = key == identity ? identity.clone(): (key == null ? NullKey.INSTANCE: key);
+        longKeys[i] = longKey;
+        results[i] = result;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return null;
+    }
+
+    private static boolean matches(Object existing, long existingLongKey, Object key, long longKey) {
+        if (key == LONG_KEY || key == INTEGER_KEY) {
+            return existing == key && existingLongKey == longKey;
+        } else if (key == null) {
+            return existing == NullKey.INSTANCE;
+        } else if (key instanceof Object[]) {
+            return existing instanceof Object[] && Arrays.equals((Object[]) existing, (Object[]) key);
+        }
+        return key.equals(existing);
+    }
+
+    private void resize() {
+        Object[] oldKeys = keys;
+        long[] oldLongKeys = longKeys;
+        SelectionTreeResult[] oldResults = results;
+        int capacity = oldKeys.length * 2;
+        keys = new Object[capacity];
+        longKeys = new long[capacity];
+        results = new SelectionTreeResult[capacity];
+        int mask = capacity - 1;
+        for(int j = 0; j < oldKeys.length; j++) {
+            Object key = oldKeys[j];
+            if (key == null) {
+                continue;
+            }
+            int i = mix(hash(key, oldLongKeys[j])) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            longKeys[i] = oldLongKeys[j];
+            results[i] = oldResults[j];
+        }
+    }
+
+    private static int hash(Object key, long longKey) {
+        if (key == LONG_KEY || key == INTEGER_KEY) {
+            return Long.hashCode(longKey);
+        } else if (key == NullKey.INSTANCE) {
+            return 0;
+        } else if (key instanceof Object[]) {
+            return Arrays.hashCode((Object[]) key);
+        }
+        return key.hashCode();
+    }
+
+    /**
+     * Spreads the hash bits, the index only uses the low bits.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Removes all identities. The arrays are reused, unless they grew beyond the initial capacity.
+     */
+    public void clear() {
+        if (keys.length > INITIAL_CAPACITY) {
+            keys = new Object[INITIAL_CAPACITY];
+            longKeys = new long[INITIAL_CAPACITY];
+            results = new SelectionTreeResult[INITIAL_CAPACITY];
+        } else if (size > 0) {
+            Arrays.fill(keys, null);
+            Arrays.fill(results, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * @return the amount of identities in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Marks a single null identity, which can't be stored as a null key.
+     */
+    private enum NullKey {
+        INSTANCE
+    }
+}
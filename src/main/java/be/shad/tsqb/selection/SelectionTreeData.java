@@ -26,11 +26,12 @@ import lombok.Setter;
  * Data container used during result transformation by the {@link TypeSafeQueryResultTransformer}.
  */
 public class SelectionTreeData {
+    private SelectionIdentityIndex identityIndex;
     // using IdentityHashMap so root so nested collection results are not considered duplicate if they have a different parent
-    public final SelectionIdentityTree identityTree = new SelectionIdentityTree();
-    public final Map<Object, Map<Object, Object>> collectionValues = new IdentityHashMap<>();
+    private Map<Object, Map<Object, Object>> collectionValues;
     private @Getter @Setter SelectionTreeResult result;
     private BuildFn<Object, Object> groupResultTf;
+    private Object[] identityValues;
 
     /**
      * When the value already existed, and the current value
@@ -39,6 +40,50 @@ public class SelectionTreeData {
      */
     private @Getter @Setter boolean duplicate;
 
+    /**
+     * @return an array to collect the identity values of a tuple in, reused for every tuple.
+     */
+    public Object[] getIdentityValues(int length) {
+        if (identityValues == null) {
+            identityValues = new Object[length];
+        }
+        return identityValues;
+    }
+
+    /**
+     * @return the results per identity, created when the group has identity fields.
+     */
+    public SelectionIdentityIndex getIdentityIndex() {
+        if (identityIndex == null) {
+            identityIndex = new SelectionIdentityIndex();
+        }
+        return identityIndex;
+    }
+
+    /**
+     * @return the values added to a collection per owner, created when the group is added to a collection.
+     */
+    public Map<Object, Map<Object, Object>> getCollectionValues() {
+        if (collectionValues == null) {
+            collectionValues = new IdentityHashMap<>();
+        }
+        return collectionValues;
+    }
+
+    /**
+     * Forgets the state of the previous result, to reuse the data for the tuples of the next result.
+     */
+    public void reset() {
+        result = null;
+        duplicate = false;
+        if (identityIndex != null) {
+            identityIndex.clear();
+        }
+        if (collectionValues != null) {
+            collectionValues.clear();
+        }
+    }
+
     public void setGroupResultTf(BuildFn<Object, Object> groupResultTf) {
         this.groupResultTf = groupResultTf;
     }
@@ -22,9 +22,11 @@ import static java.util.stream.Collectors.toMap;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.hibernate.transform.ResultTransformer;
 
@@ -32,6 +34,7 @@ import be.shad.tsqb.data.TypeSafeQueryProxyData;
 import be.shad.tsqb.data.TypeSafeQuerySelectionProxyPropertyData;
 import be.shad.tsqb.hql.HqlQuery;
 import be.shad.tsqb.hql.HqlQueryBuilder;
+import be.shad.tsqb.ordering.OrderBy;
 import be.shad.tsqb.proxy.TypeSafeQueryProxy;
 import be.shad.tsqb.query.TypeSafeQueryInternal;
 import be.shad.tsqb.query.copy.CopyContext;
@@ -42,14 +45,18 @@ import be.shad.tsqb.result.ResultMergeProjection;
 import be.shad.tsqb.result.ResultProjection;
 import be.shad.tsqb.result.ResultSubProjection;
 import be.shad.tsqb.selection.group.TypeSafeQuerySelectionGroupInternal;
+import be.shad.tsqb.values.CountTypeSafeValue;
 import be.shad.tsqb.values.CustomTypeSafeValue;
 import be.shad.tsqb.values.DirectTypeSafeValue;
 import be.shad.tsqb.values.HqlQueryBuilderParams;
+import be.shad.tsqb.values.HqlQueryBuilderParamsImpl;
 import be.shad.tsqb.values.HqlQueryValue;
 import be.shad.tsqb.values.IsMaybeDistinct;
 import be.shad.tsqb.values.ReferenceTypeSafeValue;
 import be.shad.tsqb.values.RestrictionTypeSafeValue;
 import be.shad.tsqb.values.TypeSafeValue;
+import be.shad.tsqb.values.TypeSafeValueContainer;
+import be.shad.tsqb.values.WrappedTypeSafeValue;
 
 /**
  * Container for all projections of a query.
@@ -84,6 +91,7 @@ public class TypeSafeQueryProjections implements HqlQueryBuilder {
     public void setResultClass(Class<?> resultClass) {
         this.resultClass = resultClass;
         this.selectingIntoDto = resultClass != null;
+        query.queryChanged();
     }
 
     public Class<?> getResultClass() {
@@ -92,12 +100,42 @@ public class TypeSafeQueryProjections implements HqlQueryBuilder {
 
     public void setIncludeAliases(boolean includeAliases) {
         this.includeAliases = includeAliases;
+        query.queryChanged();
     }
 
     public Deque<TypeSafeValueProjection> getProjections() {
         return projections;
     }
 
+    /**
+     * Whether a projection aggregates the rows: a count, sum, avg, min or max, or a custom value
+     * which may contain one of them.
+     */
+    public boolean isAggregating() {
+        for(TypeSafeValueProjection projection: projections) {
+            if (isAggregating(projection.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAggregating(TypeSafeValue<?> value) {
+        if (value instanceof CountTypeSafeValue || value instanceof CustomTypeSafeValue) {
+            return true;
+        }
+        if (value instanceof WrappedTypeSafeValue && ((WrappedTypeSafeValue<?>) value).isAggregate()) {
+            return true;
+        }
+        if (value instanceof TypeSafeValueContainer) {
+            boolean[] aggregating = new boolean[1];
+            ((TypeSafeValueContainer) value).validateContainedInScope(
+                    nested -> aggregating[0] |= isAggregating(nested));
+            return aggregating[0];
+        }
+        return false;
+    }
+
     /**
      * Adds the projection to the projections list.
      * If it is a distinct value, then it is added at the front
@@ -128,6 +166,7 @@ public class TypeSafeQueryProjections implements HqlQueryBuilder {
         } else {
             projections.add(projection);
         }
+        query.queryChanged();
     }
 
     private boolean isDistinct(TypeSafeValueProjection projection) {
@@ -311,7 +350,49 @@ public class TypeSafeQueryProjections implements HqlQueryBuilder {
             );
         }
 
-        return new TypeSafeQueryResultTransformer(query.getHelper().getConcreteDtoClassResolver(), groups);
+        return new TypeSafeQueryResultTransformer(query.getHelper().getConcreteDtoClassResolver(),
+                groups, isOrderedByResultIdentity());
+    }
+
+    /**
+     * Checks whether the first order bys are the identity fields of the result group,
+     * in which case the tuples of one result are adjacent in the query results.
+     * The values are compared by their hql because an order by on an entity property
+     * uses a different value instance than the projection of the same property.
+     */
+    private boolean isOrderedByResultIdentity() {
+        HqlQueryBuilderParams params = new HqlQueryBuilderParamsImpl();
+        Set<String> identityHqls = new HashSet<>();
+        int identityCount = -1;
+        for(TypeSafeValueProjection projection: projections) {
+            TypeSafeQuerySelectionGroupInternal<?, ?> group = projection.getSelectionData().getGroup();
+            if (group.isResultGroup()) {
+                Set<String> identityPaths = group.getResultIdentifierPropertyPaths();
+                identityCount = identityPaths.size();
+                if (identityPaths.contains(projection.getPropertyPath())) {
+                    identityHqls.add(getHqlQueryValue(projection, params).getHql());
+                }
+            }
+        }
+        if (identityHqls.isEmpty() || identityHqls.size() != identityCount) {
+            return false;
+        }
+
+        Set<String> orderedHqls = new HashSet<>();
+        params.setCreatingOrderingBy(true);
+        for(OrderBy orderBy: query.getOrderBys().getOrderBys()) {
+            if (orderedHqls.size() == identityCount) {
+                break;
+            }
+            HqlQuery orderByQuery = new HqlQuery();
+            orderBy.appendTo(orderByQuery, params);
+            String hql = orderByQuery.getOrderBy().substring(" order by ".length());
+            if (hql.endsWith(" desc")) {
+                hql = hql.substring(0, hql.length() - " desc".length());
+            }
+            orderedHqls.add(hql);
+        }
+        return orderedHqls.equals(identityHqls);
     }
 
     private void fillDepthMap(TypeSafeQuerySelectionGroupInternal<?, ?> group, int depth,
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -29,6 +30,8 @@ import be.shad.tsqb.exceptions.TsqbException;
 import be.shad.tsqb.helper.BuildFn;
 import be.shad.tsqb.helper.SelectionBuilderSpec;
 import be.shad.tsqb.helper.ConcreteDtoClassResolver;
+import be.shad.tsqb.jfr.FlightRecorderEvents;
+import be.shad.tsqb.jfr.ResultTransformEvent;
 import be.shad.tsqb.result.ResultGroupProjection;
 import be.shad.tsqb.selection.group.SelectionTreeGroup;
 import be.shad.tsqb.selection.group.TypeSafeQuerySelectionGroupInternal;
@@ -44,6 +47,7 @@ public class TypeSafeQueryResultTransformer extends BasicTransformerAdapter {
     private final ConcreteDtoClassResolver concreteDtoClassResolver;
     private final SelectionTreeGroup[] treeGroups;
     private final int resultArraySize;
+    private final boolean orderedByResultIdentity;
     private int resultIndex = -1;
 
     /**
@@ -67,7 +71,19 @@ public class TypeSafeQueryResultTransformer extends BasicTransformerAdapter {
     public TypeSafeQueryResultTransformer(
             ConcreteDtoClassResolver concreteDtoClassResolver,
             List<ResultGroupProjection> groups) {
+        this(concreteDtoClassResolver, groups, false);
+    }
+
+    /**
+     * @param orderedByResultIdentity whether the query orders by the identity fields
+     *        of the result group first, so all tuples of one result are adjacent.
+     */
+    public TypeSafeQueryResultTransformer(
+            ConcreteDtoClassResolver concreteDtoClassResolver,
+            List<ResultGroupProjection> groups,
+            boolean orderedByResultIdentity) {
         this.concreteDtoClassResolver = concreteDtoClassResolver;
+        this.orderedByResultIdentity = orderedByResultIdentity;
         try {
             // Sort all groups by depth/alias to create groups
             groups.sort(SELECTION_GROUPS_COMPARATOR);
@@ -123,6 +139,7 @@ public class TypeSafeQueryResultTransformer extends BasicTransformerAdapter {
 
         // prepare result array and set up dataArray to contain the current
         // value objects and identity trees
+        ResultTransformEvent event = FlightRecorderEvents.AVAILABLE ? ResultTransformEvent.start(): null;
         List<Object> result = new ArrayList<>(list.size());
         SelectionTreeData[] data = initDataArray();
 
@@ -144,9 +161,107 @@ public class TypeSafeQueryResultTransformer extends BasicTransformerAdapter {
         } catch (IllegalArgumentException | IllegalAccessException e) {
             throw new TsqbException(e);
         }
+        if (event != null) {
+            event.record(treeGroups[resultIndex].getGroup().getSelectionBuilderSpec().getSelectionResultClass(),
+                    list.size(), result.size());
+        }
         return result;
     }
 
+    /**
+     * Starts a transformation which accepts the tuples one by one instead of as a full list.
+     * <p>
+     * When every tuple is a separate result, or when the query is ordered by the identity
+     * fields of the result, a result is passed on as soon as its last tuple was seen and
+     * the transformation state is reset, so the memory use doesn't grow with the amount of rows.
+     * Otherwise results are only complete after the last tuple and are kept until {@link IncrementalTransformation#finish(Consumer)}.
+     */
+    public IncrementalTransformation startIncremental() {
+        return new IncrementalTransformation();
+    }
+
+    /**
+     * Incremental variant of {@link TypeSafeQueryResultTransformer#transformList(List)}.
+     * Not thread safe, a transformation is meant for the rows of one query execution.
+     */
+    public class IncrementalTransformation {
+        private final SelectionTreeGroup resultTree = treeGroups[resultIndex];
+        private final boolean evicting = orderedByResultIdentity || !resultTree.hasIdentityFields();
+        private final List<Object> results = evicting ? null: new ArrayList<>();
+        private final SelectionTreeData[] data = initDataArray();
+        private Object[] previousTuple;
+        private Object pending;
+        private boolean hasPending;
+
+        /**
+         * @return whether results are passed on before all tuples are seen.
+         */
+        public boolean isEvicting() {
+            return evicting;
+        }
+
+        /**
+         * Transforms the next tuple, results which are complete are passed to the consumer.
+         */
+        public void accept(Object row, Consumer<Object> completedResults) {
+            Object[] tuple = row instanceof Object[] ? (Object[]) row: new Object[] { row };
+            if (evicting && previousTuple != null && !resultTree.hasSameIdentity(previousTuple, tuple)) {
+                // the previous result won't receive any more tuples, pass it on and forget about it
+                flush(completedResults);
+                resetData();
+            }
+            previousTuple = tuple;
+
+            try {
+                for(SelectionTreeGroup treeGroup: treeGroups) {
+                    treeGroup.createFromTuple(data, tuple);
+                }
+            } catch (IllegalArgumentException | IllegalAccessException e) {
+                throw new TsqbException(e);
+            }
+
+            if (!data[resultIndex].isDuplicate()) {
+                Object value = data[resultIndex].getBuiltValue();
+                if (evicting) {
+                    flush(completedResults);
+                    pending = value;
+                    hasPending = true;
+                } else {
+                    results.add(value);
+                }
+            }
+        }
+
+        /**
+         * Passes on the remaining results, to be called after the last tuple.
+         */
+        public void finish(Consumer<Object> completedResults) {
+            if (evicting) {
+                flush(completedResults);
+            } else {
+                results.forEach(completedResults);
+                results.clear();
+            }
+            resetData();
+            previousTuple = null;
+        }
+
+        private void resetData() {
+            for(SelectionTreeData groupData: data) {
+                groupData.reset();
+            }
+        }
+
+        private void flush(Consumer<Object> completedResults) {
+            if (hasPending) {
+                Object value = pending;
+                pending = null;
+                hasPending = false;
+                completedResults.accept(value);
+            }
+        }
+    }
+
     private SelectionTreeData[] initDataArray() {
         SelectionTreeData[] data = new SelectionTreeData[resultArraySize];
         for(int i=0; i < resultArraySize; i++) {
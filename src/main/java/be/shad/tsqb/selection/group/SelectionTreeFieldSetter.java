@@ -32,6 +32,13 @@ public interface SelectionTreeFieldSetter {
 
 	boolean isIdentityField();
 
+	/**
+	 * @return the index of the value in the tuple, or -1 if the value isn't read from the tuple directly.
+	 */
+	default int getTupleValueIndex() {
+		return -1;
+	}
+
 	default SelectionTreeFieldSetterType getType() {
 		if (isIdentityField()) {
 			return SelectionTreeFieldSetterType.IDENTITY;
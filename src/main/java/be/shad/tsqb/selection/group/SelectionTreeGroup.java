@@ -20,6 +20,7 @@ import static be.shad.tsqb.selection.group.SelectionTreeFieldSetter.SelectionTre
 import static be.shad.tsqb.selection.group.SelectionTreeFieldSetter.SelectionTreeFieldSetterType.SINGLE;
 import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
@@ -36,7 +37,6 @@ import be.shad.tsqb.data.TypeSafeQuerySelectionProxyPropertyData;
 import be.shad.tsqb.result.ResultGroupProjection;
 import be.shad.tsqb.result.ResultMergeProjection;
 import be.shad.tsqb.result.ResultSubProjection;
-import be.shad.tsqb.selection.SelectionIdentityTree;
 import be.shad.tsqb.selection.SelectionTree;
 import be.shad.tsqb.selection.SelectionTreeData;
 import be.shad.tsqb.selection.SelectionTreeResult;
@@ -54,6 +54,10 @@ public class SelectionTreeGroup extends SelectionTree {
     private final SelectionTreeFieldSetter[] identityFields;
     private final SelectionTreeFieldSetter[] singleFields;
     private final SelectionTreeFieldSetter[] collectionFIelds;
+    /**
+     * Writes the single fields which don't need a setter, null if there are none.
+     */
+    private final TupleFieldWriter singleFieldWriter;
 
     /**
      * Collects and prepares the fields to set data onto
@@ -89,17 +93,25 @@ public class SelectionTreeGroup extends SelectionTree {
                     + identityPaths);
         }
 
-        Map<SelectionTreeFieldSetterType, List<SelectionTreeFieldSetter>> byType = setters.stream()
-                .collect(groupingBy(SelectionTreeFieldSetter::getType));
-        identityFields = byType.getOrDefault(IDENTITY, emptyList()).toArray(new SelectionTreeFieldSetter[0]);
-        singleFields = byType.getOrDefault(SINGLE, emptyList()).toArray(new SelectionTreeFieldSetter[0]);
-        collectionFIelds = byType.getOrDefault(COLLECTION, emptyList()).toArray(new SelectionTreeFieldSetter[0]);
-
         // set the entire array accessible at once (for this object):
         AccessibleObject.setAccessible(setters.stream()
                 .map(SelectionTreeFieldSetter::getField)
                 .filter(Objects::nonNull)
                 .toArray(Field[]::new), true);
+
+        Map<SelectionTreeFieldSetterType, List<SelectionTreeFieldSetter>> byType = setters.stream()
+                .collect(groupingBy(SelectionTreeFieldSetter::getType));
+        identityFields = byType.getOrDefault(IDENTITY, emptyList()).toArray(new SelectionTreeFieldSetter[0]);
+        collectionFIelds = byType.getOrDefault(COLLECTION, emptyList()).toArray(new SelectionTreeFieldSetter[0]);
+
+        List<SelectionTreeFieldSetter> single = byType.getOrDefault(SINGLE, emptyList());
+        singleFieldWriter = TupleFieldWriter.create(single.stream()
+                .filter(TupleFieldWriter::isWritable)
+                .map(SelectionTreeField.class::cast)
+                .collect(toList()));
+        singleFields = single.stream()
+                .filter(field -> singleFieldWriter == null || !TupleFieldWriter.isWritable(field))
+                .toArray(SelectionTreeFieldSetter[]::new);
     }
 
     /**
@@ -143,6 +155,9 @@ public class SelectionTreeGroup extends SelectionTree {
             return;
         }
 
+        if (singleFieldWriter != null) {
+            hasValue |= singleFieldWriter.write(data.getCurrentValue(), tuple);
+        }
         for (SelectionTreeFieldSetter field: singleFields) {
             hasValue |= field.setField(data, dataArray, tuple) != null;
         }
@@ -161,36 +176,51 @@ public class SelectionTreeGroup extends SelectionTree {
     private void setIdentityFields(SelectionTreeData data, SelectionTreeData[] dataArray, Object[] tuple)
             throws IllegalAccessException {
         if (identityFields.length > 0) {
-            boolean identityExists = true;
             boolean nullIdentity = true;
-            SelectionIdentityTree identity = data.identityTree;
-            for(SelectionTreeFieldSetter field: identityFields) {
-                Object value = field.setField(data, dataArray, tuple);
+            Object[] identity = data.getIdentityValues(identityFields.length);
+            for(int i = 0; i < identityFields.length; i++) {
+                Object value = identityFields[i].setField(data, dataArray, tuple);
                 if (nullIdentity && value != null) {
                     nullIdentity = false;
                 }
-                SelectionIdentityTree nextIdentity = identity.getSubtree(value);
-                if (nextIdentity == null) {
-                    // identity doesn't exist yet, this object is 'new'.
-                    nextIdentity = identity.createSubtree(value);
-                    identityExists = false;
-                }
-                identity = nextIdentity;
+                identity[i] = value;
             }
 
             if (nullIdentity) {
                 data.setResult(NULL_RESULT);
-            } else if (identityExists) {
-                // check identity, if equal, return existing object
-                data.setResult(identity.getIdentityResult());
+                return;
+            }
+            // remember value for future identity checks, or use the existing object if the identity is known
+            SelectionTreeResult existing = data.getIdentityIndex().putIfAbsent(identity, data.getResult());
+            if (existing != null) {
+                data.setResult(existing);
                 data.setDuplicate(true);
-            } else {
-                // remember value for future identity check
-                identity.setIdentityResult(data.getResult());
             }
         }
     }
 
+    public boolean hasIdentityFields() {
+        return identityFields.length > 0;
+    }
+
+    /**
+     * Checks whether both tuples contain the same identity values for this group,
+     * which means they contribute to the same result value.
+     * Without identity fields every tuple is a separate result, so this is always false.
+     */
+    public boolean hasSameIdentity(Object[] tuple, Object[] otherTuple) {
+        if (identityFields.length == 0) {
+            return false;
+        }
+        for(SelectionTreeFieldSetter field: identityFields) {
+            int index = field.getTupleValueIndex();
+            if (index < 0 || !Objects.equals(tuple[index], otherTuple[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public TypeSafeQuerySelectionGroupInternal getGroup() {
         return group.getGroup();
     }
@@ -54,7 +54,7 @@ class SubSelectionTreeField<T> implements SelectionTreeFieldSetter {
 		}
 
 		if (collection != null) {
-			Map<Object, Object> objects = subData.collectionValues
+			Map<Object, Object> objects = subData.getCollectionValues()
 					.computeIfAbsent(data.getCurrentValue(), v -> new IdentityHashMap<>());
 			if (objects.put(subValue, subValue) != null) {
 				return null;
@@ -0,0 +1,131 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.selection.group;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import be.shad.tsqb.exceptions.TsqbException;
+
+/**
+ * Writes the plain fields of a selection group from a tuple with one composed method handle,
+ * so a row is written in a single call instead of a reflective set per field.
+ * <p>
+ * Only fields which are set with the tuple value as is can be written this way,
+ * see {@link #isWritable(SelectionTreeFieldSetter)}. The other fields are still set
+ * by their {@link SelectionTreeFieldSetter}.
+ * <p>
+ * Set the system property {@value #REFLECTIVE_SETTERS_PROPERTY} to true to set all fields reflectively.
+ */
+final class TupleFieldWriter {
+    static final String REFLECTIVE_SETTERS_PROPERTY = "tsqb.selection.reflectiveSetters";
+    private static final MethodHandle TUPLE_VALUE = MethodHandles.arrayElementGetter(Object[].class);
+
+    /**
+     * Writes all fields: (Object target, Object[] tuple)void.
+     */
+    private final MethodHandle writer;
+    private final int[] tupleValueIndexes;
+
+    private TupleFieldWriter(MethodHandle writer, int[] tupleValueIndexes) {
+        this.writer = writer;
+        this.tupleValueIndexes = tupleValueIndexes;
+    }
+
+    /**
+     * A field is writable when the tuple value is set on a field without transforming it.
+     * Primitive fields are excluded because the handle would not widen the value like reflection does.
+     */
+    static boolean isWritable(SelectionTreeFieldSetter setter) {
+        if (!(setter instanceof SelectionTreeField)) {
+            return false;
+        }
+        SelectionTreeField field = (SelectionTreeField) setter;
+        return field.getField() != null
+                && field.getValueTransformer() == null
+                && field.getMapSelectionKey() == null
+                && !field.getField().getType().isPrimitive()
+                && !Modifier.isFinal(field.getField().getModifiers());
+    }
+
+    /**
+     * Composes the writer for the writable fields.
+     *
+     * @return the writer or null when it is disabled or a field can't be accessed by a method handle.
+     */
+    static TupleFieldWriter create(List<SelectionTreeField> fields) {
+        if (fields.isEmpty() || Boolean.getBoolean(REFLECTIVE_SETTERS_PROPERTY)) {
+            return null;
+        }
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle writer = null;
+        int[] tupleValueIndexes = new int[fields.size()];
+        for(int i = 0; i < fields.size(); i++) {
+            SelectionTreeField field = fields.get(i);
+            MethodHandle fieldWriter;
+            try {
+                fieldWriter = createFieldWriter(lookup, field.getField(), field.getTupleValueIndex());
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+            // runs the field writer and then the writer of the previous fields:
+            writer = writer == null ? fieldWriter: MethodHandles.foldArguments(writer, fieldWriter);
+            tupleValueIndexes[i] = field.getTupleValueIndex();
+        }
+        return new TupleFieldWriter(writer, tupleValueIndexes);
+    }
+
+    /**
+     * Creates a handle which sets the value at the index of the tuple on the field:
+     * (Object target, Object[] tuple)void.
+     */
+    private static MethodHandle createFieldWriter(MethodHandles.Lookup lookup, Field field, int tupleValueIndex)
+            throws IllegalAccessException {
+        MethodHandle setter = lookup.unreflectSetter(field)
+                .asType(methodType(void.class, Object.class, Object.class));
+        MethodHandle tupleValue = MethodHandles.insertArguments(TUPLE_VALUE, 1, tupleValueIndex);
+        return MethodHandles.filterArguments(setter, 1, tupleValue);
+    }
+
+    /**
+     * Writes the fields of the target with the values of the tuple.
+     *
+     * @return whether any of the written values was not null.
+     * @throws IllegalArgumentException when a value is not assignable to its field, like a reflective set.
+     */
+    boolean write(Object target, Object[] tuple) {
+        try {
+            writer.invokeExact(target, tuple);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new TsqbException(e);
+        }
+        for(int index: tupleValueIndexes) {
+            if (tuple[index] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.temptable;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A row of the temp table which holds the values of large collection parameters,
+ * see {@link be.shad.tsqb.restrictions.OnGoingRestriction#inTempTable(java.util.Collection)}.
+ * <p>
+ * Add this class to the mapped classes to use temp table restrictions. The rows are inserted
+ * before and deleted after the query in the same transaction, so the table can be created
+ * as a (global) temporary table with rows private to the session or transaction.
+ */
+@Entity(name = TempTableValue.ENTITY_NAME)
+@Table(name = TempTableValue.TABLE_NAME)
+@Getter @Setter
+public class TempTableValue implements Serializable {
+    private static final long serialVersionUID = 2843520587011564133L;
+
+    public static final String ENTITY_NAME = "TsqbTempTableValue";
+    public static final String TABLE_NAME = "TSQB_TEMP_VALUE";
+    public static final String SET_ID_COLUMN = "SET_ID";
+    public static final String INDEX_COLUMN = "IDX";
+    public static final String LONG_VALUE_COLUMN = "LONG_VALUE";
+    public static final String STRING_VALUE_COLUMN = "STRING_VALUE";
+
+    @EmbeddedId
+    private TempTableValueId id;
+
+    @Column(name = LONG_VALUE_COLUMN)
+    private Long longValue;
+
+    @Column(name = STRING_VALUE_COLUMN)
+    private String stringValue;
+
+    /**
+     * @return whether values of the class are stored in the long value column.
+     */
+    public static boolean isLongValue(Class<?> valueClass) {
+        return valueClass == Long.class || valueClass == Integer.class
+                || valueClass == Short.class || valueClass == Byte.class;
+    }
+
+    /**
+     * @return the property which holds values of the value class.
+     */
+    public static String getValueProperty(Class<?> valueClass) {
+        if (isLongValue(valueClass)) {
+            return "longValue";
+        } else if (valueClass == String.class) {
+            return "stringValue";
+        }
+        throw new IllegalArgumentException(String.format("Values of type [%s] can't be stored "
+                + "in the temp table, only integral numbers and strings are supported.", valueClass));
+    }
+}
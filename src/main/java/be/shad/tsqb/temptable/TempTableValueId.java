@@ -0,0 +1,38 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.temptable;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import lombok.Data;
+
+/**
+ * Identifies a value within the set of values loaded for one parameter.
+ */
+@Data
+@Embeddable
+public class TempTableValueId implements Serializable {
+    private static final long serialVersionUID = -3166020846470930364L;
+
+    @Column(name = TempTableValue.SET_ID_COLUMN, length = 36)
+    private String setId;
+
+    @Column(name = TempTableValue.INDEX_COLUMN)
+    private int index;
+}
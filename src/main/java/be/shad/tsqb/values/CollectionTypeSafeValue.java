@@ -97,9 +97,9 @@ public class CollectionTypeSafeValue<T> extends TypeSafeValueImpl<T> implements
             sb.append(")");
             return new HqlQueryValueImpl(sb.toString());
         } else {
-            String name = params.createNamedParameter();
+            String name = params.createNamedParameter(this);
             return new HqlQueryValueImpl("(:" + name + ")",
-                    new CollectionNamedParameter(name, values, batchSize));
+                    new CollectionNamedParameter(name, values, batchSize, params.isRestrictingWholeQuery()));
         }
     }
 
@@ -121,6 +121,7 @@ public class CollectionTypeSafeValue<T> extends TypeSafeValueImpl<T> implements
     public void setNamedValue(Object namedValue) {
         if (namedValue == null) {
             this.values = null;
+            query.queryChanged();
             return;
         }
 
@@ -144,6 +145,7 @@ public class CollectionTypeSafeValue<T> extends TypeSafeValueImpl<T> implements
             namedValues.add(getValueClass().cast(value));
         }
         this.values = namedValues;
+        query.queryChanged();
     }
 
     @Override
@@ -66,7 +66,7 @@ public class DirectTypeSafeValue<T> extends TypeSafeValueImpl<T> implements Name
         if (params.isRequiresLiterals()) {
             return new HqlQueryValueImpl(query.getHelper().toLiteral(getValue()));
         } else {
-            String name = params.createNamedParameter();
+            String name = params.createNamedParameter(this);
             return new HqlQueryValueImpl(":" + name, new NamedParameter(name, getValue()));
         }
     }
@@ -78,6 +78,7 @@ public class DirectTypeSafeValue<T> extends TypeSafeValueImpl<T> implements Name
                     + "[%s] but was of type [%s].", getValueClass(), value.getClass()));
         }
         this.value = getValueClass().cast(value);
+        query.queryChanged();
     }
 
     @Override
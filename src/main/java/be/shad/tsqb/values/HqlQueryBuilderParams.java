@@ -19,6 +19,12 @@ public interface HqlQueryBuilderParams {
 
     String createNamedParameter();
 
+    /**
+     * Creates the name of the named parameter which binds the value of
+     * a named value enabled value, see {@link #createNamedParameter()}.
+     */
+    String createNamedParameter(NamedValueEnabled value);
+
     /**
      * When set, values need to be transformed to literals.
      */
@@ -35,6 +41,19 @@ public interface HqlQueryBuilderParams {
      */
     boolean isCreatingOrderingBy();
 
+    /**
+     * When set, the restriction which is transformed restricts the whole query:
+     * it is part of the where clause of a select without aggregation and is only and-ed
+     * with the other restrictions. The rows of such an in restriction are the union
+     * of the rows of each chunk of its values.
+     */
+    boolean isRestrictingWholeQuery();
+
+    /**
+     * Returns the previous value.
+     */
+    boolean setRestrictingWholeQuery(boolean restrictingWholeQuery);
+
     boolean isSelectingCount();
 
     void setSelectingCount(boolean selectingCount);
@@ -15,6 +15,11 @@
  */
 package be.shad.tsqb.values;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -28,6 +33,11 @@ public class HqlQueryBuilderParamsImpl implements HqlQueryBuilderParams {
     private boolean creatingOrderingBy;
     private boolean buildingForDisplay;
     private boolean selectingCount;
+    private boolean restrictingWholeQuery;
+    /**
+     * The parameter names per value, only tracked when the query is prepared.
+     */
+    private Map<NamedValueEnabled, List<String>> namedParameterNames;
 
     @Override
     public boolean isRequiresLiterals() {
@@ -40,6 +50,18 @@ public class HqlQueryBuilderParamsImpl implements HqlQueryBuilderParams {
         return previous;
     }
 
+    @Override
+    public boolean isRestrictingWholeQuery() {
+        return restrictingWholeQuery;
+    }
+
+    @Override
+    public boolean setRestrictingWholeQuery(boolean restrictingWholeQuery) {
+        boolean previous = this.restrictingWholeQuery;
+        this.restrictingWholeQuery = restrictingWholeQuery;
+        return previous;
+    }
+
     @Override
     public boolean isSelectingCount() {
         return selectingCount;
@@ -75,4 +97,28 @@ public class HqlQueryBuilderParamsImpl implements HqlQueryBuilderParams {
         return "np" + namedParamCount++;
     }
 
+    @Override
+    public String createNamedParameter(NamedValueEnabled value) {
+        String name = createNamedParameter();
+        if (namedParameterNames != null) {
+            namedParameterNames.computeIfAbsent(value, v -> new ArrayList<>(1)).add(name);
+        }
+        return name;
+    }
+
+    /**
+     * Starts tracking which named parameters are created for which values.
+     * A value may be bound more than once when it is used in multiple places.
+     */
+    public void trackNamedParameterNames() {
+        namedParameterNames = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return the tracked parameter names per value, null if they're not tracked.
+     */
+    public Map<NamedValueEnabled, List<String>> getNamedParameterNames() {
+        return namedParameterNames;
+    }
+
 }
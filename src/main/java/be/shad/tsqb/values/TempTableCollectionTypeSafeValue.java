@@ -0,0 +1,93 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.values;
+
+import java.util.Collection;
+
+import be.shad.tsqb.TempTableNamedParameter;
+import be.shad.tsqb.query.TypeSafeQuery;
+import be.shad.tsqb.query.copy.CopyContext;
+import be.shad.tsqb.query.copy.Copyable;
+import be.shad.tsqb.restrictions.RestrictionOperator;
+import be.shad.tsqb.temptable.TempTableValue;
+
+/**
+ * Collection value which is rendered as a subquery on the temp table instead of a list of parameters.
+ * The values are loaded into the temp table by the dao when the query is executed,
+ * so very large collections are filtered in one statement.
+ */
+public class TempTableCollectionTypeSafeValue<T> extends CollectionTypeSafeValue<T> {
+    private final Class<?> storedValueClass;
+    private final String valueProperty;
+
+    /**
+     * Copy constructor
+     */
+    protected TempTableCollectionTypeSafeValue(CopyContext context, TempTableCollectionTypeSafeValue<T> original) {
+        super(context, original);
+        this.storedValueClass = original.storedValueClass;
+        this.valueProperty = original.valueProperty;
+    }
+
+    /**
+     * @param storedValueClass the type of the value the collection is compared with,
+     *        determines the column of the temp table, for example Long for a restriction
+     *        on a number property with Long values.
+     */
+    public TempTableCollectionTypeSafeValue(TypeSafeQuery query, Class<T> valueClass,
+            Class<?> storedValueClass, Collection<T> values) {
+        super(query, valueClass);
+        this.storedValueClass = storedValueClass;
+        this.valueProperty = TempTableValue.getValueProperty(storedValueClass);
+        setValues(values);
+    }
+
+    /**
+     * Renders the subquery selecting the values of the set which is loaded for the parameter:
+     * (select tsqb_np1.longValue from TsqbTempTableValue tsqb_np1 where tsqb_np1.id.setId = :np1)
+     * <p>
+     * When literals are required, the values are rendered as a list of literals instead.
+     */
+    @Override
+    public HqlQueryValueImpl toHqlQueryValue(HqlQueryBuilderParams params) {
+        Collection<T> values = getValues();
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("Collection is empty when transforming to query");
+        }
+        if (params.isRequiresLiterals()) {
+            return super.toHqlQueryValue(params);
+        }
+        String name = params.createNamedParameter(this);
+        String alias = "tsqb_" + name;
+        return new HqlQueryValueImpl(String.format("(select %s.%s from %s %s where %s.id.setId = :%s)",
+                alias, valueProperty, TempTableValue.ENTITY_NAME, alias, alias, name),
+                new TempTableNamedParameter(name, values, storedValueClass));
+    }
+
+    /**
+     * Always keeps the in operator, the values are selected by a subquery.
+     */
+    @Override
+    public RestrictionOperator getOperator(RestrictionOperator original) {
+        return original;
+    }
+
+    @Override
+    public Copyable copy(CopyContext context) {
+        return new TempTableCollectionTypeSafeValue<>(context, this);
+    }
+
+}
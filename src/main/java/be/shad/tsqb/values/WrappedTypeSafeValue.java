@@ -49,6 +49,25 @@ public class WrappedTypeSafeValue<T> extends TypeSafeValueImpl<T> implements Typ
         this.value = value;
     }
 
+    /**
+     * Whether the function aggregates the rows of a group, like sum or max.
+     */
+    public boolean isAggregate() {
+        if (function == null) {
+            return false;
+        }
+        switch (function) {
+            case "sum":
+            case "avg":
+            case "min":
+            case "max":
+            case "count":
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @Override
     public HqlQueryValue toHqlQueryValue(HqlQueryBuilderParams params) {
         HqlQueryValue hqlValue = this.value.toHqlQueryValue(params);
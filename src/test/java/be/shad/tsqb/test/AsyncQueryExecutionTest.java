@@ -0,0 +1,117 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.hibernate.Session;
+import org.junit.Test;
+
+import be.shad.tsqb.dao.AsyncQueryExecution;
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.dao.result.QueryResult;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+
+/**
+ * The queries are executed on other sessions.
+ */
+public class AsyncQueryExecutionTest extends CommittedTypeSafeQueryTest {
+    private final List<Session> sessions = new ArrayList<>();
+    private TypeSafeQueryDaoImpl asyncDao;
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        asyncDao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        asyncDao.setAsyncQueryExecution(new AsyncQueryExecution(() -> {
+            Session session = getSessionFactory().openSession();
+            synchronized (sessions) {
+                sessions.add(session);
+            }
+            return session;
+        }, pool));
+
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        for(int i = 0; i < 3; i++) {
+            creator.createTestPerson(town, "P" + i);
+        }
+        commitAndBegin();
+    }
+
+    @Test
+    public void testQueryIsExecutedOnItsOwnSession() throws Exception {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        query.orderBy().asc(person.getName());
+
+        CompletableFuture<QueryResult<String>> future = asyncDao.doQueryAsync(query);
+        assertEquals(Arrays.asList("P0", "P1", "P2"), future.get().getResults());
+        assertEquals(1, sessions.size());
+        assertFalse(sessions.get(0).isOpen());
+    }
+
+    /**
+     * The invalid query fails its own future, the other queries still complete.
+     */
+    @Test
+    public void testFailuresArePerQuery() throws Exception {
+        TypeSafeRootQuery countQuery = createQuery();
+        countQuery.from(Person.class);
+        countQuery.selectValue(countQuery.hqlFunction().count());
+
+        TypeSafeRootQuery invalidQuery = createQuery();
+        invalidQuery.from(Person.class);
+        invalidQuery.selectValue(invalidQuery.customValue(String.class, "unknownProperty"));
+
+        TypeSafeRootQuery townQuery = createQuery();
+        Town town = townQuery.from(Town.class);
+        townQuery.selectValue(town.getId());
+
+        List<CompletableFuture<QueryResult<Object>>> futures = asyncDao.doQueriesParallel(
+                Arrays.asList(countQuery, invalidQuery, townQuery));
+        assertEquals(3, futures.size());
+        assertEquals(3L, futures.get(0).get().getFirstResult());
+        try {
+            futures.get(1).get();
+            throw new AssertionError("The invalid query should fail.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(1, futures.get(2).get().getResults().size());
+
+        assertEquals(3, sessions.size());
+        for(Session session: sessions) {
+            assertFalse(session.isOpen());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAsyncExecutionIsRequired() {
+        query.from(Person.class);
+        typeSafeQueryDao.doQueryAsync(query);
+    }
+}
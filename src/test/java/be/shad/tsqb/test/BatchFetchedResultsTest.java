@@ -15,7 +15,9 @@
  */
 package be.shad.tsqb.test;
 
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
@@ -27,9 +29,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.hibernate.dialect.SQLServerDialect;
 import org.junit.Test;
 
 import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.dao.prepared.PreparedTypeSafeQuery;
+import be.shad.tsqb.dao.result.ChunkTiming;
+import be.shad.tsqb.dao.result.QueryResult;
 import be.shad.tsqb.domain.DomainObject;
 import be.shad.tsqb.domain.Town;
 import be.shad.tsqb.domain.people.Person;
@@ -38,6 +48,7 @@ import be.shad.tsqb.dto.HasId;
 import be.shad.tsqb.dto.PersonDto;
 import be.shad.tsqb.dto.TownDto;
 import be.shad.tsqb.query.JoinType;
+import be.shad.tsqb.restrictions.RestrictionsGroupImpl;
 import be.shad.tsqb.selection.collection.IdentityFieldProvider;
 import be.shad.tsqb.values.CustomTypeSafeValue;
 
@@ -72,6 +83,352 @@ public class BatchFetchedResultsTest extends TypeSafeQueryTest {
         assertEquals(n, doQueryResult.size());
     }
 
+    /**
+     * Without a batch size, the values are split when the parameters exceed the limit,
+     * the other parameters are taken into account.
+     */
+    @Test
+    public void testAutomaticChunkingByParameterLimit() {
+        List<Long> ids = createTestPeople(10);
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        dao.setParameterLimit(4);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids).and(person.getName()).startsWith("P");
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(10, result.getResults().size());
+        assertEquals(Arrays.asList(3, 3, 3, 1), result.getChunkTimings().stream()
+                .map(ChunkTiming::getValueCount).collect(toList()));
+        assertEquals(10, result.getChunkTimings().stream().mapToInt(ChunkTiming::getResultCount).sum());
+    }
+
+    /**
+     * SQL Server limits the parameters of a statement, two of them are kept free for the first and
+     * max results and the other parameter of the query is taken into account as well.
+     */
+    @Test
+    public void testAutomaticChunkingBySqlServerParameterLimit() {
+        List<Long> ids = createTestPeople(10);
+        for(long id = -1; ids.size() < 2200; id--) {
+            ids.add(id);
+        }
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new SQLServerDialect());
+        dao.setTargetChunkMillis(60_000);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids).and(person.getName()).startsWith("P");
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(10, result.getResults().size());
+        assertEquals(Arrays.asList(2097, 103), result.getChunkTimings().stream()
+                .map(ChunkTiming::getValueCount).collect(toList()));
+    }
+
+    /**
+     * Oracle doesn't limit the parameters of a statement, but the values of one in list.
+     */
+    @Test
+    public void testAutomaticChunkingByInListLimit() {
+        List<Long> ids = createTestPeople(10);
+        for(long id = -1; ids.size() < 1500; id--) {
+            ids.add(id);
+        }
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new Oracle10gDialect());
+        dao.setTargetChunkMillis(60_000);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids);
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(10, result.getResults().size());
+        assertEquals(Arrays.asList(1000, 500), result.getChunkTimings().stream()
+                .map(ChunkTiming::getValueCount).collect(toList()));
+    }
+
+    /**
+     * The rows of a not in can't be combined from the chunks, the statement is executed as is.
+     * The people are in the last chunk, so the first chunk would exclude none of them.
+     */
+    @Test
+    public void testNotInIsNotChunkedAutomatically() {
+        List<Long> ids = createIdsAfterUnknownIds(createTestPeople(10), 1500);
+        createTestPeople(5);
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new Oracle10gDialect());
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).notIn(ids);
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(5, result.getResults().size());
+        assertEquals(0, result.getChunkTimings().size());
+    }
+
+    /**
+     * An or'd in doesn't restrict the whole query, the rows of the other branch would be listed per chunk.
+     */
+    @Test
+    public void testOrInIsNotChunkedAutomatically() {
+        List<Long> ids = createIdsAfterUnknownIds(createTestPeople(10), 1500);
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new Oracle10gDialect());
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids).or(person.getName()).eq("P1");
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(10, result.getResults().size());
+        assertEquals(0, result.getChunkTimings().size());
+    }
+
+    /**
+     * A count is not split, the count of the first chunk would be 0.
+     */
+    @Test
+    public void testCountIsNotChunkedAutomatically() {
+        List<Long> ids = createIdsAfterUnknownIds(createTestPeople(10), 1500);
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new Oracle10gDialect());
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids);
+
+        assertEquals(10, dao.doCount(query));
+    }
+
+    /**
+     * An aggregation is not split, each chunk would yield its own maximum.
+     */
+    @Test
+    public void testAggregationIsNotChunkedAutomatically() {
+        List<Long> ids = createIdsAfterUnknownIds(createTestPeople(10), 1500);
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new Oracle10gDialect());
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids);
+        query.selectValue(query.hqlFunction().max(person.getId()));
+
+        QueryResult<Long> result = dao.doQuery(query);
+        assertEquals(Collections.singletonList(Collections.max(ids)), result.getResults());
+    }
+
+    /**
+     * An in nested in and-ed groups still restricts the whole query and is split.
+     */
+    @Test
+    public void testNestedAndedInIsChunkedAutomatically() {
+        List<Long> ids = createIdsAfterUnknownIds(createTestPeople(10), 1500);
+        TypeSafeQueryDaoImpl dao = createDaoWithDialect(new Oracle10gDialect());
+        dao.setTargetChunkMillis(60_000);
+
+        Person person = query.from(Person.class);
+        query.where(person.getName()).startsWith("P").and(RestrictionsGroupImpl.group(query).
+                and(person.getId()).in(ids).
+                and(person.getName()).isNotNull());
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(10, result.getResults().size());
+        assertEquals(Arrays.asList(1000, 500), result.getChunkTimings().stream()
+                .map(ChunkTiming::getValueCount).collect(toList()));
+    }
+
+    /**
+     * Creates unknown ids followed by the given ids, up to the given amount.
+     */
+    private List<Long> createIdsAfterUnknownIds(List<Long> ids, int n) {
+        List<Long> allIds = new ArrayList<>(n);
+        for(long id = -1; allIds.size() < n - ids.size(); id--) {
+            allIds.add(id);
+        }
+        allIds.addAll(ids);
+        return allIds;
+    }
+
+    /**
+     * Executes on the test database, but derives the parameter limits from another dialect.
+     */
+    private TypeSafeQueryDaoImpl createDaoWithDialect(Dialect dialect) {
+        return new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper()) {
+            @Override
+            protected Dialect getDialect(Session session) {
+                return dialect;
+            }
+        };
+    }
+
+    /**
+     * Every chunk exceeds a target of 0 millis, so the chunk size is halved after each chunk.
+     */
+    @Test
+    public void testAutomaticChunkSizeAdaptsToLatency() {
+        List<Long> ids = createTestPeople(20);
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        dao.setParameterLimit(8);
+        dao.setTargetChunkMillis(0);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids);
+
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(20, result.getResults().size());
+        assertEquals(Arrays.asList(8, 4, 2, 1, 1, 1, 1, 1, 1), result.getChunkTimings().stream()
+                .map(ChunkTiming::getValueCount).collect(toList()));
+    }
+
+    /**
+     * Each chunk is ordered by id descending by the database, the chunk results are merged
+     * to order them descending over all chunks. The id of the implicitly selected person is ordered.
+     * The range applies to the merged results, each chunk is limited to first + max results.
+     */
+    @Test
+    public void testBatchedResultsAreOrderedAndLimitedGlobally() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 3);
+        query.orderBy().desc(person.getId());
+        query.setFirstResult(2);
+        query.setMaxResults(4);
+
+        QueryResult<Person> result = typeSafeQueryDao.doQuery(query);
+        assertEquals(Arrays.asList("P7", "P6", "P5", "P4"), result.getResults().stream()
+                .map(Person::getName).collect(toList()));
+        assertEquals(Arrays.asList(3, 3, 3, 1), result.getChunkTimings().stream()
+                .map(ChunkTiming::getResultCount).collect(toList()));
+    }
+
+    /**
+     * The prepared query keeps the ordering to merge the chunks of each execution.
+     */
+    @Test
+    public void testPreparedBatchedResultsAreOrderedAndLimitedGlobally() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 3);
+        query.selectValue(person.getName());
+        query.selectValue(person.getId());
+        query.orderBy().desc(person.getId());
+        query.setMaxResults(3);
+
+        PreparedTypeSafeQuery<Object[]> prepared = typeSafeQueryDao.prepare(query);
+        assertEquals(Arrays.asList("P9", "P8", "P7"), typeSafeQueryDao.doQuery(prepared, emptyMap())
+                .getResults().stream().map(row -> row[0]).collect(toList()));
+    }
+
+    /**
+     * The selected age is ordered by its projection, the same age in other chunks is selected once.
+     */
+    @Test
+    public void testBatchedDistinctValuesAreMergedOnce() {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        List<Long> ids = new ArrayList<>();
+        for (int i=0; i < 9; i++) {
+            Person person = creator.createTestPerson(town, "P" + i);
+            person.setAge(i % 3);
+            ids.add(person.getId());
+        }
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 2);
+        query.selectValue(query.hqlFunction().distinct(person.getAge()));
+        query.orderBy().desc(person.getAge());
+        query.setMaxResults(2);
+
+        assertEquals(Arrays.asList(2, 1), typeSafeQueryDao.doQueryResults(query));
+    }
+
+    /**
+     * The database collation decides how strings are ordered, java may order them differently.
+     * Taking the top rows of the merged chunks could then differ from the results of one statement.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedResultsOrderedByStringCantBeLimited() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 3);
+        query.orderBy().desc(person.getName());
+        query.setMaxResults(4);
+
+        typeSafeQueryDao.doQueryResults(query);
+    }
+
+    /**
+     * Nobody has a spouse, whether the database orders the null ages first or last
+     * depends on the database, so the chunks can't be merged in the same order.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testBatchedResultsOrderedByNullValuesCantBeLimited() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        Person spouse = query.join(person.getSpouse(), JoinType.Left);
+        query.where(person.getId()).in(ids, 3);
+        query.selectValue(spouse.getAge());
+        query.orderBy().desc(spouse.getAge());
+        query.setMaxResults(4);
+
+        typeSafeQueryDao.doQueryResults(query);
+    }
+
+    /**
+     * Without a range the chunks with null ordered values are listed in chunk order.
+     */
+    @Test
+    public void testBatchedResultsOrderedByNullValuesWithoutRange() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        Person spouse = query.join(person.getSpouse(), JoinType.Left);
+        query.where(person.getId()).in(ids, 3);
+        query.selectValue(spouse.getAge());
+        query.orderBy().desc(spouse.getAge());
+
+        assertEquals(10, typeSafeQueryDao.doQueryResults(query).size());
+    }
+
+    /**
+     * The age isn't selected, so the chunks can't be merged by it. Taking the top rows
+     * of the first chunks would differ from the results of one statement.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedResultsOrderedByUnselectedValueCantBeLimited() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 3);
+        query.selectValue(person.getName());
+        query.orderBy().desc(person.getAge());
+        query.setMaxResults(4);
+
+        typeSafeQueryDao.doQueryResults(query);
+    }
+
+    /**
+     * Without a range the chunks are still listed, in chunk order.
+     */
+    @Test
+    public void testBatchedResultsOrderedByUnselectedValueWithoutRange() {
+        List<Long> ids = createTestPeople(10);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 3);
+        query.selectValue(person.getName());
+        query.orderBy().desc(person.getAge());
+
+        assertEquals(10, typeSafeQueryDao.doQueryResults(query).size());
+    }
+
+    private List<Long> createTestPeople(int n) {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        List<Long> ids = new ArrayList<>(n);
+        for (int i=0; i < n; i++) {
+            ids.add(creator.createTestPerson(town, "P" + i).getId());
+        }
+        return ids;
+    }
+
     @Test(expected=IllegalStateException.class)
     public void testMultipleBatchedInQueryNotAllowed() {
         Person person = query.from(Person.class);
@@ -0,0 +1,49 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+
+/**
+ * Base class for tests which execute queries on other sessions. Those sessions can't see
+ * the uncommitted data of the test, so the test data is committed with {@link #commitAndBegin()}
+ * and the database is cleared after each test.
+ */
+public abstract class CommittedTypeSafeQueryTest extends TypeSafeQueryTest {
+    /**
+     * Runs the tasks on the other sessions, shut down after each test.
+     */
+    protected final ExecutorService pool = Executors.newFixedThreadPool(3);
+
+    @After
+    public void clearDatabase() {
+        pool.shutdown();
+        getSessionFactory().getCurrentSession().createNativeQuery(
+                "TRUNCATE SCHEMA PUBLIC AND COMMIT NO CHECK").executeUpdate();
+        commitAndBegin();
+    }
+
+    /**
+     * Commits the data created by the test, so other sessions can see it.
+     */
+    protected void commitAndBegin() {
+        getSessionFactory().getCurrentSession().getTransaction().commit();
+        getSessionFactory().getCurrentSession().beginTransaction();
+    }
+}
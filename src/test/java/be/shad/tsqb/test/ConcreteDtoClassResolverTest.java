@@ -0,0 +1,50 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.dto.PersonValue;
+import be.shad.tsqb.helper.ConcreteDtoClassResolverImpl;
+import be.shad.tsqb.helper.SelectionBuilderSpec;
+
+public class ConcreteDtoClassResolverTest {
+
+    @Test
+    public void testBuilderSpecIsResolvedOncePerClass() {
+        ConcreteDtoClassResolverImpl resolver = new ConcreteDtoClassResolverImpl();
+        SelectionBuilderSpec<PersonDto, PersonDto> spec = resolver.createBuilderSpec(PersonDto.class);
+        assertSame(spec, resolver.createBuilderSpec(PersonDto.class));
+        assertTrue(spec.createNewBuilder() instanceof PersonDto);
+    }
+
+    @Test
+    public void testBuilderSpecBuildsWithBuilderHandles() {
+        ConcreteDtoClassResolverImpl resolver = new ConcreteDtoClassResolverImpl();
+        SelectionBuilderSpec<PersonValue.PersonValueBuilder, PersonValue> spec =
+                resolver.createBuilderSpec(PersonValue.PersonValueBuilder.class);
+        assertTrue(spec.isBuilder());
+        assertEquals(PersonValue.class, spec.getSelectionResultClass());
+        PersonValue.PersonValueBuilder builder = spec.createNewBuilder();
+        builder.thePersonsName("Josh");
+        assertEquals("Josh", spec.getBuildFn().build(builder).getThePersonsName());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.domain.people.PersonProperty;
+import be.shad.tsqb.query.JoinType;
+import be.shad.tsqb.query.TypeSafeSubQuery;
+import be.shad.tsqb.values.HqlQueryBuilderParamsImpl;
+
+/**
+ * The count query leaves out the parts which can't change the count.
+ */
+public class CountQueryOptimizerTest extends TypeSafeQueryTest {
+
+    /**
+     * Validates the hql of the count query and executes it to check the hql is valid.
+     */
+    private void validateCount(String expected) {
+        HqlQueryBuilderParamsImpl params = new HqlQueryBuilderParamsImpl();
+        params.setSelectingCount(true);
+        assertEquals(expected, query.toHqlQuery(params).getHql());
+        typeSafeQueryDao.doCount(query);
+    }
+
+    @Test
+    public void testOrderByIsLeftOut() {
+        Person person = query.from(Person.class);
+        query.orderBy().asc(person.getName());
+
+        validateCount("select count(*) from Person hobj1");
+    }
+
+    @Test
+    public void testFetchJoinIsCountedAsJoin() {
+        Person person = query.from(Person.class);
+        query.join(person.getTown(), JoinType.Fetch);
+
+        validateCount("select count(*) from Person hobj1 join hobj1.town hobj2");
+    }
+
+    @Test
+    public void testUnusedSingleEntityLeftJoinsAreLeftOut() {
+        Person person = query.from(Person.class);
+        query.join(person.getTown(), JoinType.Left);
+        query.join(person.getSpouse(), JoinType.LeftFetch);
+
+        validateCount("select count(*) from Person hobj1");
+    }
+
+    @Test
+    public void testLeftJoinUsedInWhereIsKept() {
+        Person person = query.from(Person.class);
+        Town town = query.join(person.getTown(), JoinType.Left);
+        query.where(town.getName()).eq("Antwerp");
+
+        validateCount("select count(*) from Person hobj1 left join hobj1.town hobj2 where hobj2.name = :np1");
+    }
+
+    @Test
+    public void testLeftJoinUsedByAnotherJoinIsKept() {
+        Person person = query.from(Person.class);
+        Person spouse = query.join(person.getSpouse(), JoinType.Left);
+        query.join(spouse.getTown(), JoinType.Inner);
+
+        validateCount("select count(*) from Person hobj1 left join hobj1.spouse hobj2 join hobj2.town hobj3");
+    }
+
+    @Test
+    public void testUnusedLeftJoinChainIsLeftOut() {
+        Person person = query.from(Person.class);
+        Person spouse = query.join(person.getSpouse(), JoinType.Left);
+        query.join(spouse.getTown(), JoinType.Left);
+
+        validateCount("select count(*) from Person hobj1");
+    }
+
+    @Test
+    public void testLeftCollectionJoinIsKept() {
+        Person person = query.from(Person.class);
+        query.join(person.getProperties(), JoinType.LeftFetch);
+
+        validateCount("select count(*) from Person hobj1 left join hobj1.properties hobj2");
+    }
+
+    @Test
+    public void testSubqueryKeepsItsSelectionAndJoins() {
+        Person person = query.from(Person.class);
+        TypeSafeSubQuery<Long> propertySQ = query.subquery(Long.class);
+        PersonProperty property = propertySQ.from(PersonProperty.class);
+        Town town = propertySQ.join(property.getPerson().getTown(), JoinType.Left);
+        propertySQ.select(property.getPerson().getId());
+        propertySQ.where(town.getName()).isNull();
+        query.where(person.getId()).in(propertySQ);
+
+        validateCount("select count(*) from Person hobj1 where hobj1.id in "
+                + "(select hobj3.id from PersonProperty hobj2 join hobj2.person hobj3 "
+                + "left join hobj3.town hobj4 where hobj4.name is null)");
+    }
+}
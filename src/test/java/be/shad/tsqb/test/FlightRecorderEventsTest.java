@@ -0,0 +1,127 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.jfr.FlightRecorderEvents;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.Data;
+
+public class FlightRecorderEventsTest extends TypeSafeQueryTest {
+
+    @Data
+    public static class RecordedPersonDto {
+        private Long id;
+        private String name;
+    }
+
+    @Test
+    public void testQueryEventsAreRecorded() throws IOException {
+        assertTrue(FlightRecorderEvents.AVAILABLE);
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            ids.add(creator.createTestPerson(town, "P" + i).getId());
+        }
+
+        List<RecordedEvent> events;
+        HqlQuery hqlQuery;
+        try (Recording recording = new Recording()) {
+            recording.enable("be.shad.tsqb.HqlRender");
+            recording.enable("be.shad.tsqb.HqlExecution");
+            recording.enable("be.shad.tsqb.ResultTransform");
+            recording.enable("be.shad.tsqb.ProxyGeneration");
+            recording.start();
+
+            Person person = query.from(Person.class);
+            query.where(person.getId()).in(ids, 2);
+            RecordedPersonDto dto = query.select(RecordedPersonDto.class);
+            dto.setId(person.getId());
+            dto.setName(person.getName());
+            hqlQuery = query.toHqlQuery();
+            typeSafeQueryDao.doQuery(query);
+
+            recording.stop();
+            Path file = Files.createTempFile("tsqb", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+        long fingerprint = query.fingerprint();
+
+        // other proxies may be generated too when this test runs first
+        List<RecordedEvent> proxyEvents = events(events, "be.shad.tsqb.ProxyGeneration").stream()
+                .filter(e -> e.getClass("proxiedClass").getName().equals(RecordedPersonDto.class.getName()))
+                .collect(Collectors.toList());
+        assertEquals(1, proxyEvents.size());
+        assertFalse(proxyEvents.get(0).getBoolean("entity"));
+        assertFalse(proxyEvents.get(0).getBoolean("pregenerated"));
+
+        List<RecordedEvent> renderEvents = events(events, "be.shad.tsqb.HqlRender");
+        assertEquals(2, renderEvents.size());
+        for(RecordedEvent event: renderEvents) {
+            assertEquals(fingerprint, event.getLong("fingerprint"));
+            assertEquals(hqlQuery.getHql().length(), event.getInt("hqlLength"));
+        }
+
+        List<RecordedEvent> executionEvents = events(events, "be.shad.tsqb.HqlExecution");
+        assertEquals(3, executionEvents.size());
+        int rowCount = 0;
+        for(int i = 0; i < executionEvents.size(); i++) {
+            RecordedEvent event = executionEvents.get(i);
+            assertEquals(fingerprint, event.getLong("fingerprint"));
+            assertEquals(hqlQuery.getHql().length(), event.getInt("hqlLength"));
+            assertEquals(i, event.getInt("chunkIndex"));
+            assertEquals(i < 2 ? 2: 1, event.getInt("chunkSize"));
+            rowCount += event.getInt("rowCount");
+        }
+        assertEquals(5, rowCount);
+
+        List<RecordedEvent> transformEvents = events(events, "be.shad.tsqb.ResultTransform");
+        assertEquals(1, transformEvents.size());
+        assertEquals(RecordedPersonDto.class.getName(), transformEvents.get(0).getClass("resultClass").getName());
+        assertEquals(5, transformEvents.get(0).getInt("rowCount"));
+        assertEquals(5, transformEvents.get(0).getInt("resultCount"));
+    }
+
+    private List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
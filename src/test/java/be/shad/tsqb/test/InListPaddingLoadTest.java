@@ -0,0 +1,87 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+
+import be.shad.tsqb.dao.InListPadding;
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.domain.people.Person;
+
+/**
+ * Compares the query plan cache hits when listing the same query with in lists
+ * of random sizes, without padding and with padding to powers of two.
+ */
+public class InListPaddingLoadTest extends TypeSafeQueryTest {
+
+    public static void main(String[] argv) {
+        InListPaddingLoadTest loadTest = new InListPaddingLoadTest();
+        initializeClass();
+        loadTest.initialize();
+        loadTest.loadTest();
+        loadTest.teardown();
+    }
+
+    public void loadTest() {
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        Statistics statistics = getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        run(dao, statistics, "without padding");
+        dao.setInListPadding(InListPadding.powerOfTwo());
+        run(dao, statistics, "with power of two padding");
+    }
+
+    private void run(TypeSafeQueryDaoImpl dao, Statistics statistics, String description) {
+        clearQueryPlanCache();
+        statistics.clear();
+        Random random = new Random(1);
+
+        int n = 5000;
+        long time = System.currentTimeMillis();
+        for(int i=0; i < n; i++) {
+            List<Long> ids = new ArrayList<>();
+            for(long id = random.nextInt(500) + 1; id > 0; id--) {
+                ids.add(id);
+            }
+            query = createQuery();
+            Person person = query.from(Person.class);
+            query.where(person.getId()).in(ids);
+            dao.doQueryResults(query);
+        }
+        time = (System.currentTimeMillis() - time);
+
+        long hits = statistics.getQueryPlanCacheHitCount();
+        long misses = statistics.getQueryPlanCacheMissCount();
+        System.out.println(String.format("%s: %.3fms/query, plan cache hits: %d, misses: %d, hit rate: %.1f%%",
+                description, time / (double) n, hits, misses, 100d * hits / (hits + misses)));
+    }
+
+    /**
+     * Starts each run without the plans of the previous run, which would otherwise be counted as hits.
+     * The statistics only count the plans, hibernate 5 has no replacement for the deprecated plan cache access.
+     */
+    @SuppressWarnings("deprecation")
+    private void clearQueryPlanCache() {
+        ((SessionFactoryImplementor) getSessionFactory()).getQueryPlanCache().cleanup();
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dao.InListPadding;
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.dao.result.ChunkTiming;
+import be.shad.tsqb.dao.result.QueryResult;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+
+public class InListPaddingTest extends TypeSafeQueryTest {
+
+    @Test
+    public void testPowerOfTwo() {
+        InListPadding padding = InListPadding.powerOfTwo();
+        assertEquals(Arrays.asList(0, 1, 2, 4, 4, 8, 8, 16, 1024, 2048), Arrays.asList(0, 1, 2, 3, 4, 5, 8, 9, 1000, 1025)
+                .stream().map(padding::getPaddedSize).collect(toList()));
+    }
+
+    @Test
+    public void testBuckets() {
+        InListPadding padding = InListPadding.buckets(100, 10, 50);
+        assertEquals(Arrays.asList(10, 10, 50, 100, 200), Arrays.asList(1, 10, 11, 51, 101)
+                .stream().map(padding::getPaddedSize).collect(toList()));
+    }
+
+    @Test
+    public void testPadRepeatsLastValueWithinMaxSize() {
+        InListPadding padding = InListPadding.powerOfTwo();
+        assertEquals(Arrays.asList(1, 2, 3, 3), padding.pad(Arrays.asList(1, 2, 3), 0));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 5), padding.pad(Arrays.asList(1, 2, 3, 4, 5), 6));
+        Collection<Integer> fits = Arrays.asList(1, 2);
+        assertSame(fits, padding.pad(fits, 0));
+    }
+
+    /**
+     * The padded sizes count for the parameter limit, so 10 ids padded to 16 are split by a limit of 8,
+     * the chunks are padded as well but never beyond the chunk size.
+     */
+    @Test
+    public void testPaddedQueryResults() {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            ids.add(creator.createTestPerson(town, "P" + i).getId());
+        }
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        dao.setInListPadding(InListPadding.powerOfTwo());
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids.subList(0, 5));
+        assertEquals(5, dao.doQueryResults(query).size());
+
+        dao.setParameterLimit(8);
+        query = createQuery();
+        person = query.from(Person.class);
+        query.where(person.getId()).in(ids).and(person.getName()).startsWith("P");
+        QueryResult<Person> result = dao.doQuery(query);
+        assertEquals(10, result.getResults().size());
+        assertEquals(Arrays.asList(7, 3), result.getChunkTimings().stream()
+                .map(ChunkTiming::getValueCount).collect(toList()));
+    }
+}
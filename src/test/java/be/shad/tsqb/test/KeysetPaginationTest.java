@@ -0,0 +1,223 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.dao.result.KeysetPage;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.query.JoinType;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.selection.collection.IdentityFieldProvider;
+
+public class KeysetPaginationTest extends TypeSafeQueryTest {
+    private static final int[] AGES = { 3, 1, 3, 2, 1, 3, 2 };
+    private Town town;
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        town = creator.createTestTown();
+        for(int i = 0; i < AGES.length; i++) {
+            creator.createTestPerson(town, "P" + i).setAge(AGES[i]);
+        }
+    }
+
+    private <T> List<T> listAllPages(Supplier<TypeSafeRootQuery> queries, int pageSize) {
+        List<T> results = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            KeysetPage<T> page = typeSafeQueryDao.doQueryKeysetPage(queries.get(), pageSize, continuationToken);
+            assertTrue(page.getResults().size() <= pageSize);
+            results.addAll(page.getResults());
+            continuationToken = page.getContinuationToken();
+        } while (continuationToken != null);
+        return results;
+    }
+
+    /**
+     * The persons with the same age are ordered by their id, the or in the where clause
+     * must not swallow the restriction to continue after the previous page.
+     */
+    @Test
+    public void testPagesContinueAfterThePreviousPage() {
+        Supplier<TypeSafeRootQuery> queries = () -> {
+            TypeSafeRootQuery query = createQuery();
+            Person person = query.from(Person.class);
+            query.where(person.getTown().getId()).eq(town.getId()).or(person.getName()).eq("nobody");
+            query.selectValue(person.getName());
+            query.orderBy().desc(person.getAge());
+            return query;
+        };
+        List<String> names = listAllPages(queries, 3);
+        assertEquals(listOfNames(0, 2, 5, 3, 6, 1, 4), names);
+    }
+
+    @Test
+    public void testDtoOrderedBySelectedProperty() {
+        Supplier<TypeSafeRootQuery> queries = () -> {
+            TypeSafeRootQuery query = createQuery();
+            Person person = query.from(Person.class);
+            query.where(person.getTown().getId()).eq(town.getId());
+            PersonDto dto = query.select(PersonDto.class);
+            dto.setId(person.getId());
+            dto.setThePersonsName(person.getName());
+            query.orderBy().desc(dto.getThePersonsName());
+            return query;
+        };
+        List<PersonDto> persons = listAllPages(queries, 2);
+        assertEquals(listOfNames(6, 5, 4, 3, 2, 1, 0),
+                persons.stream().map(PersonDto::getThePersonsName).collect(toList()));
+    }
+
+    @Test
+    public void testEntitiesWithoutSelection() {
+        Supplier<TypeSafeRootQuery> queries = () -> {
+            TypeSafeRootQuery query = createQuery();
+            Person person = query.from(Person.class);
+            query.where(person.getTown().getId()).eq(town.getId());
+            return query;
+        };
+        KeysetPage<Person> firstPage = typeSafeQueryDao.doQueryKeysetPage(queries.get(), 5, null);
+        assertEquals(5, firstPage.getResults().size());
+        assertTrue(firstPage.hasNext());
+
+        KeysetPage<Person> lastPage = typeSafeQueryDao.doQueryKeysetPage(queries.get(), 5,
+                firstPage.getContinuationToken());
+        assertEquals(2, lastPage.getResults().size());
+        assertFalse(lastPage.hasNext());
+        assertNull(lastPage.getContinuationToken());
+        assertTrue(firstPage.getResults().get(4).getId() < lastPage.getResults().get(0).getId());
+    }
+
+    /**
+     * The town id is the same for each row of the inhabitants join,
+     * the person id must be used as tie-breaker so no rows are skipped.
+     */
+    @Test
+    public void testCollectionJoinIdentifierIsUsedAsTieBreaker() {
+        Supplier<TypeSafeRootQuery> queries = () -> {
+            TypeSafeRootQuery query = createQuery();
+            Town townProxy = query.from(Town.class);
+            Person inhabitant = query.join(townProxy.getInhabitants());
+            query.where(townProxy.getId()).eq(town.getId());
+            query.selectValue(inhabitant.getName());
+            query.orderBy().asc(townProxy.getName());
+            return query;
+        };
+        List<String> names = listAllPages(queries, 2);
+        assertEquals(listOfNames(0, 1, 2, 3, 4, 5, 6), names);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLeftJoinedCollectionIsRejected() {
+        Town townProxy = query.from(Town.class);
+        Person inhabitant = query.join(townProxy.getInhabitants(), JoinType.Left);
+        query.selectValue(inhabitant.getName());
+        typeSafeQueryDao.doQueryKeysetPage(query, 2, null);
+    }
+
+    /**
+     * The inhabitants of the last town of a page would be cut off by the page size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCollectionSubselectIsRejected() {
+        Town townProxy = query.from(Town.class);
+        Person inhabitant = query.join(townProxy.getInhabitants());
+        Town selectTown = query.select(Town.class, new IdentityFieldProvider<Town>() {
+            @Override
+            protected Object getIdentifier(Town resultProxy) {
+                return resultProxy.getId();
+            }
+        });
+        Person selectPerson = query.select(selectTown.getInhabitants(), Person.class, null);
+        selectTown.setId(townProxy.getId());
+        selectPerson.setName(inhabitant.getName());
+        typeSafeQueryDao.doQueryKeysetPage(query, 2, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxResultsIsRejected() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        query.setMaxResults(10);
+        typeSafeQueryDao.doQueryKeysetPage(query, 2, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenOfAnotherQueryIsRejected() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        KeysetPage<String> page = typeSafeQueryDao.doQueryKeysetPage(query, 1, null);
+
+        TypeSafeRootQuery otherQuery = createQuery();
+        Person otherPerson = otherQuery.from(Person.class);
+        otherQuery.selectValue(otherPerson.getNickname());
+        typeSafeQueryDao.doQueryKeysetPage(otherQuery, 1, page.getContinuationToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChangedTokenIsRejected() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        String token = typeSafeQueryDao.doQueryKeysetPage(query, 1, null).getContinuationToken();
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        // the last byte of the values, before the signature:
+        bytes[bytes.length - 17]++;
+        String changedToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        typeSafeQueryDao.doQueryKeysetPage(query, 1, changedToken);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenSignedWithAnotherKeyIsRejected() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        String token = typeSafeQueryDao.doQueryKeysetPage(query, 1, null).getContinuationToken();
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        dao.setKeysetTokenKey("another key".getBytes(StandardCharsets.UTF_8));
+        dao.doQueryKeysetPage(query, 1, token);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTokenIsRejected() {
+        query.from(Person.class);
+        typeSafeQueryDao.doQueryKeysetPage(query, 1, "invalid");
+    }
+
+    private List<String> listOfNames(int... indexes) {
+        List<String> names = new ArrayList<>();
+        for(int index: indexes) {
+            names.add("P" + index);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import be.shad.tsqb.domain.GeographicCoordinate;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.TownDto;
+
+/**
+ * Checks the cached hibernate metadata gives the same answers as hibernate itself.
+ */
+public class MetaDataCacheTest extends TypeSafeQueryTest {
+
+    @Test
+    public void testIsEntity() {
+        for (int i = 0; i < 2; i++) {
+            // second iteration uses the cached metadata:
+            assertTrue(getHelper().isEntity(Town.class));
+            assertFalse(getHelper().isEntity(TownDto.class));
+            assertFalse(getHelper().isEntity(GeographicCoordinate.class));
+            assertFalse(getHelper().isEntity(String.class));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEntityNameOfNonEntity() {
+        getHelper().getEntityName(TownDto.class);
+    }
+
+    @Test
+    public void testGetIdentifier() {
+        Town town = new Town();
+        town.setId(5L);
+        Person person = new Person();
+        person.setId(7L);
+        assertEquals(5L, getHelper().getIdentifier(town));
+        assertEquals(7L, getHelper().getIdentifier(person));
+        town.setId(6L);
+        assertEquals(6L, getHelper().getIdentifier(town));
+    }
+
+    @Test
+    public void testCachedPropertiesInSecondQuery() {
+        for (int i = 0; i < 2; i++) {
+            query = createQuery();
+            Town town = query.from(Town.class);
+            query.selectValue(town.getGeographicCoordinate().getLattitude());
+            query.selectValue(town.getName());
+            validate("select hobj1.geographicCoordinate.lattitude, hobj1.name from Town hobj1");
+        }
+    }
+
+}
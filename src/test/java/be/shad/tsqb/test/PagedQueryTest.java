@@ -0,0 +1,140 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dao.AsyncQueryExecution;
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.dao.result.PagedQueryResult;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.query.TypeSafeRootQueryImpl;
+import be.shad.tsqb.values.CustomTypeSafeValue;
+import be.shad.tsqb.values.HqlQueryBuilderParamsImpl;
+
+/**
+ * The concurrent count is executed on another session.
+ */
+public class PagedQueryTest extends CommittedTypeSafeQueryTest {
+    private TypeSafeQueryDaoImpl pagingDao;
+    private Town town;
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        pagingDao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        pagingDao.setAsyncQueryExecution(new AsyncQueryExecution(getSessionFactory()::openSession, pool));
+
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        town = creator.createTestTown();
+        for(int i = 0; i < 7; i++) {
+            creator.createTestPerson(town, "P" + i);
+        }
+        commitAndBegin();
+    }
+
+    private void createPageQuery() {
+        Person person = query.from(Person.class);
+        query.where(person.getTown().getId()).eq(town.getId());
+        query.selectValue(person.getName());
+        query.orderBy().asc(person.getName());
+        query.setFirstResult(2);
+        query.setMaxResults(3);
+    }
+
+    @Test
+    public void testPageAndTotal() {
+        createPageQuery();
+        PagedQueryResult<String> page = pagingDao.doQueryPage(query);
+        assertEquals(Arrays.asList("P2", "P3", "P4"), page.getResults());
+        assertEquals(7L, page.getTotalCount());
+    }
+
+    @Test
+    public void testConcurrentCount() {
+        createPageQuery();
+        pagingDao.setConcurrentPageCount(true);
+        PagedQueryResult<String> page = pagingDao.doQueryPage(query);
+        assertEquals(Arrays.asList("P2", "P3", "P4"), page.getResults());
+        assertEquals(7L, page.getTotalCount());
+    }
+
+    /**
+     * The count runs before the page on the calling thread, both fail on the unknown property.
+     * The failure of the count is kept with the failure of the page.
+     */
+    @Test
+    public void testConcurrentCountFailureIsKeptWhenThePageFails() {
+        pagingDao.setAsyncQueryExecution(new AsyncQueryExecution(getSessionFactory()::openSession, Runnable::run));
+        pagingDao.setConcurrentPageCount(true);
+        Person person = query.from(Person.class);
+        query.where(person.getAge()).eq(new CustomTypeSafeValue<>(query, Number.class, "hobj1.unknownProperty"));
+        try {
+            pagingDao.doQueryPage(query);
+            fail("The page query should fail.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, e.getSuppressed().length);
+            // the failed query marked the transaction for rollback:
+            getSessionFactory().getCurrentSession().getTransaction().rollback();
+            getSessionFactory().getCurrentSession().beginTransaction();
+        }
+    }
+
+    /**
+     * Another root query implementation is listed and counted with the default implementation.
+     */
+    @Test
+    public void testPageOfOtherRootQueryImplementation() {
+        createPageQuery();
+        TypeSafeRootQuery delegate = (TypeSafeRootQuery) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { TypeSafeRootQuery.class }, (proxy, method, args) -> method.invoke(query, args));
+        PagedQueryResult<String> page = pagingDao.doQueryPage(delegate);
+        assertEquals(Arrays.asList("P2", "P3", "P4"), page.getResults());
+        assertEquals(7L, page.getTotalCount());
+    }
+
+    /**
+     * The count query shares the from and where parts, but not the selection and order by.
+     */
+    @Test
+    public void testCountQueryIsRenderedInTheSamePass() {
+        createPageQuery();
+        HqlQuery countQuery = new HqlQuery();
+        HqlQuery hqlQuery = ((TypeSafeRootQueryImpl) query).toHqlQuery(new HqlQueryBuilderParamsImpl(), countQuery);
+
+        assertEquals("select hobj1.name from Person hobj1 where hobj1.town.id = :np1 order by hobj1.name",
+                hqlQuery.getHql());
+        assertEquals("select count(*) from Person hobj1 where hobj1.town.id = :np1", countQuery.getHql());
+        assertEquals(hqlQuery.getParams().toString(), countQuery.getParams().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGroupByCantBeCounted() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getAge());
+        query.groupBy(person.getAge());
+        pagingDao.doQueryPage(query);
+    }
+}
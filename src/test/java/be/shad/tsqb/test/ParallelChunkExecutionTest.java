@@ -0,0 +1,165 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.junit.Test;
+
+import be.shad.tsqb.dao.HibernateQueryConfigurer;
+import be.shad.tsqb.dao.ParallelChunkExecution;
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.HasId;
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.dto.TownDto;
+import be.shad.tsqb.selection.collection.IdentityFieldProvider;
+
+/**
+ * The chunks are listed on other sessions.
+ */
+public class ParallelChunkExecutionTest extends CommittedTypeSafeQueryTest {
+    private final AtomicInteger tasks = new AtomicInteger();
+    private TypeSafeQueryDaoImpl parallelDao;
+    private List<Long> ids;
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        parallelDao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        parallelDao.setParallelChunkExecution(new ParallelChunkExecution(getSessionFactory()::openSession, r -> {
+            tasks.incrementAndGet();
+            pool.execute(r);
+        }, 3));
+
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        ids = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            ids.add(creator.createTestPerson(town, "P" + i).getId());
+        }
+        creator.createTestPerson(town, "NotSelected");
+        commitAndBegin();
+    }
+
+    @Test
+    public void testChunksAreListedInParallel() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        query.where(person.getId()).in(ids, 2);
+
+        List<String> sequential = typeSafeQueryDao.doQueryResults(query);
+        List<String> parallel = parallelDao.doQueryResults(query);
+        assertEquals(3, tasks.get());
+        assertEquals(10, parallel.size());
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * The rows of all chunks are transformed at once, so the town is still a single result.
+     */
+    @Test
+    public void testChunkRowsAreGroupedTogether() {
+        IdentityFieldProvider<HasId> hasIdIdentifierProvider = new IdentityFieldProvider<HasId>() {
+            @Override
+            protected Object getIdentifier(HasId resultProxy) {
+                return resultProxy.getId();
+            }
+        };
+        Town townProxy = query.from(Town.class);
+        Person inhabitant = query.join(townProxy.getInhabitants());
+        query.where(inhabitant.getId()).in(ids, 3);
+
+        TownDto selectTown = query.select(TownDto.class, hasIdIdentifierProvider);
+        PersonDto selectPerson = query.select(selectTown.getInhabitants(),
+                PersonDto.class, hasIdIdentifierProvider);
+        selectTown.setId(townProxy.getId());
+        selectPerson.setId(inhabitant.getId());
+
+        List<TownDto> results = parallelDao.doQueryResults(query);
+        assertEquals(3, tasks.get());
+        assertEquals(1, results.size());
+        assertEquals(ids, results.get(0).getInhabitants().stream()
+                .map(PersonDto::getId).sorted().collect(toList()));
+    }
+
+    /**
+     * An error of one task must stop the other tasks from listing chunks, and reach the caller as is.
+     * The tasks run one after the other on a single thread, so the first task fails before the others start.
+     */
+    @Test
+    public void testErrorStopsTheOtherTasks() {
+        AtomicInteger statements = new AtomicInteger();
+        AtomicBoolean errorThrown = new AtomicBoolean();
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        dao.setParallelChunkExecution(new ParallelChunkExecution(() -> getSessionFactory().withOptions()
+                .interceptor(new EmptyInterceptor() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public String onPrepareStatement(String sql) {
+                        statements.incrementAndGet();
+                        return sql;
+                    }
+                }).openSession(), singleThread, 3));
+        Session currentSession = getSessionFactory().getCurrentSession();
+
+        Person person = query.from(Person.class);
+        query.selectValue(person.getName());
+        query.where(person.getId()).in(ids, 1);
+        try {
+            dao.doQuery(query, new HibernateQueryConfigurer() {
+                @Override
+                public void beforeQuery(Session session) {
+                    if (session != currentSession && errorThrown.compareAndSet(false, true)) {
+                        throw new ChunkError();
+                    }
+                }
+
+                @Override
+                public void afterQuery(Session session) {
+                }
+
+                @Override
+                public <R> void configureQuery(Query<R> query) {
+                }
+            });
+            fail("The error of the chunk should have been thrown.");
+        } catch (ChunkError e) {
+            assertEquals(0, statements.get());
+        } finally {
+            singleThread.shutdown();
+        }
+    }
+
+    private static class ChunkError extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.helper.ConcreteDtoClassResolverImpl;
+import be.shad.tsqb.proxy.GenerateTypeSafeQueryProxy;
+import be.shad.tsqb.proxy.SingleArgumentMethodHandler;
+import be.shad.tsqb.proxy.TypeSafeQueryProxy;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyFactory;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyType;
+import be.shad.tsqb.proxy.TypeSafeQuerySelectionProxy;
+import be.shad.tsqb.proxy.processor.TypeSafeQueryProxyProcessor;
+import javassist.util.proxy.ProxyObject;
+
+/**
+ * Compiles a class with the proxy processor and checks the factory and the
+ * query use the pre-generated proxies instead of generating javassist proxies.
+ */
+public class PregeneratedProxyTest extends TypeSafeQueryTest {
+    private static final String PACKAGE = "be.shad.tsqb.pregenerated";
+    private static final String SOURCE = "package " + PACKAGE + ";\n"
+            + "@" + GenerateTypeSafeQueryProxy.class.getName() + "(entity = true, selection = true)\n"
+            + "public class PregeneratedDto {\n"
+            + "    private String name;\n"
+            + "    private int age;\n"
+            + "    public String getName() { return name; }\n"
+            + "    public void setName(String name) { this.name = name; }\n"
+            + "    public int getAge() { return age; }\n"
+            + "    public void setAge(int age) { this.age = age; }\n"
+            + "    public String toString() { return \"dto \" + name; }\n"
+            + "}\n";
+
+    private static Class<?> dtoClass;
+
+    @BeforeClass
+    public static void compilePregeneratedDto() throws Exception {
+        File output = Files.createTempDirectory("tsqb-proxies").toFile();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            JavaFileObject source = new SimpleJavaFileObject(new File(output, "PregeneratedDto.java").toURI(),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return SOURCE;
+                }
+            };
+            List<String> options = Arrays.asList("-d", output.getPath(), "-classpath", getClassPath());
+            CompilationTask task = compiler.getTask(null, fileManager, null, options, null, Arrays.asList(source));
+            task.setProcessors(Arrays.asList(new TypeSafeQueryProxyProcessor()));
+            assertTrue("compilation failed", task.call());
+        }
+        @SuppressWarnings("resource")
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toURI().toURL() },
+                PregeneratedProxyTest.class.getClassLoader());
+        dtoClass = classLoader.loadClass(PACKAGE + ".PregeneratedDto");
+    }
+
+    private static String getClassPath() throws IOException {
+        Set<String> classPath = new LinkedHashSet<>();
+        classPath.add(System.getProperty("java.class.path"));
+        for (Class<?> clazz: Arrays.asList(GenerateTypeSafeQueryProxy.class, ProxyObject.class)) {
+            classPath.add(new File(clazz.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath());
+        }
+        return String.join(File.pathSeparator, classPath);
+    }
+
+    @Test
+    public void testFactoryPrefersPregeneratedProxies() {
+        TypeSafeQueryProxyFactory factory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        Object entityProxy = factory.getProxy(dtoClass, TypeSafeQueryProxyType.EntityType);
+        Object selectionProxy = factory.getProxy(dtoClass, TypeSafeQueryProxyType.SelectionDtoType);
+
+        assertEquals(PACKAGE + ".PregeneratedDto_TsqbProxy", entityProxy.getClass().getName());
+        assertTrue(entityProxy instanceof TypeSafeQueryProxy);
+        assertEquals(PACKAGE + ".PregeneratedDto_TsqbSelectionProxy", selectionProxy.getClass().getName());
+        assertTrue(selectionProxy instanceof TypeSafeQuerySelectionProxy);
+    }
+
+    @Test
+    public void testPregeneratedProxyDispatchesToHandler() throws Exception {
+        TypeSafeQueryProxyFactory factory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        Object proxy = factory.getProxy(dtoClass, TypeSafeQueryProxyType.EntityType);
+        // without handler the proxy behaves like the proxied class:
+        assertEquals("dto null", proxy.toString());
+
+        List<Method> invoked = new ArrayList<>();
+        ((ProxyObject) proxy).setHandler((self, m, proceed, args) -> {
+            invoked.add(m);
+            return m.getReturnType() == int.class ? 7: null;
+        });
+        assertEquals(7, dtoClass.getMethod("getAge").invoke(proxy));
+        dtoClass.getMethod("setName", String.class).invoke(proxy, "name");
+        assertNull(((TypeSafeQueryProxy) proxy).getTypeSafeProxyData());
+
+        assertEquals(Arrays.asList(
+                dtoClass.getDeclaredMethod("getAge"),
+                dtoClass.getDeclaredMethod("setName", String.class),
+                TypeSafeQueryProxy.class.getMethod("getTypeSafeProxyData")), invoked);
+    }
+
+    /**
+     * Getters and setters are passed on without arguments array to a single argument handler.
+     */
+    @Test
+    public void testPregeneratedProxyPassesSingleArgumentDirectly() throws Exception {
+        TypeSafeQueryProxyFactory factory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        Object proxy = factory.getProxy(dtoClass, TypeSafeQueryProxyType.SelectionDtoType);
+
+        List<Object> invoked = new ArrayList<>();
+        ((ProxyObject) proxy).setHandler(new SingleArgumentMethodHandler() {
+            @Override
+            public Object invokeSingle(Object self, Method method, Object argument) {
+                invoked.add(method.getName());
+                invoked.add(argument);
+                return method.getReturnType() == int.class ? 7: null;
+            }
+
+            @Override
+            public Object invoke(Object self, Method method, Method proceed, Object[] args) {
+                throw new AssertionError("Expected a single argument invocation of " + method);
+            }
+        });
+        assertEquals(7, dtoClass.getMethod("getAge").invoke(proxy));
+        dtoClass.getMethod("setAge", int.class).invoke(proxy, 3);
+        dtoClass.getMethod("setName", String.class).invoke(proxy, "name");
+
+        assertEquals(Arrays.asList("getAge", null, "setAge", 3, "setName", "name"), invoked);
+    }
+
+    @Test
+    public void testSelectIntoPregeneratedProxy() throws Exception {
+        Person person = query.from(Person.class);
+        Object dto = query.select(dtoClass);
+        assertEquals(PACKAGE + ".PregeneratedDto_TsqbSelectionProxy", dto.getClass().getName());
+        dtoClass.getMethod("setName", String.class).invoke(dto, person.getName());
+        dtoClass.getMethod("setAge", int.class).invoke(dto, person.getAge());
+
+        validate("select hobj1.name as name, hobj1.age as age from Person hobj1");
+        for (Object result: doQueryResult) {
+            assertSame(dtoClass, result.getClass());
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import be.shad.tsqb.dao.prepared.PreparedTypeSafeQuery;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.domain.people.Relation;
+import be.shad.tsqb.dto.LoadTestDto;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.query.TypeSafeSubQuery;
+
+/**
+ * Compares building the {@link LoadTest} query for every execution
+ * with preparing it once and only binding the values per execution.
+ */
+public class PreparedLoadTest extends TypeSafeQueryTest {
+
+    public static void main(String[] argv) {
+        PreparedLoadTest loadTest = new PreparedLoadTest();
+        initializeClass();
+        loadTest.initialize();
+        loadTest.loadTest();
+    }
+
+    public void loadTest() {
+        Collection<String> names = new ArrayList<>();
+        for(int i=0; i < 500; i++) {
+            names.add("name" + i);
+        }
+
+        int n = 100000;
+        long time = System.currentTimeMillis();
+        for(int i=0; i < n; i++) {
+            TypeSafeRootQuery query = createLoadTestQuery(names, 50 + i % 10);
+            query.toHqlQuery();
+        }
+        time = (System.currentTimeMillis() - time);
+        System.out.println(time / (double) n + "ms/query when building the query");
+
+        PreparedTypeSafeQuery<LoadTestDto> prepared = typeSafeQueryDao.prepare(createLoadTestQuery(names, 50));
+        List<Object> last = null;
+        time = System.currentTimeMillis();
+        for(int i=0; i < n; i++) {
+            Map<String, Object> namedValues = Collections.singletonMap("minAge", 50 + i % 10);
+            last = prepared.bindParams(namedValues);
+        }
+        time = (System.currentTimeMillis() - time);
+        System.out.println(time / (double) n + "ms/query when binding the prepared query\n"
+                + prepared.getHql() + " --- with: " + last.size() + " params");
+    }
+
+    private TypeSafeRootQuery createLoadTestQuery(Collection<String> names, int minAge) {
+        TypeSafeRootQuery query = createQuery();
+        Town town = query.from(Town.class);
+        Person inhabitant = query.join(town.getInhabitants());
+        Relation childRelation = query.join(inhabitant.getChildRelations());
+
+        query.where(childRelation.getChild().getTown().getName()).eq(town.getName());
+        query.groupBy(town.getName());
+
+        TypeSafeSubQuery<Long> subquery = query.subquery(long.class);
+        Person personCnt = subquery.from(Person.class);
+        subquery.where(personCnt.getAge()).gte().named("minAge", minAge).
+                   and(personCnt.getName()).in(names);
+        subquery.select(query.hqlFunction().count().select());
+
+        LoadTestDto dto = query.select(LoadTestDto.class);
+        dto.setTownName(town.getName());
+        dto.setMaxAge(query.hqlFunction().max(childRelation.getChild().getAge()).select());
+        dto.setFiftyPlusCount(subquery.select());
+        return query;
+    }
+
+}
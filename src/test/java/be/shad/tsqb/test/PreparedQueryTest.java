@@ -0,0 +1,144 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import be.shad.tsqb.dao.prepared.PreparedTypeSafeQuery;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.PersonDto;
+
+public class PreparedQueryTest extends TypeSafeQueryTest {
+
+    @Before
+    public void createPersons() {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        createPerson(creator, town, "Alice", 30);
+        createPerson(creator, town, "Bob", 40);
+        createPerson(creator, town, "Carl", 50);
+    }
+
+    private void createPerson(TestDataCreator creator, Town town, String name, int age) {
+        Person person = creator.createTestPerson(town, name);
+        person.setAge(age);
+        getSessionFactory().getCurrentSession().save(person);
+    }
+
+    private PreparedTypeSafeQuery<String> prepareNamesQuery() {
+        Person person = query.from(Person.class);
+        query.where(person.getAge()).gte().named("minAge", 0).
+                and(person.getName()).in().named("names", asList("Alice", "Bob"));
+        query.selectValue(person.getName());
+        query.orderBy().asc(person.getName());
+        return typeSafeQueryDao.prepare(query);
+    }
+
+    private List<String> doQuery(PreparedTypeSafeQuery<String> prepared, Map<String, ?> namedValues) {
+        return typeSafeQueryDao.doQuery(prepared, namedValues).getResults();
+    }
+
+    @Test
+    public void testPreparedQueryUsesPreparedValues() {
+        PreparedTypeSafeQuery<String> prepared = prepareNamesQuery();
+        assertEquals(query.toHqlQuery().getHql(), prepared.getHql());
+        assertEquals(asList("Alice", "Bob"), doQuery(prepared, emptyMap()));
+    }
+
+    @Test
+    public void testPreparedQueryBindsNamedValues() {
+        PreparedTypeSafeQuery<String> prepared = prepareNamesQuery();
+        assertEquals(asList("Bob"), doQuery(prepared, singletonMap("minAge", 35)));
+
+        Map<String, Object> namedValues = new HashMap<>();
+        namedValues.put("minAge", 35);
+        namedValues.put("names", asList("Alice", "Bob", "Carl"));
+        assertEquals(asList("Bob", "Carl"), doQuery(prepared, namedValues));
+        // binding doesn't change the prepared query:
+        assertEquals(asList("Alice", "Bob"), doQuery(prepared, emptyMap()));
+    }
+
+    @Test
+    public void testPreparedQueryWithBatchedCollection() {
+        Person person = query.from(Person.class);
+        query.where(person.getName()).in(asList("Alice", "Bob"), 1);
+        // named proxies are not parameters and can be combined with named values:
+        query.named().name(person, "person");
+        query.where(person.getAge()).lt().named("maxAge", 100);
+        query.selectValue(person.getName());
+        PreparedTypeSafeQuery<String> prepared = typeSafeQueryDao.prepare(query);
+
+        List<String> names = doQuery(prepared, singletonMap("maxAge", 45));
+        assertEquals(asList("Alice", "Bob"), names.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testPreparedQueryIntoDto() {
+        Person person = query.from(Person.class);
+        query.where(person.getAge()).gt().named("minAge", 0);
+        PersonDto dto = query.select(PersonDto.class);
+        dto.setId(person.getId());
+        dto.setThePersonsName(person.getName());
+        query.orderBy().asc(person.getName());
+        PreparedTypeSafeQuery<PersonDto> prepared = typeSafeQueryDao.prepare(query);
+
+        for (int minAge: new int[] { 45, 35, 0 }) {
+            List<PersonDto> results = typeSafeQueryDao.doQuery(prepared,
+                    singletonMap("minAge", minAge)).getResults();
+            assertEquals(minAge == 45 ? 1: minAge == 35 ? 2: 3, results.size());
+            assertEquals("Carl", results.get(results.size() - 1).getThePersonsName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownNamedValue() {
+        doQuery(prepareNamesQuery(), singletonMap("maxAge", 35));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNamedValueType() {
+        doQuery(prepareNamesQuery(), singletonMap("minAge", "35"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCollectionElementType() {
+        doQuery(prepareNamesQuery(), singletonMap("names", asList("Alice", 5)));
+    }
+
+    /**
+     * A collection with a single value is rendered as equal restriction.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleValueCollectionCantBindMultipleValues() {
+        Person person = query.from(Person.class);
+        query.where(person.getName()).in().named("names", asList("Alice"));
+        query.selectValue(person.getName());
+        doQuery(typeSafeQueryDao.prepare(query), singletonMap("names", asList("Alice", "Bob")));
+    }
+
+}
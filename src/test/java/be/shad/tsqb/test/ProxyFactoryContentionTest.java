@@ -0,0 +1,130 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.LoadTestDto;
+import be.shad.tsqb.helper.ConcreteDtoClassResolverImpl;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyFactory;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyType;
+
+/**
+ * Checks the proxy factory generates a proxy class only once when
+ * many threads request it at the same time and that proxy classes are
+ * shared between factories.
+ * <p>
+ * The main method measures proxy creation throughput for an increasing
+ * amount of threads, to check lookups scale when all cores are used.
+ */
+public class ProxyFactoryContentionTest {
+
+    public static void main(String[] argv) throws Exception {
+        TypeSafeQueryProxyFactory factory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        int n = 2000000;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // warm up the proxy classes and the jit before timing:
+            runConcurrently(factory, threads, n / 10);
+            long time = System.nanoTime();
+            runConcurrently(factory, threads, n);
+            time = System.nanoTime() - time;
+            System.out.println(String.format("%d threads: %.1f proxies/ms",
+                    threads, n / (time / 1000000d)));
+        }
+    }
+
+    @Test
+    public void testProxyClassIsGeneratedOnceWhenRequestedConcurrently() throws Exception {
+        TypeSafeQueryProxyFactory factory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        Set<Class<?>> townClasses = ConcurrentHashMap.newKeySet();
+        Set<Class<?>> dtoClasses = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    townClasses.add(factory.getProxy(Town.class, TypeSafeQueryProxyType.EntityType).getClass());
+                    dtoClasses.add(factory.getProxy(LoadTestDto.class, TypeSafeQueryProxyType.SelectionDtoType).getClass());
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, townClasses.size());
+        assertEquals(1, dtoClasses.size());
+    }
+
+    @Test
+    public void testProxyClassesAreSharedBetweenFactories() {
+        TypeSafeQueryProxyFactory factory1 = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        TypeSafeQueryProxyFactory factory2 = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        Town town1 = factory1.getProxy(Town.class, TypeSafeQueryProxyType.EntityType);
+        Town town2 = factory2.getProxy(Town.class, TypeSafeQueryProxyType.EntityType);
+        assertSame(town1.getClass(), town2.getClass());
+        assertNotSame(town1, town2);
+        assertSame(factory1.getProxy(LoadTestDto.class, TypeSafeQueryProxyType.SelectionDtoType).getClass(),
+                factory2.getProxy(LoadTestDto.class, TypeSafeQueryProxyType.SelectionDtoType).getClass());
+    }
+
+    /**
+     * Creates <code>n</code> proxies divided over <code>threads</code> threads.
+     */
+    private static void runConcurrently(TypeSafeQueryProxyFactory factory, int threads, int n) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0, m = n / threads; j < m; j++) {
+                        factory.getProxy(Town.class, TypeSafeQueryProxyType.EntityType);
+                        factory.getProxy(Person.class, TypeSafeQueryProxyType.EntityType);
+                        factory.getProxy(LoadTestDto.class, TypeSafeQueryProxyType.SelectionDtoType);
+                    }
+                }));
+            }
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.dto.TownDto;
+import be.shad.tsqb.helper.ConcreteDtoClassResolverImpl;
+import be.shad.tsqb.helper.ProxyWarmUpResult;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyFactory;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyType;
+
+public class ProxyWarmUpTest extends TypeSafeQueryTest {
+
+    /**
+     * All entities, embeddables and the dtos are proxied, warming up
+     * a second time doesn't generate any classes anymore.
+     */
+    @Test
+    public void testWarmUpGeneratesProxyClassesOnce() {
+        ProxyWarmUpResult result = getHelper().warmUp(Arrays.asList(TownDto.class, PersonDto.class));
+        int entities = getSessionFactory().getMetamodel().getEntities().size();
+        assertTrue(result.toString(), result.getProxiedClasses() >= entities + 2);
+        assertTrue(result.toString(), result.getGeneratedClasses() <= result.getProxiedClasses());
+
+        ProxyWarmUpResult second = getHelper().warmUp(Arrays.asList(TownDto.class, PersonDto.class));
+        assertEquals(result.getProxiedClasses(), second.getProxiedClasses());
+        assertEquals(0, second.getGeneratedClasses());
+    }
+
+    /**
+     * Factories warming up the same class at the same time share the proxy class,
+     * only the call which generated it counts it as generated.
+     * The resolver lets all threads resolve the class before any of them continues,
+     * each warm up resolves the class once.
+     */
+    @Test
+    public void testConcurrentWarmUpCountsTheGeneratedClassOnce() throws Exception {
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        AtomicInteger resolves = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> generated = new ArrayList<>();
+            for(int i=0; i < threads; i++) {
+                TypeSafeQueryProxyFactory factory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl() {
+                    @Override
+                    public <T> Class<T> getConcreteClass(Class<T> requestedClass) {
+                        resolves.incrementAndGet();
+                        try {
+                            barrier.await(10, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        return super.getConcreteClass(requestedClass);
+                    }
+                });
+                generated.add(executor.submit(() -> factory.generateProxyClass(
+                        WarmUpOnlyDto.class, TypeSafeQueryProxyType.SelectionDtoType)));
+            }
+            int count = 0;
+            for(Future<Boolean> future: generated) {
+                count += future.get() ? 1: 0;
+            }
+            assertEquals(1, count);
+            assertEquals(threads, resolves.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Not proxied by any other test, so it is only generated by the concurrent warm up.
+     */
+    public static class WarmUpOnlyDto {
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+}
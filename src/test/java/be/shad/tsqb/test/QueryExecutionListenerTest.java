@@ -0,0 +1,70 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.dao.result.QueryExecutionEvent;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.PersonDto;
+
+public class QueryExecutionListenerTest extends TypeSafeQueryTest {
+
+    @Test
+    public void testPhasesAreMeasured() {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            ids.add(creator.createTestPerson(town, "P" + i).getId());
+        }
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        List<QueryExecutionEvent> events = new ArrayList<>();
+        dao.setQueryExecutionListener(events::add);
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).in(ids, 2).and(person.getName()).startsWith("P");
+        PersonDto dto = query.select(PersonDto.class);
+        dto.setId(person.getId());
+        dto.setThePersonsName(person.getName());
+        dao.doQueryResults(query);
+
+        assertEquals(1, events.size());
+        QueryExecutionEvent event = events.get(0);
+        assertEquals(query.fingerprint(), event.getFingerprint());
+        assertEquals(query.toHqlQuery().getHql(), event.getHql());
+        assertEquals(6, event.getParameterCount());
+        assertEquals(3, event.getChunkCount());
+        assertEquals(5, event.getRowCount());
+        assertTrue(event.getBuildNanos() > 0);
+        assertTrue(event.getCreateQueryNanos() > 0);
+        assertTrue(event.getBindNanos() > 0);
+        assertTrue(event.getExecuteNanos() >= event.getChunkTimings().stream().mapToLong(t -> t.getNanos()).sum());
+        assertTrue(event.getTransformNanos() > 0);
+
+        dao.setQueryExecutionListener(null);
+        dao.doQueryResults(query);
+        assertEquals(1, events.size());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import be.shad.tsqb.CollectionNamedParameter;
+import be.shad.tsqb.NamedParameter;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.query.QueryFingerprint;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.query.TypeSafeSubQuery;
+import be.shad.tsqb.restrictions.predicate.RestrictionPredicate;
+import be.shad.tsqb.values.HqlQueryValueImpl;
+
+public class QueryFingerprintTest extends TypeSafeQueryTest {
+
+    private long personQueryFingerprint(String name, Integer... ages) {
+        TypeSafeRootQuery query = createQuery();
+        Person person = query.from(Person.class);
+        query.where(person.getName()).eq(name).and(person.getAge()).in(asList(ages));
+        query.selectValue(person.getId());
+        query.orderBy().asc(person.getName());
+        return query.fingerprint();
+    }
+
+    @Test
+    public void testValuesDontChangeFingerprint() {
+        assertEquals(personQueryFingerprint("Alice", 10, 20), personQueryFingerprint("Bob", 30, 40, 50, 60));
+    }
+
+    @Test
+    public void testShapeChangesFingerprint() {
+        long fingerprint = personQueryFingerprint("Alice", 10, 20);
+
+        Person person = query.from(Person.class);
+        query.where(person.getNickname()).eq("Alice").and(person.getAge()).in(asList(10, 20));
+        query.selectValue(person.getId());
+        query.orderBy().asc(person.getName());
+        assertNotEquals(fingerprint, query.fingerprint());
+    }
+
+    @Test
+    public void testResultClassChangesFingerprint() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getId());
+        long valueFingerprint = query.fingerprint();
+
+        query = createQuery();
+        person = query.from(Person.class);
+        PersonDto dto = query.select(PersonDto.class);
+        dto.setId(person.getId());
+        assertNotEquals(valueFingerprint, query.fingerprint());
+    }
+
+    @Test
+    public void testAliasesAndParameterNamesDontChangeFingerprint() {
+        long fingerprint = QueryFingerprint.of(new HqlQueryValueImpl(
+                "select hobj1.id from Person hobj1 join hobj1.town hobj2 where hobj2.name = :np1",
+                new NamedParameter("np1", "Gent")));
+        assertEquals(fingerprint, QueryFingerprint.of(new HqlQueryValueImpl(
+                "select hobj5.id from Person hobj5 join hobj5.town hobj9 where hobj9.name = :np12",
+                new NamedParameter("np12", "Brugge"))));
+        // swapping the aliases is a different query:
+        assertNotEquals(fingerprint, QueryFingerprint.of(new HqlQueryValueImpl(
+                "select hobj2.id from Person hobj1 join hobj1.town hobj2 where hobj2.name = :np1",
+                new NamedParameter("np1", "Gent"))));
+    }
+
+    @Test
+    public void testParameterTypesChangeFingerprint() {
+        String hql = "select hobj1.id from Person hobj1 where hobj1.id in (:np1)";
+        long fingerprint = QueryFingerprint.of(new HqlQueryValueImpl(hql,
+                new CollectionNamedParameter("np1", asList(1L, 2L), null)));
+        assertEquals(fingerprint, QueryFingerprint.of(new HqlQueryValueImpl(hql,
+                new CollectionNamedParameter("np1", asList(3L, 4L, 5L), null))));
+        assertNotEquals(fingerprint, QueryFingerprint.of(new HqlQueryValueImpl(hql,
+                new CollectionNamedParameter("np1", asList(1, 2), null))));
+        assertNotEquals(fingerprint, QueryFingerprint.of(new HqlQueryValueImpl(hql,
+                new CollectionNamedParameter("np1", asList(1L, 2L), 100))));
+    }
+
+    @Test
+    public void testCachedFingerprintIsClearedWhenTheQueryChanges() {
+        Person person = query.from(Person.class);
+        query.selectValue(person.getId());
+        long fingerprint = query.fingerprint();
+        assertEquals(fingerprint, query.fingerprint());
+
+        query.where(person.getName()).eq("Alice");
+        long restrictedFingerprint = query.fingerprint();
+        assertNotEquals(fingerprint, restrictedFingerprint);
+
+        query.orderBy().asc(person.getAge());
+        assertNotEquals(restrictedFingerprint, query.fingerprint());
+    }
+
+    @Test
+    public void testNamedValueClearsCachedFingerprint() {
+        query.setDefaultRestrictionPredicate(RestrictionPredicate.IGNORE_NULL);
+        Person person = query.from(Person.class);
+        query.where(person.getName()).eq().named("name", "Alice");
+        query.selectValue(person.getId());
+        long fingerprint = query.fingerprint();
+
+        // the restriction is left out without a value:
+        query.named().setValue("name", null);
+        assertNotEquals(fingerprint, query.fingerprint());
+    }
+
+    @Test
+    public void testSubqueryChangeClearsCachedFingerprint() {
+        Person person = query.from(Person.class);
+        TypeSafeSubQuery<Long> subquery = query.subquery(Long.class);
+        Person child = subquery.from(Person.class);
+        subquery.select(child.getId());
+        query.whereExists(subquery);
+        query.selectValue(person.getId());
+        long fingerprint = query.fingerprint();
+
+        subquery.where(child.getAge()).gt(person.getAge());
+        assertNotEquals(fingerprint, query.fingerprint());
+    }
+
+}
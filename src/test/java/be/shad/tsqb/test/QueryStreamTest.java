@@ -0,0 +1,174 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import be.shad.tsqb.dao.TypeSafeQueryDaoImpl;
+import be.shad.tsqb.domain.DomainObject;
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.query.JoinType;
+import be.shad.tsqb.selection.TypeSafeQueryResultTransformer;
+import be.shad.tsqb.selection.TypeSafeQueryResultTransformer.IncrementalTransformation;
+import be.shad.tsqb.selection.collection.IdentityFieldProvider;
+
+public class QueryStreamTest extends TypeSafeQueryTest {
+    private final IdentityFieldProvider<DomainObject> identifierProvider =
+            new IdentityFieldProvider<DomainObject>() {
+        @Override
+        protected Object getIdentifier(DomainObject resultProxy) {
+            return resultProxy.getId();
+        }
+    };
+
+    private TestDataCreator creator;
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        creator = new TestDataCreator(getSessionFactory());
+        creator.createTestTownWithPeople(Arrays.asList("A1", "A2", "A3"));
+        creator.createTestTown();
+        creator.createTestTownWithPeople(Arrays.asList("C1", "C2"));
+    }
+
+    private void selectTownsWithInhabitants(boolean orderByTown) {
+        Town townProxy = query.from(Town.class);
+        Person inhabitant = query.join(townProxy.getInhabitants(), JoinType.Left);
+
+        Town selectTown = query.select(Town.class, identifierProvider);
+        Person selectPerson = query.select(selectTown.getInhabitants(), Person.class, null);
+        selectTown.setId(townProxy.getId());
+        selectPerson.setName(inhabitant.getName());
+        if (orderByTown) {
+            query.orderBy().desc(townProxy.getId()).asc(inhabitant.getName());
+        }
+    }
+
+    private IncrementalTransformation startIncremental() {
+        return ((TypeSafeQueryResultTransformer) query.toHqlQuery().getResultTransformer()).startIncremental();
+    }
+
+    /**
+     * Ordered by the town id, so each town is complete when the next town id is read.
+     */
+    @Test
+    public void testStreamOrderedByIdentity() {
+        selectTownsWithInhabitants(true);
+        assertTrue(startIncremental().isEvicting());
+
+        List<Town> expected = typeSafeQueryDao.doQueryResults(query);
+        List<Town> streamed;
+        try (Stream<Town> stream = typeSafeQueryDao.doQueryStream(query)) {
+            streamed = stream.collect(toList());
+        }
+        assertEquals(3, streamed.size());
+        assertTowns(expected, streamed);
+    }
+
+    /**
+     * Without ordering a town may get inhabitants until the last row was read,
+     * the results are still correct but are only passed on at the end.
+     */
+    @Test
+    public void testStreamNotOrderedByIdentity() {
+        selectTownsWithInhabitants(false);
+        assertFalse(startIncremental().isEvicting());
+
+        List<Town> expected = typeSafeQueryDao.doQueryResults(query);
+        List<Town> streamed;
+        try (Stream<Town> stream = typeSafeQueryDao.doQueryStream(query, 1, null)) {
+            streamed = stream.collect(toList());
+        }
+        assertTowns(expected, streamed);
+    }
+
+    @Test
+    public void testResultIsPassedOnWhenIdentityChanges() {
+        selectTownsWithInhabitants(true);
+        IncrementalTransformation transformation = startIncremental();
+
+        List<Object> completed = new ArrayList<>();
+        transformation.accept(new Object[] { 2L, "B1" }, completed::add);
+        transformation.accept(new Object[] { 2L, "B2" }, completed::add);
+        assertEquals(0, completed.size());
+
+        transformation.accept(new Object[] { 1L, "A1" }, completed::add);
+        assertEquals(1, completed.size());
+        Town town = (Town) completed.get(0);
+        assertEquals(Long.valueOf(2L), town.getId());
+        assertEquals(2, town.getInhabitants().size());
+
+        transformation.finish(completed::add);
+        assertEquals(2, completed.size());
+        assertEquals(Long.valueOf(1L), ((Town) completed.get(1)).getId());
+    }
+
+    @Test
+    public void testStreamValues() {
+        Person personProxy = query.from(Person.class);
+        query.selectValue(personProxy.getName());
+        query.orderBy().asc(personProxy.getName());
+
+        List<String> expected = typeSafeQueryDao.doQueryResults(query);
+        try (Stream<String> stream = typeSafeQueryDao.doQueryStream(query, 2, null)) {
+            assertEquals(expected, stream.collect(toList()));
+        }
+        assertEquals(Arrays.asList("A1", "A2", "A3", "C1", "C2"), expected);
+    }
+
+    /**
+     * The listed results are the same when the rows are transformed while they are scrolled.
+     */
+    @Test
+    public void testIncrementalTransformation() {
+        TypeSafeQueryDaoImpl dao = new TypeSafeQueryDaoImpl(() -> getSessionFactory().getCurrentSession(), getHelper());
+        for(boolean orderByTown: new boolean[] { true, false }) {
+            query = createQuery();
+            selectTownsWithInhabitants(orderByTown);
+            List<Town> expected = dao.doQueryResults(query);
+            dao.setIncrementalTransformation(true);
+            try {
+                assertTowns(expected, dao.doQueryResults(query));
+            } finally {
+                dao.setIncrementalTransformation(false);
+            }
+        }
+    }
+
+    private void assertTowns(List<Town> expected, List<Town> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(names(expected.get(i)), names(actual.get(i)));
+        }
+    }
+
+    private List<String> names(Town town) {
+        return town.getInhabitants().stream().map(Person::getName).sorted().collect(toList());
+    }
+}
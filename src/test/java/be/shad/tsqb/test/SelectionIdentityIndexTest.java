@@ -0,0 +1,85 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import be.shad.tsqb.selection.SelectionIdentityIndex;
+import be.shad.tsqb.selection.SelectionTreeResult;
+
+public class SelectionIdentityIndexTest {
+
+    @Test
+    public void testLongAndIntegerIdentitiesAreDistinct() {
+        SelectionIdentityIndex index = new SelectionIdentityIndex();
+        SelectionTreeResult longResult = new SelectionTreeResult("long");
+        SelectionTreeResult intResult = new SelectionTreeResult("int");
+        assertNull(index.putIfAbsent(new Object[] { 5L }, longResult));
+        assertNull(index.putIfAbsent(new Object[] { 5 }, intResult));
+        assertSame(longResult, index.putIfAbsent(new Object[] { 5L }, new SelectionTreeResult("other")));
+        assertSame(intResult, index.putIfAbsent(new Object[] { 5 }, new SelectionTreeResult("other")));
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * The identity array is reused by the caller, the index must keep its own copy.
+     */
+    @Test
+    public void testCompositeIdentitiesAreCopied() {
+        SelectionIdentityIndex index = new SelectionIdentityIndex();
+        SelectionTreeResult result = new SelectionTreeResult("a");
+        Object[] identity = { "a", null };
+        assertNull(index.putIfAbsent(identity, result));
+        identity[0] = "b";
+        assertNull(index.putIfAbsent(identity, new SelectionTreeResult("b")));
+        assertSame(result, index.putIfAbsent(new Object[] { "a", null }, new SelectionTreeResult("other")));
+    }
+
+    @Test
+    public void testIdentitiesAreKeptWhenGrowing() {
+        SelectionIdentityIndex index = new SelectionIdentityIndex();
+        SelectionTreeResult[] results = new SelectionTreeResult[1000];
+        for(int i = 0; i < results.length; i++) {
+            results[i] = new SelectionTreeResult(i);
+            assertNull(index.putIfAbsent(new Object[] { (long) i * 1024 }, results[i]));
+        }
+        for(int i = 0; i < results.length; i++) {
+            assertSame(results[i], index.putIfAbsent(new Object[] { (long) i * 1024 }, null));
+        }
+        assertEquals(1000, index.size());
+    }
+
+    /**
+     * A cleared index is reused for the identities of the next result.
+     */
+    @Test
+    public void testClearedIdentitiesCanBeAddedAgain() {
+        SelectionIdentityIndex index = new SelectionIdentityIndex();
+        for(long i = 0; i < 100; i++) {
+            index.putIfAbsent(new Object[] { i }, new SelectionTreeResult(i));
+        }
+        index.clear();
+        assertEquals(0, index.size());
+        SelectionTreeResult result = new SelectionTreeResult("again");
+        assertNull(index.putIfAbsent(new Object[] { 5L }, result));
+        assertSame(result, index.putIfAbsent(new Object[] { 5L }, new SelectionTreeResult("other")));
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+
+public class TempTableTest extends TypeSafeQueryTest {
+
+    @Test
+    public void testInTempTable() {
+        Person person = query.from(Person.class);
+        query.where(person.getId()).inTempTable(Arrays.asList(1L, 2L));
+
+        validate(" from Person hobj1 where hobj1.id in (select tsqb_np1.longValue "
+                + "from TsqbTempTableValue tsqb_np1 where tsqb_np1.id.setId = :np1)", Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    public void testNotInTempTableString() {
+        Person person = query.from(Person.class);
+        query.where(person.getName()).notInTempTable(Arrays.asList("Alice", "Bob"));
+
+        validate(" from Person hobj1 where hobj1.name not in (select tsqb_np1.stringValue "
+                + "from TsqbTempTableValue tsqb_np1 where tsqb_np1.id.setId = :np1)", Arrays.asList("Alice", "Bob"));
+    }
+
+    /**
+     * The values are loaded before the query is executed and removed again afterwards.
+     */
+    @Test
+    public void testTempTableQueryResults() {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        List<Long> ids = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            ids.add(creator.createTestPerson(town, "P" + i).getId());
+        }
+        List<Long> selectedIds = new ArrayList<>(ids.subList(1, 4));
+        for(long i = 0; i < 2500; i++) {
+            selectedIds.add(-i);
+        }
+
+        Person person = query.from(Person.class);
+        query.where(person.getId()).inTempTable(selectedIds);
+        query.selectValue(person.getName());
+        query.orderBy().asc(person.getName());
+        assertEquals(Arrays.asList("P1", "P2", "P3"), typeSafeQueryDao.doQueryResults(query));
+
+        query = createQuery();
+        person = query.from(Person.class);
+        query.where(person.getId()).notInTempTable(selectedIds).
+            and(person.getName()).inTempTable(Arrays.asList("P0", "P1", "P4"));
+        assertEquals(Arrays.asList(ids.get(0), ids.get(4)), typeSafeQueryDao.<Person>doQueryResults(query)
+                .stream().map(Person::getId).sorted().collect(toList()));
+
+        assertEquals(0L, getSessionFactory().getCurrentSession().createQuery(
+                "select count(*) from TsqbTempTableValue").uniqueResult());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.dto.PersonDto;
+
+public class TupleFieldWriterTest extends TypeSafeQueryTest {
+    private static final String REFLECTIVE_SETTERS_PROPERTY = "tsqb.selection.reflectiveSetters";
+
+    /**
+     * The name is written by the generated writer, the primitive age is still set reflectively,
+     * the results must be the same as when all fields are set reflectively.
+     */
+    @Test
+    public void testWriterSetsSameValuesAsReflection() {
+        TestDataCreator creator = new TestDataCreator(getSessionFactory());
+        Town town = creator.createTestTown();
+        creator.createTestPerson(town, "Josh");
+        creator.createTestPerson(town, "Alberta");
+
+        List<List<Object>> written = selectPeople();
+        System.setProperty(REFLECTIVE_SETTERS_PROPERTY, "true");
+        try {
+            assertEquals(written, selectPeople());
+        } finally {
+            System.clearProperty(REFLECTIVE_SETTERS_PROPERTY);
+        }
+        assertEquals(Arrays.asList("Alberta", "Josh"), written.stream().map(v -> v.get(1)).collect(toList()));
+    }
+
+    private List<List<Object>> selectPeople() {
+        query = createQuery();
+        Person person = query.from(Person.class);
+        PersonDto dto = query.select(PersonDto.class);
+        dto.setId(person.getId());
+        dto.setThePersonsName(person.getName());
+        dto.setPersonAge(person.getAge());
+        query.orderBy().asc(person.getName());
+        List<PersonDto> results = typeSafeQueryDao.doQueryResults(query);
+        return results.stream()
+                .map(p -> Arrays.<Object>asList(p.getId(), p.getThePersonsName(), p.getPersonAge()))
+                .collect(toList());
+    }
+}
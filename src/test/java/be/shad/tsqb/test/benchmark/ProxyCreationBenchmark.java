@@ -0,0 +1,74 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.helper.ConcreteDtoClassResolverImpl;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyFactory;
+import be.shad.tsqb.proxy.TypeSafeQueryProxyType;
+import be.shad.tsqb.test.TypeSafeQueryTest;
+
+/**
+ * Measures creating proxies of already generated proxy classes,
+ * on their own and as part of adding a from to a new query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyCreationBenchmark extends TypeSafeQueryTest {
+    private TypeSafeQueryProxyFactory proxyFactory;
+
+    @Setup
+    public void setup() {
+        initializeClass();
+        proxyFactory = new TypeSafeQueryProxyFactory(new ConcreteDtoClassResolverImpl());
+        proxyFactory.generateProxyClass(Town.class, TypeSafeQueryProxyType.EntityType);
+        proxyFactory.generateProxyClass(PersonDto.class, TypeSafeQueryProxyType.SelectionDtoType);
+    }
+
+    @Benchmark
+    public Town entityProxy() {
+        return proxyFactory.getProxy(Town.class, TypeSafeQueryProxyType.EntityType);
+    }
+
+    @Benchmark
+    public PersonDto selectionProxy() {
+        return proxyFactory.getProxy(PersonDto.class, TypeSafeQueryProxyType.SelectionDtoType);
+    }
+
+    @Benchmark
+    public Town queryFrom() {
+        return createQuery().from(Town.class);
+    }
+
+}
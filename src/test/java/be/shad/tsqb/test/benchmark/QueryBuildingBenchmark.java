@@ -0,0 +1,104 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.domain.people.Relation;
+import be.shad.tsqb.dto.LoadTestDto;
+import be.shad.tsqb.hql.HqlQuery;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.query.TypeSafeSubQuery;
+import be.shad.tsqb.test.TypeSafeQueryTest;
+
+/**
+ * Builds, renders and copies the query shape of the {@link be.shad.tsqb.test.LoadTest}:
+ * a join chain, a group by, a dto selection and a subquery with a 500 element in restriction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuildingBenchmark extends TypeSafeQueryTest {
+    private Collection<String> names;
+    private TypeSafeRootQuery prebuilt;
+
+    @Setup
+    public void setup() {
+        initializeClass();
+        names = new ArrayList<>();
+        for(int i=0; i < 500; i++) {
+            names.add("name" + i);
+        }
+        prebuilt = build();
+    }
+
+    @Benchmark
+    public TypeSafeRootQuery build() {
+        TypeSafeRootQuery query = createQuery();
+        Town town = query.from(Town.class);
+        Person inhabitant = query.join(town.getInhabitants());
+        Relation childRelation = query.join(inhabitant.getChildRelations());
+
+        query.where(childRelation.getChild().getTown().getName()).eq(town.getName());
+        query.groupBy(town.getName());
+
+        TypeSafeSubQuery<Long> subquery = query.subquery(long.class);
+        Person personCnt = subquery.from(Person.class);
+        subquery.where(personCnt.getAge()).gte(50).
+                   and(personCnt.getName()).in(names);
+        subquery.select(query.hqlFunction().count().select());
+
+        LoadTestDto dto = query.select(LoadTestDto.class);
+        dto.setTownName(town.getName());
+        dto.setMaxAge(query.hqlFunction().max(childRelation.getChild().getAge()).select());
+        dto.setFiftyPlusCount(subquery.select());
+        return query;
+    }
+
+    @Benchmark
+    public HqlQuery buildAndRender() {
+        return build().toHqlQuery();
+    }
+
+    @Benchmark
+    public HqlQuery render() {
+        return prebuilt.toHqlQuery();
+    }
+
+    @Benchmark
+    public TypeSafeRootQuery copy() {
+        return prebuilt.copy();
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.transform.ResultTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.domain.people.Person;
+import be.shad.tsqb.domain.people.Relation;
+import be.shad.tsqb.dto.HasId;
+import be.shad.tsqb.dto.PersonDto;
+import be.shad.tsqb.dto.PersonValue;
+import be.shad.tsqb.dto.PersonValue.PersonValueBuilder;
+import be.shad.tsqb.dto.TownDetailsDto;
+import be.shad.tsqb.dto.TownDto;
+import be.shad.tsqb.query.JoinType;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.selection.collection.IdentityFieldProvider;
+import be.shad.tsqb.test.TypeSafeQueryTest;
+
+/**
+ * Transforms 10000 synthetic tuples into flat dtos, into dtos with nested collections
+ * (100 towns with 10 inhabitants with 10 children each) and into values created by a builder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultTransformerBenchmark extends TypeSafeQueryTest {
+    private List<Object[]> flatTuples;
+    private List<Object[]> nestedTuples;
+    private List<Object[]> builderTuples;
+    private ResultTransformer flatTransformer;
+    private ResultTransformer nestedTransformer;
+    private ResultTransformer builderTransformer;
+
+    @Setup
+    public void setup() {
+        initializeClass();
+        flatTuples = new ArrayList<>();
+        builderTuples = new ArrayList<>();
+        for(long i=0; i < 10000; i++) {
+            flatTuples.add(new Object[] { i, "name" + i, "custom" + i, i * 10 });
+            builderTuples.add(new Object[] { i, "name" + i, (int) (i % 100) });
+        }
+        nestedTuples = new ArrayList<>();
+        long personId = 0;
+        long childId = 0;
+        for(long town=0; town < 100; town++) {
+            for(int inhabitant=0; inhabitant < 10; inhabitant++) {
+                personId++;
+                for(int child=0; child < 10; child++) {
+                    childId++;
+                    nestedTuples.add(new Object[] { town, personId, "P" + personId, childId, "C" + childId });
+                }
+            }
+        }
+        flatTransformer = createFlatTransformer();
+        nestedTransformer = createNestedTransformer();
+        builderTransformer = createBuilderTransformer();
+    }
+
+    @Benchmark
+    public List<?> flat() {
+        return flatTransformer.transformList(flatTuples);
+    }
+
+    @Benchmark
+    public List<?> nestedCollections() {
+        return nestedTransformer.transformList(nestedTuples);
+    }
+
+    @Benchmark
+    public List<?> builder() {
+        return builderTransformer.transformList(builderTuples);
+    }
+
+    private ResultTransformer createFlatTransformer() {
+        TypeSafeRootQuery query = createQuery();
+        Town town = query.from(Town.class);
+        TownDetailsDto dto = query.select(TownDetailsDto.class);
+        dto.setId(town.getId());
+        dto.setName(town.getName());
+        dto.setCustomString(town.getName());
+        dto.setInhabitants(town.getId());
+        return query.toHqlQuery().getResultTransformer();
+    }
+
+    private ResultTransformer createNestedTransformer() {
+        IdentityFieldProvider<HasId> hasIdIdentifierProvider = new IdentityFieldProvider<HasId>() {
+            @Override
+            protected Object getIdentifier(HasId resultProxy) {
+                return resultProxy.getId();
+            }
+        };
+        TypeSafeRootQuery query = createQuery();
+        Town townProxy = query.from(Town.class);
+        Person inhabitant = query.join(townProxy.getInhabitants());
+        Relation child = query.join(inhabitant.getChildRelations(), JoinType.Left);
+
+        TownDto selectTown = query.select(TownDto.class, hasIdIdentifierProvider);
+        PersonDto selectParent = query.select(selectTown.getInhabitants(), PersonDto.class, hasIdIdentifierProvider);
+        PersonDto selectChild = query.select(selectParent.getChildren(), PersonDto.class, hasIdIdentifierProvider);
+        selectTown.setId(townProxy.getId());
+        selectParent.setId(inhabitant.getId());
+        selectParent.setThePersonsName(inhabitant.getName());
+        selectChild.setId(child.getChild().getId());
+        selectChild.setThePersonsName(child.getChild().getName());
+        return query.toHqlQuery().getResultTransformer();
+    }
+
+    private ResultTransformer createBuilderTransformer() {
+        TypeSafeRootQuery query = createQuery();
+        Person person = query.from(Person.class);
+        PersonValueBuilder selectPerson = query.select(PersonValue::builder);
+        selectPerson.id(person.getId());
+        selectPerson.thePersonsName(person.getName());
+        selectPerson.personAge(person.getAge());
+        return query.toHqlQuery().getResultTransformer();
+    }
+
+}
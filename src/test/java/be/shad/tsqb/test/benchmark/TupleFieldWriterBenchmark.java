@@ -0,0 +1,93 @@
+/*
+ * Copyright Gert Wijns gert.wijns@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.shad.tsqb.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.transform.ResultTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.shad.tsqb.domain.Town;
+import be.shad.tsqb.dto.TownDetailsDto;
+import be.shad.tsqb.query.TypeSafeRootQuery;
+import be.shad.tsqb.test.TypeSafeQueryTest;
+
+/**
+ * Transforms the same 10000 tuples into flat dtos with the fields written
+ * by the generated tuple field writer and with the fields set reflectively.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TupleFieldWriterBenchmark extends TypeSafeQueryTest {
+    private static final String REFLECTIVE_SETTERS_PROPERTY = "tsqb.selection.reflectiveSetters";
+
+    private List<Object[]> tuples;
+    private ResultTransformer fieldWriterTransformer;
+    private ResultTransformer reflectiveTransformer;
+
+    @Setup
+    public void setup() {
+        initializeClass();
+        tuples = new ArrayList<>();
+        for(long i=0; i < 10000; i++) {
+            tuples.add(new Object[] { i, "name" + i, "custom" + i, i * 10 });
+        }
+        fieldWriterTransformer = createTransformer();
+        System.setProperty(REFLECTIVE_SETTERS_PROPERTY, "true");
+        try {
+            reflectiveTransformer = createTransformer();
+        } finally {
+            System.clearProperty(REFLECTIVE_SETTERS_PROPERTY);
+        }
+    }
+
+    @Benchmark
+    public List<?> fieldWriter() {
+        return fieldWriterTransformer.transformList(tuples);
+    }
+
+    @Benchmark
+    public List<?> reflectiveSetters() {
+        return reflectiveTransformer.transformList(tuples);
+    }
+
+    private ResultTransformer createTransformer() {
+        TypeSafeRootQuery query = createQuery();
+        Town town = query.from(Town.class);
+        TownDetailsDto dto = query.select(TownDetailsDto.class);
+        dto.setId(town.getId());
+        dto.setName(town.getName());
+        dto.setCustomString(town.getName());
+        dto.setInhabitants(town.getId());
+        return query.toHqlQuery().getResultTransformer();
+    }
+
+}